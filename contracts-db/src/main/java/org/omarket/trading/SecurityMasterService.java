@@ -0,0 +1,71 @@
+package org.omarket.trading;
+
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.Security;
+import org.omarket.quotes.SecurityMaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link SecurityMaster}.
+ * <p>
+ * Readers take the current master with {@link #current()} and keep using it for a consistent view. A refresh
+ * loads a new master from the contracts database and swaps it in atomically, readers are never blocked.
+ */
+@Slf4j
+@Service
+public class SecurityMasterService {
+
+    private final ContractDBService contractDBService;
+    private final AtomicReference<SecurityMaster> current = new AtomicReference<>(SecurityMaster.EMPTY);
+    private final AtomicLong versions = new AtomicLong();
+
+    @Autowired
+    public SecurityMasterService(ContractDBService contractDBService) {
+        this.contractDBService = contractDBService;
+    }
+
+    public SecurityMaster current() {
+        return current.get();
+    }
+
+    /**
+     * Loads every contract of the database and makes it the current master.
+     *
+     * @param contractsDirPath root of the contracts database
+     * @return new master
+     * @throws IOException when the database cannot be read
+     */
+    public SecurityMaster reload(Path contractsDirPath) throws IOException {
+        List<Security> securities = contractDBService.loadContracts(contractsDirPath, ContractDBService.FILTER_NONE)
+                .toList().toBlocking().single();
+        SecurityMaster master = SecurityMaster.of(securities, versions.incrementAndGet());
+        swap(master);
+        log.info("loaded {} securities from {} (version {})", master.size(), contractsDirPath, master.getVersion());
+        return master;
+    }
+
+    /**
+     * Loads the master unless one has already been loaded.
+     */
+    public SecurityMaster load(Path contractsDirPath) throws IOException {
+        SecurityMaster master = current();
+        if (!master.isEmpty()) {
+            return master;
+        }
+        return reload(contractsDirPath);
+    }
+
+    /**
+     * @return replaced master
+     */
+    public SecurityMaster swap(SecurityMaster master) {
+        return current.getAndSet(master);
+    }
+}
@@ -1,6 +1,7 @@
 package org.omarket.ibroker;
 
 import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.ticks.TickFileFormat;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -26,7 +27,8 @@ public class MarketData {
     private String ADDRESS_ORDER_BOOK_LEVEL_ONE;
 
     /**
-     * Detects tick files from local drive.
+     * Detects tick files from local drive. When an hour has both a CSV file and a binary file (see
+     * {@link TickFileFormat}), the binary file is returned.
      *
      * @param productCode
      * @param productStorage
@@ -38,12 +40,16 @@ public class MarketData {
             paths.forEach(filePath -> {
                 if (Files.isRegularFile(filePath)) {
                     log.debug("regular file detected: " + filePath.toAbsolutePath());
-                    Pattern yyyymmddhhURIEnding = Pattern.compile(".*([0-9]{8})\\/([0-9]{2})$");
+                    Pattern yyyymmddhhURIEnding = Pattern.compile(".*([0-9]{8})\\/([0-9]{2})("
+                            + Pattern.quote(TickFileFormat.EXTENSION) + ")?$");
                     Matcher matcher = yyyymmddhhURIEnding.matcher(filePath.toUri().toString());
                     if (matcher.matches()) {
                         String yyyymmddhh = matcher.group(1) + " " + matcher.group(2);
+                        boolean binary = matcher.group(3) != null;
                         log.debug("will be processing recorded ticks: " + yyyymmddhh);
-                        tickFiles.put(yyyymmddhh, filePath);
+                        if (binary || !tickFiles.containsKey(yyyymmddhh)) {
+                            tickFiles.put(yyyymmddhh, filePath);
+                        }
                     }
                 }
             });
@@ -0,0 +1,48 @@
+package org.omarket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.ticks.TickArchiveConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+/**
+ * Converts the CSV tick archive into binary tick files, product storages being named after the quote channel
+ * of their contract id.
+ */
+@Slf4j
+@Component
+public class ConvertTicksRunner implements ApplicationRunner {
+
+    @Value("${ibrokers.ticks.storagePath}")
+    private String storageDir;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (Objects.equals(args.getNonOptionArgs().get(0), "convert-ticks")) {
+            Path storageDirPath = Paths.get(storageDir).toAbsolutePath();
+            long now = System.currentTimeMillis();
+            try (DirectoryStream<Path> products = Files.newDirectoryStream(storageDirPath, Files::isDirectory)) {
+                for (Path productStorage : products) {
+                    String channel = productStorage.getFileName().toString();
+                    int instrumentId;
+                    try {
+                        instrumentId = Integer.parseInt(channel.substring(channel.lastIndexOf('.') + 1));
+                    } catch (NumberFormatException e) {
+                        log.warn("skipping storage not named after a contract id: " + productStorage);
+                        continue;
+                    }
+                    int converted = TickArchiveConverter.convertProduct(productStorage, instrumentId, now);
+                    log.info("converted {} tick files of {}", converted, channel);
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.omarket;
 
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.rx.java.ObservableFuture;
 import io.vertx.rxjava.core.RxHelper;
@@ -7,29 +8,48 @@ import io.vertx.rxjava.core.Vertx;
 import io.vertx.rxjava.core.eventbus.Message;
 import lombok.extern.slf4j.Slf4j;
 import org.omarket.ibroker.IBrokerConnectionFailure;
+import org.omarket.trading.QuoteMessageCodec;
 import org.omarket.trading.verticles.MarketDataVerticle;
+import org.omarket.trading.verticles.MonitorVerticle;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import rx.Observable;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Component
 public class RecorderService {
 
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     @Value("${address.subscribe_tick}")
     private String ADDRESS_SUBSCRIBE_TICK;
     @Value("${address.contract_retrieve}")
     private String ADDRESS_CONTRACT_RETRIEVE;
+    @Value("${oot.monitor.port:8080}")
+    private int monitorPort;
 
     @Autowired
     private MarketDataVerticle marketDataVerticle;
+    @Autowired
+    private MonitorVerticle monitorVerticle;
 
     public void record() throws IBrokerConnectionFailure {
 
         final Vertx vertx = Vertx.vertx();
+        QuoteMessageCodec.register(vertx.eventBus().getDelegate());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeVertx(vertx), "recorder-shutdown"));
         marketDataVerticle.preStart();
         Observable<String> marketDataDeployment = RxHelper.deployVerticle(vertx, marketDataVerticle);
+        DeploymentOptions monitorOptions = new DeploymentOptions()
+                .setConfig(new JsonObject().put("oot.monitor.port", monitorPort));
+        RxHelper.deployVerticle(vertx, monitorVerticle, monitorOptions)
+                .subscribe(monitorId -> log.info("monitor verticle deployed as " + monitorId + ", recorder metrics at "
+                                + "http://localhost:" + monitorPort + "/metrics/recorder"),
+                        err -> log.error("failed to deploy monitor verticle", err));
         String[] ibCodes = new String[]{
                 "70083656",
                 "59198014",
@@ -134,4 +154,25 @@ public class RecorderService {
             }
         });
     }
+
+    /**
+     * Undeploys the verticles, so that the market data verticle stops recording and closes the tick files.
+     */
+    private static void closeVertx(Vertx vertx) {
+        log.info("shutting down recorder");
+        CountDownLatch closed = new CountDownLatch(1);
+        vertx.close(result -> {
+            if (result.failed()) {
+                log.error("failed to undeploy verticles", result.cause());
+            }
+            closed.countDown();
+        });
+        try {
+            if (!closed.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.error("verticles not undeployed after {} seconds", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
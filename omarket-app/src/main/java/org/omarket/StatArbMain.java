@@ -4,7 +4,9 @@ import io.vertx.core.Verticle;
 import io.vertx.rxjava.core.RxHelper;
 import io.vertx.rxjava.core.Vertx;
 import lombok.extern.slf4j.Slf4j;
+import org.omarket.trading.QuoteMessageCodec;
 import org.omarket.trading.verticles.DummyMeanReversionStrategyVerticle;
+import org.omarket.trading.verticles.MarkToMarketVerticle;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
@@ -18,12 +20,18 @@ import java.util.Objects;
 class StatArbService {
     @Autowired
     Verticle historicalDataVerticle;
+    @Autowired
+    MarkToMarketVerticle markToMarketVerticle;
+    @Autowired
+    DummyMeanReversionStrategyVerticle singleLegMeanReversionStrategyVerticle;
 
     public void run() throws InterruptedException {
         final Vertx vertx = Vertx.vertx();
+        QuoteMessageCodec.register(vertx.eventBus().getDelegate());
 
-        Verticle singleLegMeanReversionStrategyVerticle = new DummyMeanReversionStrategyVerticle();
-
+        RxHelper.deployVerticle(vertx, markToMarketVerticle)
+                .subscribe(markToMarketId -> log.info("mark to market verticle deployed as " + markToMarketId),
+                        err -> log.error("failed to deploy", err));
         RxHelper.deployVerticle(vertx, historicalDataVerticle)
                 .subscribe(historicalDataId -> {
                     log.info("historical data verticle deployed as " + historicalDataId);
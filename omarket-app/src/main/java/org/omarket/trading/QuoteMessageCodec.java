@@ -0,0 +1,64 @@
+package org.omarket.trading;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+import org.omarket.quotes.Quote;
+import org.omarket.quotes.QuoteBinaryFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Event bus codec for quotes.
+ * <p>
+ * Local deliveries pass the quote itself, so senders must only send immutable quotes. Deliveries to other nodes
+ * of a cluster use {@link QuoteBinaryFormat}, preceded by its length.
+ */
+public class QuoteMessageCodec implements MessageCodec<Quote, Quote> {
+
+    public static final String NAME = "oot.quote";
+
+    /**
+     * Options of messages holding a quote.
+     */
+    public static DeliveryOptions deliveryOptions() {
+        return new DeliveryOptions().setCodecName(NAME);
+    }
+
+    /**
+     * Registers the codec, to be called once after creating a Vertx instance.
+     */
+    public static void register(EventBus eventBus) {
+        eventBus.registerCodec(new QuoteMessageCodec());
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, Quote quote) {
+        byte[] encoded = QuoteBinaryFormat.encode(quote);
+        buffer.appendInt(encoded.length);
+        buffer.appendBytes(encoded);
+    }
+
+    @Override
+    public Quote decodeFromWire(int position, Buffer buffer) {
+        int length = buffer.getInt(position);
+        int start = position + 4;
+        return QuoteBinaryFormat.decode(ByteBuffer.wrap(buffer.getBytes(start, start + length)));
+    }
+
+    @Override
+    public Quote transform(Quote quote) {
+        return quote;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
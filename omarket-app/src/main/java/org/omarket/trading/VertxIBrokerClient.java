@@ -2,6 +2,7 @@ package org.omarket.trading;
 
 import com.ib.client.Contract;
 import com.ib.client.ContractDetails;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.rxjava.core.eventbus.EventBus;
 import lombok.extern.slf4j.Slf4j;
@@ -9,34 +10,47 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.omarket.ibroker.AbstractIBrokerClient;
 import org.omarket.ibroker.MarketData;
+import org.omarket.quotes.CoarseWallClock;
+import org.omarket.quotes.DepthSnapshot;
+import org.omarket.quotes.MarketDepthRows;
 import org.omarket.quotes.MutableQuote;
+import org.omarket.quotes.OrderBookManager;
+import org.omarket.quotes.OrderBookSnapshotStore;
 import org.omarket.quotes.Quote;
-import org.omarket.quotes.QuoteConverter;
 import org.omarket.quotes.QuoteFactory;
+import org.omarket.quotes.Security;
+import org.omarket.quotes.ShardMetrics;
+import org.omarket.quotes.TickOrderBookImpl;
+import org.omarket.quotes.ticks.LatencyHistogram;
+import org.omarket.quotes.ticks.OverflowPolicy;
+import org.omarket.quotes.ticks.RecorderMetrics;
+import org.omarket.quotes.ticks.SyncMetrics;
+import org.omarket.quotes.ticks.SyncMode;
+import org.omarket.quotes.ticks.TickPipeline;
+import org.omarket.quotes.ticks.TickRecorder;
+import org.omarket.quotes.ticks.WaitStrategy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 import static java.lang.Thread.sleep;
@@ -51,16 +65,43 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
 
     public static final int IB_MAX_SIMULTANEOUS_CONTRACT_DETAILS_REQUESTS = 10;
     public static final int PERIOD_CONTRACT_DETAILS_REQUEST_RETRY_MS = 1000;
+    private static final int QUOTE_CLOCK_RESOLUTION_MS = 1;
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
     @Value("${address.error_message_prefix}")
     private String ADDRESS_ERROR_MESSAGE_PREFIX;
+    @Value("${ibrokers.ticks.flushIntervalMs:1000}")
+    private long tickFlushIntervalMs;
+    @Value("${ibrokers.ticks.flushBytes:65536}")
+    private int tickFlushBytes;
+    @Value("${ibrokers.ticks.indexInterval:256}")
+    private int tickIndexInterval;
+    @Value("${ibrokers.ticks.syncMode:NONE}")
+    private SyncMode tickSyncMode;
+    @Value("${ibrokers.ticks.syncInterval:1000}")
+    private long tickSyncInterval;
+    @Value("${ibrokers.pipeline.capacity:65536}")
+    private int pipelineCapacity;
+    @Value("${ibrokers.pipeline.waitStrategy:SLEEPING}")
+    private WaitStrategy pipelineWaitStrategy;
+    @Value("${ibrokers.pipeline.overflowPolicy:BLOCK}")
+    private OverflowPolicy pipelineOverflowPolicy;
+    @Value("${ibrokers.pipeline.metricsIntervalMs:60000}")
+    private long pipelineMetricsIntervalMs;
+    @Value("${ibrokers.depth.rows:0}")
+    private int depthRows;
+    @Value("${ibrokers.depth.shards:2}")
+    private int depthShards;
+    @Value("${ibrokers.depth.queueCapacity:4096}")
+    private int depthQueueCapacity;
+    @Value("${ibrokers.depth.snapshotIntervalMs:60000}")
+    private long depthSnapshotIntervalMs;
 
     private final static int PRICE_BID = 1;
     private final static int PRICE_ASK = 2;
     private final static int SIZE_BID = 0;
     private final static int SIZE_ASK = 3;
     private final QuoteFactory quoteFactory;
-    private final SimpleDateFormat formatYearMonthDay;
-    private final SimpleDateFormat formatHour;
+    private final CoarseWallClock quoteClock = new CoarseWallClock(QUOTE_CLOCK_RESOLUTION_MS);
     private Path contractDBPath;
     private ContractDBService contractDBService;
     private MarketData marketData;
@@ -69,14 +110,22 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
     private Set<Integer> requestsContractDetails = Collections.synchronizedSet(new TreeSet<>());
     private Map<Integer, Pair<MutableQuote, Contract>> orderBooks = new HashMap<>();
     private Map<Integer, Path> subscribed = new HashMap<>();
+    private Map<Integer, String> channels = new ConcurrentHashMap<>();
+    private TickRecorder tickRecorder;
+    private TickPipeline tickPipeline;
+    private long nextPipelineMetricsNanos = 0;
+    private long nextDropWarningNanos = Long.MIN_VALUE;
+    private volatile boolean closed = false;
+    private final RecorderMetrics recorderMetrics = new RecorderMetrics();
+    private volatile OrderBookManager bookManager;
+    private final Map<Integer, Integer> depthRequests = new ConcurrentHashMap<>();
+    private final Map<Integer, BigDecimal> depthMinTicks = new ConcurrentHashMap<>();
+    private final Map<Integer, MarketDepthRows> depthRowsByInstrument = new ConcurrentHashMap<>();
+    private final Map<Integer, OrderBookSnapshotStore> depthSnapshots = new ConcurrentHashMap<>();
     private Map<Integer, String> eodReplies = new HashMap<>();
 
     @Autowired
     public VertxIBrokerClient(ContractDBService contractDBService, QuoteFactory quoteFactory, MarketData marketData) {
-        formatYearMonthDay = new SimpleDateFormat("yyyyMMdd");
-        formatHour = new SimpleDateFormat("HH");
-        formatYearMonthDay.setTimeZone(TimeZone.getTimeZone("UTC"));
-        formatHour.setTimeZone(TimeZone.getTimeZone("UTC"));
         this.contractDBService = contractDBService;
         this.quoteFactory = quoteFactory;
         this.marketData = marketData;
@@ -90,6 +139,186 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
         return productStorage;
     }
 
+    /**
+     * Tick files are kept open between ticks and flushed periodically, see {@link TickRecorder}. They are forced
+     * to disk according to {@code ibrokers.ticks.syncMode}: never, every {@code syncInterval} milliseconds or
+     * every {@code syncInterval} ticks.
+     */
+    private synchronized TickRecorder getTickRecorder() {
+        if (tickRecorder == null) {
+            tickRecorder = new TickRecorder(Duration.ofMillis(tickFlushIntervalMs), tickFlushBytes, tickIndexInterval,
+                    tickSyncMode, tickSyncInterval, quoteClock);
+            log.info("recording ticks with sync mode {}, interval {}", tickSyncMode, tickSyncInterval);
+        }
+        return tickRecorder;
+    }
+
+    /**
+     * Ticks are handed over to the recording, publishing and metrics stages, so that the thread reading the
+     * IB socket never waits for the disk or the event bus.
+     */
+    private synchronized TickPipeline getTickPipeline() {
+        if (tickPipeline == null) {
+            TickRecorder recorder = getTickRecorder();
+            tickPipeline = new TickPipeline(pipelineCapacity, pipelineWaitStrategy, pipelineOverflowPolicy);
+            LatencyHistogram writeLatency = recorderMetrics.getWriteLatency();
+            LatencyHistogram publishLatency = recorderMetrics.getPublishLatency();
+            tickPipeline.addStage("record", (instrumentId, quote, endOfBatch) -> {
+                long start = System.nanoTime();
+                recorder.record(instrumentId, quote);
+                writeLatency.record(System.nanoTime() - start);
+            });
+            tickPipeline.addStage("publish", (instrumentId, quote, producedNanos, endOfBatch) -> {
+                log.debug("sending order book {}", quote);
+                this.eventBus.send(channels.get(instrumentId), quote, QuoteMessageCodec.deliveryOptions());
+                publishLatency.record(System.nanoTime() - producedNanos);
+            });
+            tickPipeline.addStage("metrics", (instrumentId, quote, endOfBatch) -> logPipelineMetrics());
+            tickPipeline.start();
+        }
+        return tickPipeline;
+    }
+
+    /**
+     * Market depth books are updated by the shards of an {@link OrderBookManager}, not by the IB reader thread,
+     * which only routes the updates by contract id.
+     */
+    private synchronized OrderBookManager getBookManager() {
+        if (bookManager == null) {
+            bookManager = new OrderBookManager(depthShards, depthQueueCapacity, depthRows, instrumentId -> {
+                TickOrderBookImpl orderBook = new TickOrderBookImpl(depthMinTicks.get(instrumentId));
+                orderBook.setIgnoreInconsistentBidAsk(true);
+                return orderBook;
+            });
+            bookManager.start();
+            log.info("market depth books updated by {} shards", depthShards);
+        }
+        return bookManager;
+    }
+
+    /**
+     * @return latest market depth of the contract, null if market depth is not requested or not received yet
+     */
+    public DepthSnapshot getDepth(int conId) {
+        OrderBookManager manager;
+        synchronized (this) {
+            manager = bookManager;
+        }
+        return manager == null ? null : manager.getSnapshot(conId);
+    }
+
+    /**
+     * Disconnects from IB then stops the tick pipeline once drained, the recorder so that buffered ticks are
+     * written (and forced, when syncing) and the depth books.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (getClientSocket().isConnected()) {
+            getClientSocket().eDisconnect();
+        }
+        if (tickPipeline != null) {
+            tickPipeline.close();
+            log.info("tick pipeline closed: published={} dropped={}", tickPipeline.getPublishedTicks(),
+                    tickPipeline.getDroppedTicks());
+        }
+        if (tickRecorder != null) {
+            try {
+                tickRecorder.close();
+                log.info("tick recorder closed: {}", tickRecorder.getSyncMetrics());
+            } catch (IOException e) {
+                log.error("failed to close tick recorder", e);
+            }
+        }
+        if (bookManager != null) {
+            bookManager.close();
+        }
+    }
+
+    private void logPipelineMetrics() {
+        long now = quoteClock.epochNanos();
+        if (now < nextPipelineMetricsNanos) {
+            return;
+        }
+        nextPipelineMetricsNanos = now + TimeUnit.MILLISECONDS.toNanos(pipelineMetricsIntervalMs);
+        log.info("tick pipeline: published={} dropped={} {}", tickPipeline.getPublishedTicks(),
+                tickPipeline.getDroppedTicks(), tickPipeline.getMetrics());
+        log.info("tick recorder: {}", tickRecorder.getSyncMetrics());
+        synchronized (this) {
+            if (bookManager != null) {
+                log.info("depth books: {}", bookManager.getMetrics());
+            }
+        }
+    }
+
+    /**
+     * Samples the rates of the recorded instruments, to be called at a fixed interval.
+     *
+     * @return recorder metrics: rates and counters per instrument, write and callback to publish latencies
+     */
+    public JsonObject sampleRecorderMetrics() {
+        recorderMetrics.sample(System.nanoTime());
+        JsonArray instruments = new JsonArray();
+        for (RecorderMetrics.Instrument instrument : recorderMetrics.getInstruments()) {
+            instruments.add(new JsonObject()
+                    .put("instrumentId", instrument.getInstrumentId())
+                    .put("ticksPerSecond", instrument.getTicksPerSecond())
+                    .put("updates", instrument.getUpdates())
+                    .put("unmodified", instrument.getUnmodified())
+                    .put("invalid", instrument.getInvalid())
+                    .put("published", instrument.getPublished())
+                    .put("dropped", instrument.getDropped()));
+        }
+        JsonObject metrics = new JsonObject()
+                .put("time", System.currentTimeMillis())
+                .put("instruments", instruments)
+                .put("writeLatency", toJson(recorderMetrics.getWriteLatency()))
+                .put("publishLatency", toJson(recorderMetrics.getPublishLatency()));
+        TickRecorder recorder;
+        synchronized (this) {
+            recorder = tickRecorder;
+        }
+        if (recorder != null) {
+            SyncMetrics sync = recorder.getSyncMetrics();
+            metrics.put("sync", new JsonObject()
+                    .put("mode", sync.getMode().name())
+                    .put("ticksPerSecond", sync.getTicksPerSecond())
+                    .put("syncs", sync.getSyncs())
+                    .put("ticksPerSync", sync.getTicksPerSync())
+                    .put("lastLagNanos", sync.getLastLagNanos())
+                    .put("maxLagNanos", sync.getMaxLagNanos()));
+        }
+        OrderBookManager manager;
+        synchronized (this) {
+            manager = bookManager;
+        }
+        if (manager != null) {
+            JsonArray books = new JsonArray();
+            for (ShardMetrics shard : manager.getMetrics()) {
+                books.add(new JsonObject()
+                        .put("shard", shard.getShard())
+                        .put("processed", shard.getProcessedUpdates())
+                        .put("failed", shard.getFailedUpdates())
+                        .put("queueDepth", shard.getQueueDepth())
+                        .put("maxQueueDepth", shard.getMaxQueueDepth()));
+            }
+            metrics.put("books", books);
+        }
+        return metrics;
+    }
+
+    private static JsonObject toJson(LatencyHistogram histogram) {
+        return new JsonObject()
+                .put("count", histogram.getCount())
+                .put("meanNanos", histogram.getMeanNanos())
+                .put("p50Nanos", histogram.getPercentileNanos(50))
+                .put("p99Nanos", histogram.getPercentileNanos(99))
+                .put("p999Nanos", histogram.getPercentileNanos(99.9))
+                .put("maxNanos", histogram.getMaxNanos());
+    }
+
     public String getErrorChannel(Integer requestId) {
         return ADDRESS_ERROR_MESSAGE_PREFIX + "." + requestId;
     }
@@ -141,13 +370,65 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
         Path productStorage = prepareTickPath(storageDirPath, security);
         contractDBService.saveContract(contractDBPath, security);
         subscribed.put(ibCode, productStorage);
-        MutableQuote quote = quoteFactory.createMutable(security.getMinTick(), security.getCode());
+        channels.put(ibCode, marketData.createChannelQuote(security.getCode()));
+        getTickRecorder().register(ibCode, productStorage);
+        getTickPipeline();
+        MutableQuote quote = quoteFactory.createMutable(security.getMinTick(), security.getCode(), quoteClock);
         orderBooks.put(requestId, new ImmutablePair<>(quote, contract));
         log.info("requesting market data for " + security);
         getClientSocket().reqMktData(requestId, contract, "", false, null);
+        if (depthRows > 0) {
+            requestMarketDepth(security, contract, productStorage);
+        }
         return getErrorChannel(requestId);
     }
 
+    /**
+     * Books are saved next to the recorded ticks, so that a replay may start from the book state nearest to
+     * its start time.
+     */
+    private void requestMarketDepth(Security security, Contract contract, Path productStorage) {
+        int depthRequestId = newRequestId();
+        int conId = contract.conid();
+        depthMinTicks.put(conId, security.getMinTick());
+        depthRowsByInstrument.put(conId, new MarketDepthRows());
+        depthSnapshots.put(conId, new OrderBookSnapshotStore(productStorage, Duration.ofMillis(depthSnapshotIntervalMs)));
+        depthRequests.put(depthRequestId, conId);
+        getBookManager();
+        log.info("requesting {} rows of market depth for {}", depthRows, security);
+        getClientSocket().reqMktDepth(depthRequestId, contract, depthRows, null);
+    }
+
+    /**
+     * Updates are queued to the shard of the contract, waiting for room: dropping one would misalign the rows
+     * of the book.
+     */
+    @Override
+    public void updateMktDepth(int tickerId, int position, int operation, int side, double price, int size) {
+        Integer conId = depthRequests.get(tickerId);
+        if (conId == null || closed) {
+            return;
+        }
+        MarketDepthRows rows = depthRowsByInstrument.get(conId);
+        OrderBookSnapshotStore snapshots = depthSnapshots.get(conId);
+        BigDecimal rowPrice = BigDecimal.valueOf(price);
+        try {
+            bookManager.submit(conId, orderBook -> {
+                if (!rows.apply(orderBook, position, operation, side, rowPrice, size)) {
+                    log.warn("ignored depth update of {}: row {} operation {} side {}", conId, position, operation, side);
+                }
+                try {
+                    snapshots.snapshotIfDue((TickOrderBookImpl) orderBook, ZonedDateTime.now(ZoneOffset.UTC));
+                } catch (IOException e) {
+                    log.error("failed to save order book of " + conId, e);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("interrupted while queuing depth update of {}", conId);
+        }
+    }
+
     @Override
     public void contractDetails(int requestId, ContractDetails contractDetails) {
         if (requestsContractDetails.contains(requestId)) {
@@ -176,19 +457,27 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
         if (field != PRICE_BID && field != PRICE_ASK) {
             return;
         }
+        long callbackNanos = System.nanoTime();
         Pair<MutableQuote, Contract> orderBookContract = orderBooks.get(tickerId);
         MutableQuote orderBook = orderBookContract.getLeft();
+        Contract contract = orderBookContract.getRight();
+        RecorderMetrics.Instrument metrics = recorderMetrics.getInstrument(contract.conid());
+        metrics.onUpdate();
         boolean modified;
         if (field == PRICE_BID) {
             modified = orderBook.updateBestBidPrice(price);
         } else {
             modified = orderBook.updateBestAskPrice(price);
         }
-        if (!orderBook.isValid() || !modified) {
+        if (!modified) {
+            metrics.onUnmodified();
             return;
         }
-        Contract contract = orderBookContract.getRight();
-        processOrderBook(contract, orderBook);
+        if (!orderBook.isValid()) {
+            metrics.onInvalid();
+            return;
+        }
+        processOrderBook(contract, orderBook, callbackNanos, metrics);
     }
 
     @Override
@@ -196,42 +485,40 @@ public class VertxIBrokerClient extends AbstractIBrokerClient {
         if (field != SIZE_BID && field != SIZE_ASK) {
             return;
         }
+        long callbackNanos = System.nanoTime();
         Pair<MutableQuote, Contract> orderBookContract = orderBooks.get(tickerId);
         MutableQuote orderBook = orderBookContract.getLeft();
+        Contract contract = orderBookContract.getRight();
+        RecorderMetrics.Instrument metrics = recorderMetrics.getInstrument(contract.conid());
+        metrics.onUpdate();
         boolean modified;
         if (field == SIZE_BID) {
             modified = orderBook.updateBestBidSize(size);
         } else {
             modified = orderBook.updateBestAskSize(size);
         }
-        if (!orderBook.isValid() || !modified) {
+        if (!modified) {
+            metrics.onUnmodified();
             return;
         }
-        Contract contract = orderBookContract.getRight();
-        processOrderBook(contract, orderBook);
+        if (!orderBook.isValid()) {
+            metrics.onInvalid();
+            return;
+        }
+        processOrderBook(contract, orderBook, callbackNanos, metrics);
     }
 
-    private void processOrderBook(Contract contract, Quote orderBook) {
-        String channel = marketData.createChannelQuote(String.valueOf(contract.conid()));
-        try {
-            Path rootDirectory = subscribed.get(contract.conid());
-            Date now = new Date();
-            Path currentDirectory = rootDirectory.resolve(formatYearMonthDay.format(now));
-            Files.createDirectories(currentDirectory);
-            Path tickFilePath = currentDirectory.resolve(formatHour.format(now));
-            String content = QuoteConverter.toPriceVolumeString(orderBook);
-            if (!Files.exists(tickFilePath)) {
-                Files.createFile(tickFilePath);
+    private void processOrderBook(Contract contract, Quote orderBook, long callbackNanos,
+                                  RecorderMetrics.Instrument metrics) {
+        if (tickPipeline.publish(contract.conid(), quoteFactory.createFrom(orderBook), callbackNanos)) {
+            metrics.onPublished();
+        } else {
+            metrics.onDropped();
+            if (callbackNanos >= nextDropWarningNanos) {
+                nextDropWarningNanos = callbackNanos + DROP_WARNING_INTERVAL_NANOS;
+                log.warn("tick pipeline full, neither recorded nor published: {} (dropped so far: {})", orderBook,
+                        tickPipeline.getDroppedTicks());
             }
-            BufferedWriter writer =
-                    Files.newBufferedWriter(tickFilePath, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
-            writer.write(content);
-            writer.newLine();
-            writer.close();
-            log.debug("sending order book {}", orderBook);
-            this.eventBus.send(channel, QuoteConverter.toJSON(orderBook));
-        } catch (IOException e) {
-            log.error("unable to record order book: message not sent", e);
         }
     }
 
@@ -6,27 +6,30 @@ import io.vertx.rxjava.core.AbstractVerticle;
 import io.vertx.rxjava.core.eventbus.MessageConsumer;
 import joinery.DataFrame;
 import lombok.extern.slf4j.Slf4j;
-import org.omarket.trading.ContractDBService;
+import org.omarket.trading.QuoteMessageCodec;
+import org.omarket.trading.SecurityMasterService;
 import org.omarket.trading.Security;
+import org.omarket.quotes.EpochSampler;
 import org.omarket.quotes.Quote;
-import org.omarket.quotes.QuoteConverter;
 import org.omarket.quotes.QuoteFactory;
+import org.omarket.quotes.SampledQuoteSeries;
+import org.omarket.quotes.SecurityMaster;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import rx.Observable;
-import rx.exceptions.Exceptions;
 import rx.functions.Action1;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
-import java.text.ParseException;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -43,33 +46,47 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
     static final String KEY_PRODUCT_CODES = "productCodes";
     static final String KEY_REPLY_TO = "replyTo";
     static final String KEY_COMPLETION_ADDRESS = "completionAddress";
+    static final String KEY_FROM_MILLIS = "fromMillis";
     private static final String ADDRESS_HISTORICAL_QUOTES_PREFIX = "oot.historicalData.quotes";
     private static final String ADDRESS_REALTIME_START_PREFIX = "oot.realtime.start";
     @Value("${ibrokers.ticks.storagePath}")
     private String contractDBPathName;
+    @Value("${address.strategy_fill}")
+    private String ADDRESS_STRATEGY_FILL;
+    @Value("${address.strategy_quotes}")
+    private String ADDRESS_STRATEGY_QUOTES;
     @Autowired
-    private ContractDBService contractDBService;
+    private SecurityMasterService securityMasterService;
     @Autowired
     private QuoteFactory quoteFactory;
-    @Autowired
-    private QuoteConverter quoteConverter;
     private JsonObject parameters = new JsonObject();
+    private final Set<String> tradedProducts = new HashSet<>();
 
-    private static DataFrame<Object> createSamplesDataFrame(Deque<Quote> quoteSamples) {
-        Observable<Quote> quotesStream = Observable.from(quoteSamples);
-        Observable<Integer> volBidStream = quotesStream.map(Quote::getBestBidSize);
-        Observable<BigDecimal> bidStream = quotesStream.map(Quote::getBestBidPrice);
-        Observable<BigDecimal> askStream = quotesStream.map(Quote::getBestAskPrice);
-        Observable<Integer> volAskStream = quotesStream.map(Quote::getBestAskSize);
-        Observable<List<Object>> dataStream = Observable
-                .zip(volBidStream, bidStream, askStream, volAskStream,
-                        (volBid, bid, ask, volAsk) -> Arrays.asList(volBid, bid, ask, volAsk));
-        List<ZonedDateTime> indices = quotesStream.map(Quote::getLastModified)
-                .collect(LinkedList<ZonedDateTime>::new, LinkedList<ZonedDateTime>::add)
-                .toBlocking().first();
+    /**
+     * Columns are filled run by run from the values shared by the samples of each run, no sample is created.
+     */
+    private static DataFrame<Object> createSamplesDataFrame(SampledQuoteSeries series) {
+        int size = series.size();
+        EpochSampler sampler = series.getSampler();
+        List<ZonedDateTime> indices = new ArrayList<>(size);
+        List<Object> volumesBid = new ArrayList<>(size);
+        List<Object> bids = new ArrayList<>(size);
+        List<Object> asks = new ArrayList<>(size);
+        List<Object> volumesAsk = new ArrayList<>(size);
+        for (int run = 0; run < series.getRunsCount(); run++) {
+            Quote value = series.getRunValue(run);
+            long firstBucket = series.getRunFirstBucket(run);
+            int length = series.getRunLength(run);
+            for (int sample = 0; sample < length; sample++) {
+                indices.add(sampler.sampleTime(firstBucket + sample));
+                volumesBid.add(value.getBestBidSize());
+                bids.add(value.getBestBidPrice());
+                asks.add(value.getBestAskPrice());
+                volumesAsk.add(value.getBestAskSize());
+            }
+        }
         List<String> columns = Arrays.asList("volume_bid", "bid", "ask", "volume_ask");
-        DataFrame<Object> df = new DataFrame<>(columns, indices, dataStream.toBlocking().getIterator());
-        return df.transpose();
+        return new DataFrame<>(indices, columns, Arrays.asList(volumesBid, bids, asks, volumesAsk));
     }
 
     abstract protected String[] getProductCodes();
@@ -83,16 +100,54 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
 
     abstract protected ChronoUnit getSampleDataUnit();
 
+    /**
+     * Override for periods that are not a whole unit, such as 250ms.
+     *
+     * @return duration of the samples
+     */
+    protected Duration getSamplingPeriod() {
+        return getSampleDataUnit().getDuration();
+    }
+
+    /**
+     * Override to replay only the latest recorded ticks before going live, such as the last 2 hours.
+     *
+     * @return period of history replayed, null to replay everything stored
+     */
+    protected Duration getWarmUpPeriod() {
+        return null;
+    }
+
     JsonObject getParameters() {
         return parameters;
     }
 
+    /**
+     * Reports a fill for mark to market. From then on, the quotes of the product are also published on
+     * {@code address.strategy_quotes}, so that positions are marked while replaying history.
+     *
+     * @param quantity signed quantity, negative for a sale
+     */
+    protected void reportFill(String productCode, int quantity, double price) {
+        tradedProducts.add(productCode);
+        JsonObject fill = new JsonObject()
+                .put("strategy", getClass().getSimpleName())
+                .put("productCode", productCode)
+                .put("quantity", quantity)
+                .put("price", price);
+        vertx.eventBus().publish(ADDRESS_STRATEGY_FILL, fill);
+    }
+
     private Map<String, Security> createProducts() throws IOException {
         Path contractDBPath = FileSystems.getDefault().getPath(contractDBPathName);
+        SecurityMaster securityMaster = securityMasterService.load(contractDBPath);
         String[] productCodes = getProductCodes();
         Map<String, Security> products = new HashMap<>();
         for (String productCode : productCodes) {
-            Security contract = contractDBService.loadContract(contractDBPath, productCode);
+            Security contract = securityMaster.get(productCode);
+            if (contract == null) {
+                throw new IOException("missing data for contract: " + productCode);
+            }
             products.put(productCode, contract);
         }
         return products;
@@ -111,19 +166,11 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
         Observable<Integer> initStream = vertx.executeBlockingObservable(future -> {
             try {
                 init();
-                MessageConsumer<JsonObject> historicalTickDataConsumer = vertx.eventBus().consumer(getHistoricalQuotesAddress());
-                Observable<JsonObject> historicalTickDataStream = historicalTickDataConsumer.bodyStream().toObservable();
-                Observable<Quote> tickStream = historicalTickDataStream
-                        .map(quoteJson -> {
-                            try {
-                                return quoteConverter.fromJSON(quoteJson);
-                            } catch (ParseException e) {
-                                throw Exceptions.propagate(e);
-                            }
-                        });
+                MessageConsumer<Quote> historicalTickDataConsumer = vertx.eventBus().consumer(getHistoricalQuotesAddress());
+                Observable<Quote> tickStream = historicalTickDataConsumer.bodyStream().toObservable();
 
                 Map<String, Security> contracts = createProducts();
-                final QuoteProcessor tickDataProcessor = new QuoteProcessor(getSampleDataUnit(), contracts);
+                final QuoteProcessor tickDataProcessor = new QuoteProcessor(new EpochSampler(getSamplingPeriod()), contracts);
                 tickStream.subscribe(
                         tickDataProcessor,
                         error -> {
@@ -158,6 +205,10 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
                         request.put(KEY_PRODUCT_CODES, codes);
                         request.put(KEY_REPLY_TO, getHistoricalQuotesAddress());
                         request.put(KEY_COMPLETION_ADDRESS, getRealtimeQuotesAddress());
+                        Duration warmUpPeriod = getWarmUpPeriod();
+                        if (warmUpPeriod != null) {
+                            request.put(KEY_FROM_MILLIS, System.currentTimeMillis() - warmUpPeriod.toMillis());
+                        }
                         log.info("requesting historical data for products: " + productCodes + " on address: " + HistoricalDataVerticle.ADDRESS_PROVIDE_HISTORY);
                         vertx.eventBus().send(HistoricalDataVerticle.ADDRESS_PROVIDE_HISTORY, request);
                     } catch (IOException e) {
@@ -201,78 +252,60 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
         }
     }
 
-    private class SampledQuoteHistory extends QuoteHistory {
-        private final ChronoUnit samplingUnit;
+    private class SampledQuoteHistory {
+        private final Integer capacity;
+        private final EpochSampler sampler;
+        private final Map<String, SampledQuoteSeries> seriesByProductCode = new HashMap<>();
         private Map<String, Quote> prevQuotes = new HashMap<>();
+        private long currentBucket = Long.MIN_VALUE;
 
-        SampledQuoteHistory(Integer capacity, ChronoUnit samplingUnit) {
-            super(capacity);
-            this.samplingUnit = samplingUnit;
-        }
-
-        private Quote first(String productCode) {
-            Deque<Quote> quotes = quotesByProductCode.get(productCode);
-            if (quotes == null || quotes.size() == 0) {
-                return null;
-            }
-            return quotes.getFirst();
-        }
-
-        private Quote last(String productCode) {
-            Deque<Quote> quotes = quotesByProductCode.get(productCode);
-            if (quotes == null || quotes.size() == 0) {
-                return null;
-            }
-            return quotes.getLast();
+        SampledQuoteHistory(Integer capacity, EpochSampler sampler) {
+            this.capacity = capacity;
+            this.sampler = sampler;
         }
 
+        /**
+         * When a quote starts a new bucket, the latest quote of every product is its sample for the buckets
+         * since the previous quote.
+         */
         void addQuoteSampled(Quote quote) {
-            String productCode = quote.getProductCode();
-            Quote prevQuote = prevQuotes.getOrDefault(productCode, null);
-            if (prevQuote != null && !quote.sameSampledTime(prevQuote, samplingUnit)) {
-                log.info("prev quotes:" + prevQuote.getLastModified());
-                log.info("current quotes:" + quote.getLastModified());
-                ZonedDateTime samplingTime = quote.getLastModified().minus(1, samplingUnit);
-                log.info("adding new sample for " + samplingTime);
-                Quote newQuote = quoteFactory.createFrom(prevQuote, samplingTime, samplingUnit);
-                ZonedDateTime lastModified = newQuote.getLastModified();
-                ZonedDateTime endDateTime = lastModified.minus(1, samplingUnit);
-                forwardFillQuotes(productCode, endDateTime);
-                addQuote(newQuote);
-                for (String currentProductCode : quotesByProductCode.keySet()) {
-                    if (currentProductCode.equals(productCode)) {
-                        continue;
+            long bucket = sampler.bucketOf(quote);
+            if (currentBucket != Long.MIN_VALUE && bucket > currentBucket) {
+                log.debug("adding samples up to " + sampler.sampleTime(bucket - 1));
+                for (Map.Entry<String, Quote> entry : prevQuotes.entrySet()) {
+                    SampledQuoteSeries series = seriesByProductCode.get(entry.getKey());
+                    if (series == null) {
+                        series = new SampledQuoteSeries(capacity, sampler);
+                        seriesByProductCode.put(entry.getKey(), series);
                     }
-                    forwardFillQuotes(currentProductCode, lastModified);
+                    series.add(currentBucket, entry.getValue());
+                    series.fillTo(bucket - 1);
                 }
             }
-            prevQuotes.put(productCode, quote);
-        }
-
-        private void forwardFillQuotes(String productCode, ZonedDateTime endDateTime) {
-            Quote first = first(productCode);
-            if (first != null) {
-                log.debug("filling samples from " + first.getLastModified() + " to " + endDateTime);
-                Quote last = last(productCode);
-                if (last == null) {
-                    return;
-                }
-                log.debug("last time: " + last.getLastModified());
-                while (last.getLastModified().isBefore(endDateTime)) {
-                    Quote fillQuote = quoteFactory.createFrom(last, samplingUnit, 1);
-                    log.debug("filling with sample for: " + fillQuote.getLastModified());
-                    last = addQuote(fillQuote);
-                }
+            if (bucket > currentBucket) {
+                currentBucket = bucket;
             }
+            prevQuotes.put(quote.getProductCode(), quote);
         }
 
         Map<String, DataFrame> getDataFrames() {
             Map<String, DataFrame> samplesDataframe = new HashMap<>();
-            getQuotes().forEach((productCode, quotes) -> {
-                samplesDataframe.put(productCode, createSamplesDataFrame(quotes));
-            });
+            seriesByProductCode.forEach((productCode, series) ->
+                    samplesDataframe.put(productCode, createSamplesDataFrame(series)));
             return samplesDataframe;
         }
+
+        /**
+         * @return number of samples of the product, 0 before its first sample
+         */
+        int size(String productCode) {
+            SampledQuoteSeries series = seriesByProductCode.get(productCode);
+            return series == null ? 0 : series.size();
+        }
+
+        public String toString() {
+            return seriesByProductCode.toString();
+        }
     }
 
     private class QuoteProcessor implements Action1<Quote> {
@@ -280,8 +313,8 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
         private final QuoteHistory quotes;
         private final Map<String, Security> contracts;
 
-        QuoteProcessor(ChronoUnit samplingUnit, Map<String, Security> contracts) {
-            this.sampleQuotes = new SampledQuoteHistory(getSampledDataSize(), samplingUnit);
+        QuoteProcessor(EpochSampler sampler, Map<String, Security> contracts) {
+            this.sampleQuotes = new SampledQuoteHistory(getSampledDataSize(), sampler);
             this.quotes = new QuoteHistory(getSampledDataSize());
             this.contracts = contracts;
         }
@@ -289,10 +322,13 @@ abstract class AbstractStrategyVerticle extends AbstractVerticle implements Quot
         @Override
         public void call(Quote quote) {
             sampleQuotes.addQuoteSampled(quote);
-            log.info("samples for product " + quote.getProductCode() + ":\n" + sampleQuotes);
+            log.debug("{} samples for product {}", sampleQuotes.size(quote.getProductCode()), quote.getProductCode());
             quotes.addQuote(quote);
-            log.info("forwarding order book to concrete strategy after update from: " + quote);
+            log.debug("forwarding order book to concrete strategy after update from: {}", quote);
             processQuotes(contracts, quotes.getQuotes(), sampleQuotes.getDataFrames());
+            if (tradedProducts.contains(quote.getProductCode())) {
+                vertx.eventBus().publish(ADDRESS_STRATEGY_QUOTES, quote, QuoteMessageCodec.deliveryOptions());
+            }
         }
     }
 
@@ -35,6 +35,7 @@ public class DummyMeanReversionStrategyVerticle extends AbstractStrategyVerticle
     private final static String IB_CODE_EUR_SEK = "37893488";
     @Value("${address.strategy_signal}")
     private String ADDRESS_STRATEGY_SIGNAL;
+    private int goldPosition = 0;
 
     @Override
     protected String[] getProductCodes() {
@@ -100,10 +101,33 @@ public class DummyMeanReversionStrategyVerticle extends AbstractStrategyVerticle
             count++;
             log.info("estimates: " + Arrays.asList(filter.getStateEstimation()));
         }
+        if (count > 0) {
+            double[] estimation = filter.getStateEstimation();
+            double residual = midGoldValues[count - 1] - (estimation[0] * midGDXValues[count - 1] + estimation[1]);
+            trade(quotes.get(IB_CODE_GCG7).peekLast(), residual);
+        }
 
         log.info("*** completed processing quotes ***");
     }
 
+    /**
+     * Single leg: only gold is traded, one lot at the touch, short when it is rich to its fitted value and long
+     * when it is cheap.
+     */
+    private void trade(Quote gold, double residual) {
+        if (gold == null || gold.getBestBidPrice() == null || gold.getBestAskPrice() == null) {
+            return;
+        }
+        double threshold = getParameters().getDouble("thresholdStep");
+        if (residual > threshold && goldPosition >= 0) {
+            reportFill(IB_CODE_GCG7, -1 - goldPosition, gold.getBestBidPrice().doubleValue());
+            goldPosition = -1;
+        } else if (residual < -threshold && goldPosition <= 0) {
+            reportFill(IB_CODE_GCG7, 1 - goldPosition, gold.getBestAskPrice().doubleValue());
+            goldPosition = 1;
+        }
+    }
+
     private static class LinearRegressionProcessModel implements ProcessModel {
         /**
          * Our model assumes the hidden state is a random walk, so the state transition
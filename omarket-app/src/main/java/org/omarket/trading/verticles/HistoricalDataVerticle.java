@@ -1,16 +1,26 @@
 package org.omarket.trading.verticles;
 
-import com.opencsv.CSVReader;
 import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.rxjava.core.AbstractVerticle;
 import io.vertx.rxjava.core.eventbus.MessageConsumer;
+import io.vertx.rxjava.core.eventbus.Message;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.omarket.ibroker.MarketData;
+import org.omarket.quotes.FixedPointQuote;
+import org.omarket.quotes.FixedPointQuoteImpl;
+import org.omarket.quotes.OrderBookSnapshotStore;
 import org.omarket.quotes.Quote;
-import org.omarket.quotes.QuoteConverter;
 import org.omarket.quotes.QuoteFactory;
+import org.omarket.quotes.TickOrderBookImpl;
+import org.omarket.quotes.ticks.CsvTickParser;
+import org.omarket.quotes.ticks.IndexedTickReplay;
+import org.omarket.quotes.ticks.MappedTickSource;
+import org.omarket.quotes.ticks.TickFileFormat;
+import org.omarket.trading.QuoteMessageCodec;
 import org.omarket.trading.util.OperatorMergeSorted;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,19 +28,24 @@ import org.springframework.stereotype.Component;
 import rx.Observable;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
-import static org.omarket.ibroker.MarketData.DATE_FORMAT;
 import static org.omarket.ibroker.MarketData.getTickFiles;
 import static rx.Observable.empty;
 
@@ -41,6 +56,9 @@ import static rx.Observable.empty;
 @Component
 public class HistoricalDataVerticle extends AbstractVerticle {
     public final static String ADDRESS_PROVIDE_HISTORY = "oot.historicalData.provide";
+    public final static String ADDRESS_PROVIDE_ORDER_BOOK = "oot.historicalData.orderBook";
+    public final static String KEY_PRODUCT_CODE = "productCode";
+    public final static String KEY_TIME_MILLIS = "timeMillis";
     private final QuoteFactory quoteFactory;
     @Value("${ibrokers.ticks.storagePath}")
     private String storageDir;
@@ -79,22 +97,29 @@ public class HistoricalDataVerticle extends AbstractVerticle {
                         final String address = message.getString(AbstractStrategyVerticle.KEY_REPLY_TO);
                         final String completionAddress = message.getString(AbstractStrategyVerticle.KEY_COMPLETION_ADDRESS);
                         log.info("data for contracts " + productCodes.toString() + " will be sent to " + address);
+                        final Long fromMillis = message.getLong(AbstractStrategyVerticle.KEY_FROM_MILLIS);
                         List<Observable<Quote>> quoteStreams = new LinkedList<>();
                         try {
                             for (Object productCode : productCodes.getList()) {
-                                Observable<Quote> stream = getHistoricalQuoteStream(storageDirPath, (String) productCode);
+                                Observable<Quote> stream;
+                                if (fromMillis == null) {
+                                    stream = getHistoricalQuoteStream(storageDirPath, (String) productCode);
+                                } else {
+                                    stream = getHistoricalQuoteStream(storageDirPath, (String) productCode, fromMillis,
+                                            System.currentTimeMillis());
+                                }
                                 quoteStreams.add(stream);
                             }
                         } catch (IOException e) {
                             log.error("failed while accessing historical data", e);
                             future.fail(e);
                         }
+                        DeliveryOptions quoteDelivery = QuoteMessageCodec.deliveryOptions();
                         mergeQuoteStreams(quoteStreams)
-                                .map(QuoteConverter::toJSON)
                                 .forEach(
-                                        quoteJson -> {
-                                            log.debug("sending: " + quoteJson + " on address " + address);
-                                            vertx.eventBus().send(address, quoteJson);
+                                        quote -> {
+                                            log.debug("sending: " + quote + " on address " + address);
+                                            vertx.eventBus().send(address, quote, quoteDelivery);
                                         },
                                         future::fail,
                                         () -> {
@@ -115,42 +140,203 @@ public class HistoricalDataVerticle extends AbstractVerticle {
                             .subscribe();
                 });
         log.info("ready to provide historical data upon request (address: " + ADDRESS_PROVIDE_HISTORY + ")");
+        setupOrderBookSnapshots(storageDirPath);
         startFuture.complete();
     }
 
+    /**
+     * Replies with the recorded order book nearest to (at or before) the requested time, so that a replay
+     * starting at that time does not begin from an empty book. The reply is empty when no book was recorded.
+     */
+    private void setupOrderBookSnapshots(final Path storageDirPath) {
+        final MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(ADDRESS_PROVIDE_ORDER_BOOK);
+        Observable<Message<JsonObject>> requestStream = consumer.toObservable();
+        requestStream.subscribe(message -> {
+            final String productCode = message.body().getString(KEY_PRODUCT_CODE);
+            final long timeMillis = message.body().getLong(KEY_TIME_MILLIS);
+            vertx.<JsonObject>executeBlocking(future -> {
+                try {
+                    future.complete(getOrderBookSnapshot(storageDirPath, productCode, timeMillis));
+                } catch (IOException e) {
+                    log.error("failed to read order book of " + productCode, e);
+                    future.fail(e);
+                }
+            }, result -> {
+                if (result.succeeded()) {
+                    message.reply(result.result());
+                } else {
+                    message.fail(500, result.cause().getMessage());
+                }
+            });
+        });
+        log.info("ready to provide order books upon request (address: " + ADDRESS_PROVIDE_ORDER_BOOK + ")");
+    }
+
+    /**
+     * @return levels of the order book recorded at or before the given time, an empty object if there is none
+     */
+    public JsonObject getOrderBookSnapshot(final Path storageDirPath, final String productCode, final long timeMillis)
+            throws IOException {
+        Path productStorage = storageDirPath.resolve(marketData.createChannelQuote(productCode));
+        OrderBookSnapshotStore store = new OrderBookSnapshotStore(productStorage, Duration.ZERO);
+        ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneOffset.UTC);
+        Path snapshotPath = store.findNearest(time);
+        if (snapshotPath == null) {
+            log.info("no order book recorded for " + productCode + " before " + time);
+            return new JsonObject();
+        }
+        TickOrderBookImpl orderBook = OrderBookSnapshotStore.read(snapshotPath);
+        return new JsonObject()
+                .put(KEY_PRODUCT_CODE, productCode)
+                .put(KEY_TIME_MILLIS, store.findNearestTime(time).toInstant().toEpochMilli())
+                .put("bids", toJson(orderBook.getBidOrderLevels()))
+                .put("asks", toJson(orderBook.getAskOrderLevels()));
+    }
+
+    private static JsonArray toJson(List<Pair<BigDecimal, Integer>> levels) {
+        JsonArray json = new JsonArray();
+        for (Pair<BigDecimal, Integer> level : levels) {
+            json.add(new JsonArray().add(level.getLeft().toPlainString()).add(level.getRight()));
+        }
+        return json;
+    }
+
     public Observable<Quote> getHistoricalQuoteStream(final Path storageDirPath, final String productCode) throws IOException {
         Path productStorage = storageDirPath.resolve(marketData.createChannelQuote(productCode));
         log.info("accessing storage: " + productStorage);
-        Observable<String[]> quotesStream = empty();
+        Observable<Quote> quotesStream = empty();
         if (Files.exists(productStorage)) {
             Map<String, Path> tickFiles = getTickFiles(productCode, productStorage);
-            for (Map.Entry<String, Path> entry : tickFiles.entrySet()) {
-                String yyyymmddhh = entry.getKey();
-                Path filePath = entry.getValue();
-                CSVReader reader = new CSVReader(Files.newBufferedReader(filePath, Charset.forName("US-ASCII")));
-                quotesStream = quotesStream.concatWith(Observable.from(reader).map(row -> {
-                    row[0] = yyyymmddhh + ":" + row[0];
-                    return row;
-                }));
+            List<Path> binaryFiles = new ArrayList<>();
+            for (Path filePath : tickFiles.values()) {
+                if (filePath.getFileName().toString().endsWith(TickFileFormat.EXTENSION)) {
+                    binaryFiles.add(filePath);
+                    continue;
+                }
+                if (!binaryFiles.isEmpty()) {
+                    quotesStream = quotesStream.concatWith(getMappedQuoteStream(new ArrayList<>(binaryFiles), productCode));
+                    binaryFiles.clear();
+                }
+                quotesStream = quotesStream.concatWith(getCsvQuoteStream(filePath, productCode));
+            }
+            if (!binaryFiles.isEmpty()) {
+                quotesStream = quotesStream.concatWith(getMappedQuoteStream(binaryFiles, productCode));
             }
         } else {
             log.info("storage data not found: " + productStorage);
         }
-        return quotesStream.map(row -> createQuote(row, productCode));
+        return quotesStream;
+    }
+
+    /**
+     * Replays the ticks recorded in {@code [fromMillis, toMillis[}, seeking through the index of the product
+     * instead of walking its whole storage.
+     */
+    public Observable<Quote> getHistoricalQuoteStream(final Path storageDirPath, final String productCode,
+                                                      final long fromMillis, final long toMillis) {
+        Path productStorage = storageDirPath.resolve(marketData.createChannelQuote(productCode));
+        log.info("accessing storage: " + productStorage + " from " + fromMillis + " to " + toMillis);
+        int instrumentId = Integer.parseInt(productCode);
+        return Observable.defer(() -> {
+            IndexedTickReplay replay;
+            try {
+                replay = new IndexedTickReplay(productStorage, fromMillis, toMillis, System.currentTimeMillis());
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+            return Observable.from(() -> new QuoteIterator() {
+                @Override
+                protected Quote read() throws IOException {
+                    if (!replay.next()) {
+                        return null;
+                    }
+                    return new FixedPointQuoteImpl(instrumentId, productCode, replay.getScale())
+                            .set(TimeUnit.MILLISECONDS.toNanos(replay.getEpochMillis()), replay.getBidSize(),
+                                    replay.getBidMantissa(), replay.getAskMantissa(), replay.getAskSize());
+                }
+            });
+        });
+    }
+
+    /**
+     * Replays consecutive binary tick files through memory mappings, each file being unmapped once read or when
+     * the subscription ends. Quotes are copied out of the flyweight of the source, since they are sent
+     * asynchronously.
+     */
+    private Observable<Quote> getMappedQuoteStream(final List<Path> filePaths, final String productCode) {
+        int instrumentId = Integer.parseInt(productCode);
+        return Observable.using(
+                () -> new MappedTickSource(filePaths, instrumentId, productCode, true),
+                source -> Observable.from(() -> new QuoteIterator() {
+                    @Override
+                    protected Quote read() throws IOException {
+                        FixedPointQuote next = source.next();
+                        if (next == null) {
+                            return null;
+                        }
+                        return new FixedPointQuoteImpl(instrumentId, productCode, next.getScale()).copyFrom(next);
+                    }
+                }),
+                MappedTickSource::close);
     }
 
-    private Quote createQuote(String[] fields, String productCode) {
-        Quote quote = null;
-        if (fields.length > 0) {
-            LocalDateTime timestamp = LocalDateTime.parse(fields[0], DATE_FORMAT);
-            ZonedDateTime zonedTimestamp = ZonedDateTime.of(timestamp, ZoneOffset.UTC);
-            Integer volumeBid = Integer.valueOf(fields[1]);
-            BigDecimal priceBid = new BigDecimal(fields[2]);
-            BigDecimal priceAsk = new BigDecimal(fields[3]);
-            Integer volumeAsk = Integer.valueOf(fields[4]);
-            quote = quoteFactory.create(zonedTimestamp, volumeBid, priceBid, priceAsk, volumeAsk, productCode);
+    /**
+     * Parses an hourly CSV file from its bytes when the stream reaches it, the file being read at once.
+     */
+    private Observable<Quote> getCsvQuoteStream(final Path filePath, final String productCode) {
+        int instrumentId = Integer.parseInt(productCode);
+        return Observable.defer(() -> {
+            ByteBuffer content;
+            try {
+                content = ByteBuffer.wrap(Files.readAllBytes(filePath));
+            } catch (IOException e) {
+                return Observable.error(e);
+            }
+            CsvTickParser parser = new CsvTickParser(content, CsvTickParser.hourStartMillis(filePath),
+                    CsvTickParser.scanScale(content));
+            return Observable.from(() -> new QuoteIterator() {
+                @Override
+                protected Quote read() {
+                    if (!parser.next()) {
+                        return null;
+                    }
+                    return new FixedPointQuoteImpl(instrumentId, productCode, parser.getScale())
+                            .set(TimeUnit.MILLISECONDS.toNanos(parser.getEpochMillis()), parser.getBidSize(),
+                                    parser.getBidMantissa(), parser.getAskMantissa(), parser.getAskSize());
+                }
+            });
+        });
+    }
+
+    /**
+     * Iterates over quotes read one step ahead, a null quote marking the end.
+     */
+    private static abstract class QuoteIterator implements Iterator<Quote> {
+        private Quote next = null;
+
+        protected abstract Quote read() throws IOException;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Quote next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Quote current = next;
+            next = null;
+            return current;
         }
-        return quote;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package org.omarket.trading.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.ibroker.MarketData;
+import org.omarket.quotes.PortfolioProfitAndLoss;
+import org.omarket.quotes.Quote;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the P&L of strategy positions marked to the mid of their quote channels.
+ * <p>
+ * Strategies report their fills on {@code address.strategy_fill}, as
+ * {@code {"strategy": ..., "productCode": ..., "quantity": ..., "price": ...}}. The first fill of a product
+ * subscribes to its quote channel. Strategies replaying history also publish the quotes of the products they
+ * traded on {@code address.strategy_quotes}, since no quote channel is fed then. A quote only revalues the
+ * positions held on its product, and only when its mid changed. P&L updates are coalesced per strategy: at most one message per strategy and per publication
+ * interval is published on {@code address.strategy_pnl}, holding the latest values.
+ */
+@Slf4j
+@Component
+public class MarkToMarketVerticle extends AbstractVerticle {
+
+    private static final int INSTRUMENTS_CAPACITY = 16;
+
+    private final MarketData marketData;
+    @Value("${address.strategy_fill}")
+    private String ADDRESS_STRATEGY_FILL;
+    @Value("${address.strategy_pnl}")
+    private String ADDRESS_STRATEGY_PNL;
+    @Value("${address.strategy_quotes}")
+    private String ADDRESS_STRATEGY_QUOTES;
+
+    private final Map<String, MarkedProduct> products = new HashMap<>();
+    private final Map<String, StrategyPositions> strategies = new HashMap<>();
+    private final Set<StrategyPositions> modifiedStrategies = new LinkedHashSet<>();
+
+    @Autowired
+    public MarkToMarketVerticle(MarketData marketData) {
+        this.marketData = marketData;
+    }
+
+    public void start() {
+        long publishInterval = config().getLong("oot.pnl.publishIntervalMs", 250L);
+        vertx.eventBus().consumer(ADDRESS_STRATEGY_FILL, (Message<JsonObject> message) -> {
+            JsonObject fill = message.body();
+            addFill(fill.getString("strategy"), fill.getString("productCode"), fill.getInteger("quantity"),
+                    fill.getDouble("price"));
+        });
+        vertx.eventBus().consumer(ADDRESS_STRATEGY_QUOTES, (Message<Quote> message) -> {
+            MarkedProduct product = products.get(message.body().getProductCode());
+            if (product != null) {
+                onQuote(product, message.body());
+            }
+        });
+        vertx.setPeriodic(publishInterval, timerId -> publish());
+        log.info("mark to market started, publishing every {} ms", publishInterval);
+    }
+
+    private void addFill(String strategyName, String productCode, int quantity, double price) {
+        StrategyPositions strategy = strategies.get(strategyName);
+        if (strategy == null) {
+            strategy = new StrategyPositions(strategyName);
+            strategies.put(strategyName, strategy);
+        }
+        MarkedProduct product = products.get(productCode);
+        if (product == null) {
+            product = new MarkedProduct(productCode, products.size());
+            products.put(productCode, product);
+            subscribe(product);
+        }
+        if (!product.holders.contains(strategy)) {
+            product.holders.add(strategy);
+        }
+        strategy.pnl.addFill(product.instrumentId, quantity, price);
+        if (!Double.isNaN(product.mid)) {
+            strategy.pnl.mark(product.instrumentId, product.mid);
+        }
+        modifiedStrategies.add(strategy);
+    }
+
+    private void subscribe(MarkedProduct product) {
+        String channel = marketData.createChannelQuote(product.productCode);
+        vertx.eventBus().consumer(channel, (Message<Quote> message) -> onQuote(product, message.body()));
+        log.info("marking positions on {} from {}", product.productCode, channel);
+    }
+
+    private void onQuote(MarkedProduct product, Quote quote) {
+        if (quote.getBestBidPrice() == null || quote.getBestAskPrice() == null) {
+            return;
+        }
+        onMid(product, 0.5 * (quote.getBestBidPrice().doubleValue() + quote.getBestAskPrice().doubleValue()));
+    }
+
+    private void onMid(MarkedProduct product, double mid) {
+        if (mid == product.mid) {
+            return;
+        }
+        product.mid = mid;
+        for (StrategyPositions strategy : product.holders) {
+            strategy.pnl.mark(product.instrumentId, mid);
+            modifiedStrategies.add(strategy);
+        }
+    }
+
+    private void publish() {
+        if (modifiedStrategies.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (StrategyPositions strategy : modifiedStrategies) {
+            JsonObject update = new JsonObject()
+                    .put("time", now)
+                    .put("strategy", strategy.name)
+                    .put("realizedPnl", strategy.pnl.getRealizedPnl())
+                    .put("unrealizedPnl", strategy.pnl.getUnrealizedPnl())
+                    .put("totalPnl", strategy.pnl.getTotalPnl());
+            vertx.eventBus().publish(ADDRESS_STRATEGY_PNL, update);
+        }
+        modifiedStrategies.clear();
+    }
+
+    private static final class MarkedProduct {
+        private final String productCode;
+        private final int instrumentId;
+        private final List<StrategyPositions> holders = new ArrayList<>();
+        private double mid = Double.NaN;
+
+        MarkedProduct(String productCode, int instrumentId) {
+            this.productCode = productCode;
+            this.instrumentId = instrumentId;
+        }
+    }
+
+    private static final class StrategyPositions {
+        private final String name;
+        private final PortfolioProfitAndLoss pnl = new PortfolioProfitAndLoss(INSTRUMENTS_CAPACITY, 0.);
+
+        StrategyPositions(String name) {
+            this.name = name;
+        }
+    }
+}
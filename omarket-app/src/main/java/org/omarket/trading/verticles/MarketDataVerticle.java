@@ -11,9 +11,10 @@ import io.vertx.rxjava.core.AbstractVerticle;
 import io.vertx.rxjava.core.eventbus.Message;
 import io.vertx.rxjava.core.eventbus.MessageConsumer;
 import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.Security;
 import org.omarket.trading.ContractDBService;
-import org.omarket.trading.Security;
 import org.omarket.ibroker.IBrokerConnectionFailure;
+import org.omarket.trading.SecurityMasterService;
 import org.omarket.trading.VertxIBrokerClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -21,7 +22,6 @@ import org.springframework.stereotype.Component;
 import rx.Observable;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -37,6 +37,7 @@ public class MarketDataVerticle extends AbstractVerticle {
     public static final JsonObject EMPTY = new JsonObject();
     private final static Map<String, Security> subscribedProducts = new HashMap<>();
     private final ContractDBService contractDBService;
+    private final SecurityMasterService securityMasterService;
 
     private final VertxIBrokerClient ibrokersClient;
     @Value("${ibrokers.host}")
@@ -69,10 +70,16 @@ public class MarketDataVerticle extends AbstractVerticle {
     private String ADDRESS_ADMIN_COMMAND;
     @Value("${address.error_message_prefix}")
     private String ADDRESS_ERROR_MESSAGE_PREFIX;
+    @Value("${address.recorder_metrics}")
+    private String ADDRESS_RECORDER_METRICS;
+    @Value("${ibrokers.metrics.publishIntervalMs:5000}")
+    private long recorderMetricsIntervalMs;
 
     @Autowired
-    public MarketDataVerticle(ContractDBService contractDBService, VertxIBrokerClient ibrokersClient) {
+    public MarketDataVerticle(ContractDBService contractDBService, SecurityMasterService securityMasterService,
+                              VertxIBrokerClient ibrokersClient) {
         this.contractDBService = contractDBService;
+        this.securityMasterService = securityMasterService;
         this.ibrokersClient = ibrokersClient;
     }
 
@@ -83,6 +90,11 @@ public class MarketDataVerticle extends AbstractVerticle {
         ibrokersClient.setContractDBService(contractDBService);
         ibrokersClient.setStorageDirPath(storageDirPath);
         ibrokersClient.setContractDBPath(contractDBPath);
+        try {
+            securityMasterService.load(contractDBPath);
+        } catch (IOException e) {
+            log.error("failed to load security master, contracts will be read from requests", e);
+        }
         ibrokersClient.connect(Integer.valueOf(ibrokersClientId), ibrokersHost, Integer.valueOf(ibrokersPort));
     }
 
@@ -96,6 +108,7 @@ public class MarketDataVerticle extends AbstractVerticle {
                 setupHistoricalEOD();
                 setupSubscribeTick();
                 setupUnsubscribeTick();
+                setupRecorderMetrics();
                 future.complete();
             } catch (IOException ioe) {
                 log.error("error during message processing", ioe);
@@ -112,6 +125,35 @@ public class MarketDataVerticle extends AbstractVerticle {
         });
     }
 
+    @Override
+    public void stop(Future<Void> stopFuture) throws Exception {
+        log.info("stopping market data");
+        vertx.executeBlocking(future -> {
+            ibrokersClient.close();
+            future.complete();
+        }, result -> {
+            log.info("stopped market data verticle");
+            stopFuture.complete();
+        });
+    }
+
+    /**
+     * Requests carry the contract as stored in the contracts database. The instance of the security master is
+     * used when it knows the contract, so that its tick size is shared with the rest of the application; only
+     * contracts downloaded since the master was loaded are parsed from the request.
+     */
+    private Security resolveSecurity(JsonObject contractJson) {
+        JsonObject contract = contractJson.getJsonObject("m_contract");
+        if (contract != null && contract.getInteger("m_conid") != null) {
+            Security security = securityMasterService.current().get(contract.getInteger("m_conid"));
+            if (security != null) {
+                return security;
+            }
+        }
+        com.google.gson.JsonObject googleJson = new JsonParser().parse(contractJson.encode()).getAsJsonObject();
+        return Security.fromJson(googleJson);
+    }
+
     private static JsonObject createErrorReply(JsonObject errorMessage, JsonObject content) {
         JsonObject result = new JsonObject();
         result.put("error", errorMessage);
@@ -126,22 +168,27 @@ public class MarketDataVerticle extends AbstractVerticle {
         return result;
     }
 
+    /**
+     * Publishes the recorder metrics on {@code address.recorder_metrics}, the rates being computed over the
+     * publication interval.
+     */
+    private void setupRecorderMetrics() {
+        vertx.setPeriodic(recorderMetricsIntervalMs, timerId ->
+                vertx.eventBus().publish(ADDRESS_RECORDER_METRICS, ibrokersClient.sampleRecorderMetrics()));
+        log.info("publishing recorder metrics every {} ms on {}", recorderMetricsIntervalMs, ADDRESS_RECORDER_METRICS);
+    }
+
     private void setupSubscribeTick() {
         Observable<Message<JsonObject>> consumer =
                 vertx.eventBus().<JsonObject>consumer(ADDRESS_SUBSCRIBE_TICK).toObservable();
         consumer.subscribe(message -> {
-            io.vertx.core.json.JsonObject vertxBody = message.body();
-            String stringSecurity = vertxBody.encode();
-            JsonParser parser = new JsonParser();
-            com.google.gson.JsonObject googleJson = parser.parse(stringSecurity).getAsJsonObject();
-            final Security security = Security.fromJson(googleJson);
+            final Security security = resolveSecurity(message.body());
             log.info("received tick subscription request for: " + security);
             String productCode = security.getCode();
             if (!subscribedProducts.containsKey(productCode)) {
                 vertx.executeBlocking(future -> {
                     try {
                         log.info("subscribing: " + productCode);
-                        BigDecimal minTick = security.getMinTick();
                         subscribedProducts.put(productCode, security);
                         String errorChannel = ibrokersClient.subscribe(security);
                         if (errorChannel != null) {
@@ -223,11 +270,7 @@ public class MarketDataVerticle extends AbstractVerticle {
         final MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(ADDRESS_EOD_REQUEST);
         Observable<Message<JsonObject>> histRequestStream = consumer.toObservable();
         histRequestStream.subscribe(request -> {
-            io.vertx.core.json.JsonObject vertxBody = request.body();
-            String stringSecurity = vertxBody.encode();
-            JsonParser parser = new JsonParser();
-            com.google.gson.JsonObject googleJson = parser.parse(stringSecurity).getAsJsonObject();
-            final Security contractDetails = Security.fromJson(googleJson);
+            final Security contractDetails = resolveSecurity(request.body());
             String productCode = contractDetails.getCode();
             log.info("received historical eod request for: " + productCode);
             String replyAddress = ADDRESS_EOD_DATA_PREFIX + "." + productCode;
@@ -1,6 +1,7 @@
 package org.omarket.trading.verticles;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.json.JsonObject;
@@ -24,14 +25,28 @@ public class MonitorVerticle extends AbstractVerticle {
     private String ADDRESS_STRATEGY_SIGNAL;
     @Value("${address.monitor_strategy}")
     private String ADDRESS_MONITOR_STRATEGY;
+    @Value("${address.strategy_pnl}")
+    private String ADDRESS_STRATEGY_PNL;
+    @Value("${address.recorder_metrics}")
+    private String ADDRESS_RECORDER_METRICS;
+    private JsonObject recorderMetrics = new JsonObject();
 
-    public void start() {
+    public void start(Future<Void> startFuture) {
         Router router = Router.router(vertx);
         BridgeOptions bridgeOptions = new BridgeOptions();
         PermittedOptions permittedOptions = new PermittedOptions();
         permittedOptions.setAddress(ADDRESS_MONITOR_STRATEGY);
         bridgeOptions.addOutboundPermitted(permittedOptions);
+        PermittedOptions permittedPnl = new PermittedOptions();
+        permittedPnl.setAddress(ADDRESS_STRATEGY_PNL);
+        bridgeOptions.addOutboundPermitted(permittedPnl);
+        PermittedOptions permittedRecorder = new PermittedOptions();
+        permittedRecorder.setAddress(ADDRESS_RECORDER_METRICS);
+        bridgeOptions.addOutboundPermitted(permittedRecorder);
 
+        router.get("/metrics/recorder").handler(context -> context.response()
+                .putHeader("content-type", "application/json")
+                .end(recorderMetrics.encode()));
         router.route("/oot/*").handler(SockJSHandler.create(vertx).bridge(bridgeOptions));
         router.route().handler(StaticHandler.create());
 
@@ -39,7 +54,15 @@ public class MonitorVerticle extends AbstractVerticle {
         server.requestHandler(router::accept);
         String host = config().getString("oot.monitor.host", "0.0.0.0");
         Integer port = config().getInteger("oot.monitor.port", 8080);
-        server.listen(port, host);
+        server.listen(port, host, listening -> {
+            if (listening.succeeded()) {
+                log.info("monitor listening on {}:{}", host, port);
+                startFuture.complete();
+            } else {
+                log.error("monitor failed to listen on " + host + ":" + port, listening.cause());
+                startFuture.fail(listening.cause());
+            }
+        });
 
         vertx.eventBus().consumer(ADDRESS_STRATEGY_SIGNAL, (Message<JsonObject> message) -> {
             Double signal = message.body().getDouble("signal");
@@ -50,6 +73,8 @@ public class MonitorVerticle extends AbstractVerticle {
                     .put("thresholdLow1", threshold1);
             vertx.eventBus().publish(ADDRESS_MONITOR_STRATEGY, newSample);
         });
+        vertx.eventBus().consumer(ADDRESS_RECORDER_METRICS,
+                (Message<JsonObject> message) -> recorderMetrics = message.body());
 
     }
 }
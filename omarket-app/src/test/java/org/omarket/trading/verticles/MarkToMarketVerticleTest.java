@@ -0,0 +1,83 @@
+package org.omarket.trading.verticles;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omarket.ibroker.MarketData;
+import org.omarket.quotes.Quote;
+import org.omarket.quotes.QuoteFactory;
+import org.omarket.trading.QuoteMessageCodec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class MarkToMarketVerticleTest {
+
+    private static final String ADDRESS_STRATEGY_FILL = "test.strategyFill";
+    private static final String ADDRESS_STRATEGY_PNL = "test.strategyPnl";
+    private static final String ADDRESS_STRATEGY_QUOTES = "test.strategyQuotes";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() throws Exception {
+        MarkToMarketVerticle markToMarket = new MarkToMarketVerticle(new MarketData());
+        ReflectionTestUtils.setField(markToMarket, "ADDRESS_STRATEGY_FILL", ADDRESS_STRATEGY_FILL);
+        ReflectionTestUtils.setField(markToMarket, "ADDRESS_STRATEGY_PNL", ADDRESS_STRATEGY_PNL);
+        ReflectionTestUtils.setField(markToMarket, "ADDRESS_STRATEGY_QUOTES", ADDRESS_STRATEGY_QUOTES);
+        vertx = Vertx.vertx();
+        QuoteMessageCodec.register(vertx.eventBus());
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        DeploymentOptions options = new DeploymentOptions()
+                .setConfig(new JsonObject().put("oot.pnl.publishIntervalMs", 10L));
+        vertx.deployVerticle(markToMarket, options, result -> {
+            if (result.succeeded()) {
+                deployed.complete(result.result());
+            } else {
+                deployed.completeExceptionally(result.cause());
+            }
+        });
+        deployed.get(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(result -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void fillMarkedToQuote() throws Exception {
+        CompletableFuture<JsonObject> marked = new CompletableFuture<>();
+        vertx.eventBus().consumer(ADDRESS_STRATEGY_PNL, (Message<JsonObject> message) -> {
+            if (message.body().getDouble("unrealizedPnl") != 0.) {
+                marked.complete(message.body());
+            }
+        });
+        JsonObject fill = new JsonObject()
+                .put("strategy", "test")
+                .put("productCode", "12087817")
+                .put("quantity", 10)
+                .put("price", 100.);
+        vertx.eventBus().publish(ADDRESS_STRATEGY_FILL, fill);
+        Quote quote = new QuoteFactory().create(ZonedDateTime.now(), 5, new BigDecimal("100.5"),
+                new BigDecimal("101.5"), 5, "12087817");
+        vertx.eventBus().publish(ADDRESS_STRATEGY_QUOTES, quote, QuoteMessageCodec.deliveryOptions());
+
+        JsonObject pnl = marked.get(10, TimeUnit.SECONDS);
+        assertEquals("test", pnl.getString("strategy"));
+        assertEquals(0., pnl.getDouble("realizedPnl"), 1e-9);
+        assertEquals(10., pnl.getDouble("unrealizedPnl"), 1e-9);
+        assertEquals(10., pnl.getDouble("totalPnl"), 1e-9);
+    }
+}
@@ -0,0 +1,88 @@
+package org.omarket.trading.verticles;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class MonitorVerticleTest {
+
+    private static final String ADDRESS_RECORDER_METRICS = "test.recorderMetrics";
+
+    private Vertx vertx;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        MonitorVerticle monitor = new MonitorVerticle();
+        ReflectionTestUtils.setField(monitor, "ADDRESS_STRATEGY_SIGNAL", "test.strategySignal");
+        ReflectionTestUtils.setField(monitor, "ADDRESS_MONITOR_STRATEGY", "test.monitorStrategy");
+        ReflectionTestUtils.setField(monitor, "ADDRESS_STRATEGY_PNL", "test.strategyPnl");
+        ReflectionTestUtils.setField(monitor, "ADDRESS_RECORDER_METRICS", ADDRESS_RECORDER_METRICS);
+        vertx = Vertx.vertx();
+        CompletableFuture<String> deployed = new CompletableFuture<>();
+        DeploymentOptions options = new DeploymentOptions()
+                .setConfig(new JsonObject().put("oot.monitor.host", "localhost").put("oot.monitor.port", port));
+        vertx.deployVerticle(monitor, options, result -> {
+            if (result.succeeded()) {
+                deployed.complete(result.result());
+            } else {
+                deployed.completeExceptionally(result.cause());
+            }
+        });
+        deployed.get(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(result -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+    }
+
+    private JsonObject getRecorderMetrics() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/metrics/recorder")
+                .openConnection();
+        try (InputStream input = connection.getInputStream();
+             Scanner scanner = new Scanner(input, StandardCharsets.UTF_8.name())) {
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("application/json", connection.getHeaderField("content-type"));
+            return new JsonObject(scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void servesLatestRecorderMetrics() throws Exception {
+        assertEquals(new JsonObject(), getRecorderMetrics());
+        JsonObject metrics = new JsonObject().put("time", 1525266000000L).put("writeLatency",
+                new JsonObject().put("count", 3L));
+        vertx.eventBus().publish(ADDRESS_RECORDER_METRICS, metrics);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        JsonObject served = getRecorderMetrics();
+        while (served.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            served = getRecorderMetrics();
+        }
+        assertEquals(metrics, served);
+    }
+}
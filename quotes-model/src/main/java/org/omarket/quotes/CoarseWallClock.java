@@ -0,0 +1,46 @@
+package org.omarket.quotes;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall clock refreshed in the background at a fixed resolution.
+ * <p>
+ * Reading the time is a single volatile read, which suits threads such as the market data callbacks that
+ * timestamp every update but do not need more precision than the refresh period.
+ */
+public class CoarseWallClock implements QuoteClock, Closeable {
+
+    private final ScheduledExecutorService refresher;
+    private volatile long epochNanos;
+
+    /**
+     * @param resolutionMillis refresh period, in milliseconds
+     */
+    public CoarseWallClock(long resolutionMillis) {
+        assert resolutionMillis > 0;
+        refresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coarse-wall-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleAtFixedRate(this::refresh, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    @Override
+    public long epochNanos() {
+        return epochNanos;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
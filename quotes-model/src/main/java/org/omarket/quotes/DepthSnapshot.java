@@ -0,0 +1,95 @@
+package org.omarket.quotes;
+
+/**
+ * Immutable copy of the top levels of an order book, safe to share between threads.
+ */
+public final class DepthSnapshot {
+
+    private final int instrumentId;
+    private final long version;
+    private final double[] bidPrices;
+    private final long[] bidQuantities;
+    private final int[] bidOrderCounts;
+    private final int bidLevels;
+    private final double[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askOrderCounts;
+    private final int askLevels;
+
+    /**
+     * @param orderBook book to be copied, only read by the calling thread
+     * @param depth     maximum number of levels copied on each side
+     * @param version   increasing number of the snapshot for that instrument
+     */
+    DepthSnapshot(int instrumentId, OrderBook orderBook, int depth, long version) {
+        this.instrumentId = instrumentId;
+        this.version = version;
+        this.bidPrices = new double[depth];
+        this.bidQuantities = new long[depth];
+        this.bidOrderCounts = new int[depth];
+        this.bidLevels = orderBook.getBidDepth(bidPrices, bidQuantities, bidOrderCounts);
+        this.askPrices = new double[depth];
+        this.askQuantities = new long[depth];
+        this.askOrderCounts = new int[depth];
+        this.askLevels = orderBook.getAskDepth(askPrices, askQuantities, askOrderCounts);
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getBidLevels() {
+        return bidLevels;
+    }
+
+    public int getAskLevels() {
+        return askLevels;
+    }
+
+    /**
+     * @param level 0 for the best bid
+     */
+    public double getBidPrice(int level) {
+        assert level < bidLevels;
+        return bidPrices[level];
+    }
+
+    public long getBidQuantity(int level) {
+        assert level < bidLevels;
+        return bidQuantities[level];
+    }
+
+    public int getBidOrderCount(int level) {
+        assert level < bidLevels;
+        return bidOrderCounts[level];
+    }
+
+    /**
+     * @param level 0 for the best ask
+     */
+    public double getAskPrice(int level) {
+        assert level < askLevels;
+        return askPrices[level];
+    }
+
+    public long getAskQuantity(int level) {
+        assert level < askLevels;
+        return askQuantities[level];
+    }
+
+    public int getAskOrderCount(int level) {
+        assert level < askLevels;
+        return askOrderCounts[level];
+    }
+
+    @Override
+    public String toString() {
+        String bid = bidLevels == 0 ? "null" : bidQuantities[0] + " " + bidPrices[0];
+        String ask = askLevels == 0 ? "null" : askPrices[0] + " " + askQuantities[0];
+        return "< " + bid + " / " + ask + " > (" + instrumentId + " #" + version + ")";
+    }
+}
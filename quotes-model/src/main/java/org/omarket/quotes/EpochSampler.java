@@ -0,0 +1,131 @@
+package org.omarket.quotes;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits time into buckets of a fixed duration, counted from the epoch.
+ * <p>
+ * Buckets can have any duration (250ms, 5s, ...), unlike the {@link ChronoUnit} truncation used by
+ * {@link Quote#sameSampledTime(Quote, java.time.temporal.TemporalUnit)}. Bucket {@code n} covers
+ * {@code [n * duration, (n + 1) * duration[} and its sample is stamped at the end of the bucket, as done by
+ * {@link QuoteFactory#toSampledTime}. Since consecutive ticks mostly fall in the same bucket, the boundaries of
+ * the last bucket found are kept: {@link #bucketOf(long)} then only compares timestamps. A sampler is therefore
+ * meant to be used by a single thread.
+ */
+public class EpochSampler {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long bucketNanos;
+    private long currentBucket = 0;
+    private long currentStart = 0;
+    private long currentEnd;
+
+    /**
+     * @param bucketNanos duration of a bucket in nanoseconds
+     */
+    public EpochSampler(long bucketNanos) {
+        if (bucketNanos <= 0) {
+            throw new IllegalArgumentException("bucket duration must be positive: " + bucketNanos);
+        }
+        this.bucketNanos = bucketNanos;
+        this.currentEnd = bucketNanos;
+    }
+
+    public EpochSampler(Duration bucket) {
+        this(bucket.getSeconds() * NANOS_PER_SECOND + bucket.getNano());
+    }
+
+    public static EpochSampler ofMillis(long bucketMillis) {
+        return new EpochSampler(bucketMillis * NANOS_PER_MILLI);
+    }
+
+    public long getBucketNanos() {
+        return bucketNanos;
+    }
+
+    /**
+     * @param epochNanos nanoseconds since epoch
+     * @return index of the bucket holding the given time
+     */
+    public long bucketOf(long epochNanos) {
+        if (epochNanos < currentStart || epochNanos >= currentEnd) {
+            currentBucket = Math.floorDiv(epochNanos, bucketNanos);
+            currentStart = currentBucket * bucketNanos;
+            currentEnd = currentStart + bucketNanos;
+        }
+        return currentBucket;
+    }
+
+    /**
+     * @param epochMillis milliseconds since epoch
+     * @return index of the bucket holding the given time
+     */
+    public long bucketOfMillis(long epochMillis) {
+        return bucketOf(epochMillis * NANOS_PER_MILLI);
+    }
+
+    public long bucketOf(Quote quote) {
+        return bucketOf(epochNanos(quote));
+    }
+
+    public boolean sameBucket(long epochNanos, long otherEpochNanos) {
+        return bucketOf(epochNanos) == bucketOf(otherEpochNanos);
+    }
+
+    /**
+     * @return nanoseconds since epoch at which the bucket starts
+     */
+    public long bucketStart(long bucket) {
+        return bucket * bucketNanos;
+    }
+
+    /**
+     * @return nanoseconds since epoch at which the bucket ends, which is the time of its sample
+     */
+    public long bucketEnd(long bucket) {
+        return (bucket + 1) * bucketNanos;
+    }
+
+    /**
+     * Same as {@link QuoteFactory#toSampledTime}: a time on a bucket boundary is kept, other times move to the
+     * end of their bucket.
+     */
+    public long toSampledTime(long epochNanos) {
+        long bucket = bucketOf(epochNanos);
+        return epochNanos == bucketStart(bucket) ? epochNanos : bucketEnd(bucket);
+    }
+
+    /**
+     * @return time of the sample of the bucket
+     */
+    public ZonedDateTime sampleTime(long bucket) {
+        return toDateTime(bucketEnd(bucket));
+    }
+
+    /**
+     * @return time of the quote in nanoseconds since epoch, read without creating a date-time when possible
+     */
+    public static long epochNanos(Quote quote) {
+        if (quote instanceof FixedPointQuote) {
+            return ((FixedPointQuote) quote).getEpochNanos();
+        }
+        if (quote instanceof MutableQuoteImpl) {
+            return ((MutableQuoteImpl) quote).getLastModifiedNanos();
+        }
+        Instant instant = quote.getLastModified().toInstant();
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+    }
+
+    static ZonedDateTime toDateTime(long epochNanos) {
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND));
+        return ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,107 @@
+package org.omarket.quotes;
+
+/**
+ * Outcome of an order sent to the {@link MatchingSimulator}.
+ * <p>
+ * The simulator reuses a single report, which is only valid until its next execution.
+ */
+public class ExecutionReport {
+
+    private Side side;
+    private OrderType orderType;
+    private long requestedQuantity;
+    private long filledQuantity;
+    private long notionalTicks;
+    private int levelsCount;
+    private double minTick;
+    private long restingOrderId;
+
+    void reset(Side side, OrderType orderType, long requestedQuantity, double minTick) {
+        this.side = side;
+        this.orderType = orderType;
+        this.requestedQuantity = requestedQuantity;
+        this.filledQuantity = 0L;
+        this.notionalTicks = 0L;
+        this.levelsCount = 0;
+        this.minTick = minTick;
+        this.restingOrderId = TickOrderBookImpl.NO_ORDER_ID;
+    }
+
+    void addFill(long priceTicks, long quantity) {
+        filledQuantity += quantity;
+        notionalTicks += priceTicks * quantity;
+        levelsCount++;
+    }
+
+    void setRestingOrderId(long restingOrderId) {
+        this.restingOrderId = restingOrderId;
+    }
+
+    public Side getSide() {
+        return side;
+    }
+
+    public OrderType getOrderType() {
+        return orderType;
+    }
+
+    public long getRequestedQuantity() {
+        return requestedQuantity;
+    }
+
+    public long getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    /**
+     * @return quantity neither executed nor left resting in the book
+     */
+    public long getCancelledQuantity() {
+        if (restingOrderId != TickOrderBookImpl.NO_ORDER_ID) {
+            return 0L;
+        }
+        return requestedQuantity - filledQuantity;
+    }
+
+    public boolean isFilled() {
+        return filledQuantity == requestedQuantity;
+    }
+
+    /**
+     * @return number of price levels the order went through
+     */
+    public int getLevelsCount() {
+        return levelsCount;
+    }
+
+    /**
+     * @return volume-weighted average execution price in ticks, NaN when nothing was executed
+     */
+    public double getAveragePriceTicks() {
+        if (filledQuantity == 0) {
+            return Double.NaN;
+        }
+        return (double) notionalTicks / filledQuantity;
+    }
+
+    /**
+     * @return volume-weighted average execution price, NaN when nothing was executed
+     */
+    public double getAveragePrice() {
+        return getAveragePriceTicks() * minTick;
+    }
+
+    /**
+     * @return id of the order left in the book with the remaining quantity of a limit order,
+     * {@link TickOrderBookImpl#NO_ORDER_ID} if there is none
+     */
+    public long getRestingOrderId() {
+        return restingOrderId;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionReport{ " + side + " " + orderType + " " + filledQuantity + "/" + requestedQuantity
+                + " @ " + getAveragePrice() + " (" + levelsCount + " levels) }";
+    }
+}
@@ -0,0 +1,120 @@
+package org.omarket.quotes;
+
+import java.util.List;
+
+/**
+ * Replays the fills of one instrument held in columns, computing P&L with the weighted average acquisition cost
+ * method of {@link ProfitAndLossTracker}.
+ * <p>
+ * Quantities and prices are parallel primitive arrays. For each fill, the replay writes the realized P&L of the
+ * fill, the position and the acquisition cost after the fill into output arrays of the same length, in one loop
+ * without boxing, logging nor decimal arithmetic. Replays of different instruments are independent and are run
+ * in parallel by {@link #replayAll(List)}.
+ */
+public class FillReplay {
+
+    private final int[] quantities;
+    private final double[] prices;
+    private final double[] realizedPnls;
+    private final int[] positions;
+    private final double[] acquisitionCosts;
+
+    /**
+     * @param quantities signed quantity of each fill, negative for a sale
+     * @param prices     execution price of each fill
+     */
+    public FillReplay(int[] quantities, double[] prices) {
+        if (quantities.length != prices.length) {
+            throw new IllegalArgumentException("quantities and prices have different lengths: "
+                    + quantities.length + " and " + prices.length);
+        }
+        this.quantities = quantities;
+        this.prices = prices;
+        this.realizedPnls = new double[quantities.length];
+        this.positions = new int[quantities.length];
+        this.acquisitionCosts = new double[quantities.length];
+    }
+
+    /**
+     * Processes every fill, starting from a flat position.
+     *
+     * @return this replay
+     */
+    public FillReplay replay() {
+        final int[] quantities = this.quantities;
+        final double[] prices = this.prices;
+        int quantity = 0;
+        double cost = 0.;
+        for (int fill = 0; fill < quantities.length; fill++) {
+            int fillQty = quantities[fill];
+            double fillPrice = prices[fill];
+            double realized = 0.;
+            if (quantity == 0) {
+                cost = fillPrice * fillQty;
+            } else {
+                int closingQty = 0;
+                int openingQty = fillQty;
+                if (Integer.signum(quantity) != Integer.signum(fillQty)) {
+                    closingQty = Math.min(Math.abs(quantity), Math.abs(fillQty)) * Integer.signum(fillQty);
+                    openingQty = fillQty - closingQty;
+                }
+                double unitCost = cost / quantity;
+                realized = closingQty * (unitCost - fillPrice);
+                cost += openingQty * fillPrice + closingQty * unitCost;
+            }
+            quantity += fillQty;
+            if (quantity == 0) {
+                cost = 0.;
+            }
+            realizedPnls[fill] = realized;
+            positions[fill] = quantity;
+            acquisitionCosts[fill] = cost;
+        }
+        return this;
+    }
+
+    /**
+     * Replays the fills of many instruments in parallel, on the common fork-join pool.
+     *
+     * @param replays one replay per instrument
+     */
+    public static void replayAll(List<FillReplay> replays) {
+        replays.parallelStream().forEach(FillReplay::replay);
+    }
+
+    public int getFillsCount() {
+        return quantities.length;
+    }
+
+    /**
+     * @return realized P&L of each fill
+     */
+    public double[] getRealizedPnls() {
+        return realizedPnls;
+    }
+
+    /**
+     * @return position after each fill
+     */
+    public int[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return acquisition cost of the position after each fill
+     */
+    public double[] getAcquisitionCosts() {
+        return acquisitionCosts;
+    }
+
+    /**
+     * @return realized P&L of all fills
+     */
+    public double getRealizedPnl() {
+        double total = 0.;
+        for (double realized : realizedPnls) {
+            total += realized;
+        }
+        return total;
+    }
+}
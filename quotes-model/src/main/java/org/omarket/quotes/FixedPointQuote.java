@@ -0,0 +1,39 @@
+package org.omarket.quotes;
+
+/**
+ * Quote held in primitive fields: prices are long mantissas scaled by a per-instrument number of decimals,
+ * sizes are ints and the timestamp is expressed in nanoseconds since the epoch (UTC).
+ * <p>
+ * The {@link Quote} accessors are computed on demand for callers that still expect decimal prices and
+ * date-times.
+ */
+public interface FixedPointQuote extends Quote {
+
+    /**
+     * Mantissa of a missing price.
+     */
+    long NO_PRICE = Long.MIN_VALUE;
+
+    /**
+     * Value of a missing size.
+     */
+    int NO_SIZE = -1;
+
+    int getInstrumentId();
+
+    /**
+     * @return number of decimals of the prices: price = mantissa / 10^scale
+     */
+    int getScale();
+
+    long getEpochNanos();
+
+    long getBestBidMantissa();
+
+    long getBestAskMantissa();
+
+    int getBidSize();
+
+    int getAskSize();
+
+}
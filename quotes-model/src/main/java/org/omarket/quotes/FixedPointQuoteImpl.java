@@ -0,0 +1,179 @@
+package org.omarket.quotes;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mutable implementation of {@link FixedPointQuote}.
+ * <p>
+ * A single instance is meant to be reused as a flyweight on hot paths: updates only write primitive fields
+ * and objects are only created when the legacy {@link Quote} accessors are called.
+ */
+public class FixedPointQuoteImpl implements FixedPointQuote {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final int instrumentId;
+    private final String productCode;
+    private final int scale;
+    private long epochNanos = 0L;
+    private long bestBidMantissa = NO_PRICE;
+    private long bestAskMantissa = NO_PRICE;
+    private int bidSize = NO_SIZE;
+    private int askSize = NO_SIZE;
+
+    /**
+     * @param instrumentId identifier of the instrument
+     * @param productCode  product code, shared by all the quotes of the instrument
+     * @param scale        number of decimals of the prices
+     */
+    public FixedPointQuoteImpl(int instrumentId, String productCode, int scale) {
+        this.instrumentId = instrumentId;
+        this.productCode = productCode;
+        this.scale = scale;
+    }
+
+    public FixedPointQuoteImpl set(long epochNanos, int bidSize, long bestBidMantissa, long bestAskMantissa, int askSize) {
+        this.epochNanos = epochNanos;
+        this.bidSize = bidSize;
+        this.bestBidMantissa = bestBidMantissa;
+        this.bestAskMantissa = bestAskMantissa;
+        this.askSize = askSize;
+        return this;
+    }
+
+    /**
+     * Copies prices, sizes and timestamp of a quote of the same instrument and scale.
+     */
+    public FixedPointQuoteImpl copyFrom(FixedPointQuote quote) {
+        assert quote.getScale() == scale;
+        return set(quote.getEpochNanos(), quote.getBidSize(), quote.getBestBidMantissa(),
+                quote.getBestAskMantissa(), quote.getAskSize());
+    }
+
+    public void setEpochNanos(long epochNanos) {
+        this.epochNanos = epochNanos;
+    }
+
+    public void clear() {
+        set(0L, NO_SIZE, NO_PRICE, NO_PRICE, NO_SIZE);
+    }
+
+    /**
+     * @param price decimal price
+     * @return mantissa of the price at this quote scale
+     * @throws ArithmeticException when the price has more decimals than the scale
+     */
+    public long toMantissa(BigDecimal price) {
+        if (price == null) {
+            return NO_PRICE;
+        }
+        return price.setScale(scale).unscaledValue().longValueExact();
+    }
+
+    @Override
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    @Override
+    public int getScale() {
+        return scale;
+    }
+
+    @Override
+    public long getEpochNanos() {
+        return epochNanos;
+    }
+
+    @Override
+    public long getBestBidMantissa() {
+        return bestBidMantissa;
+    }
+
+    @Override
+    public long getBestAskMantissa() {
+        return bestAskMantissa;
+    }
+
+    @Override
+    public int getBidSize() {
+        return bidSize;
+    }
+
+    @Override
+    public int getAskSize() {
+        return askSize;
+    }
+
+    @Override
+    public String getProductCode() {
+        return productCode;
+    }
+
+    @Override
+    public ZonedDateTime getLastModified() {
+        Instant instant = Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                Math.floorMod(epochNanos, NANOS_PER_SECOND));
+        return ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    @Override
+    public BigDecimal getBestBidPrice() {
+        return toPrice(bestBidMantissa);
+    }
+
+    @Override
+    public BigDecimal getBestAskPrice() {
+        return toPrice(bestAskMantissa);
+    }
+
+    @Override
+    public Integer getBestBidSize() {
+        return bidSize == NO_SIZE ? null : bidSize;
+    }
+
+    @Override
+    public Integer getBestAskSize() {
+        return askSize == NO_SIZE ? null : askSize;
+    }
+
+    private BigDecimal toPrice(long mantissa) {
+        return mantissa == NO_PRICE ? null : BigDecimal.valueOf(mantissa, scale);
+    }
+
+    @Override
+    public boolean isValid() {
+        boolean isNull = bestBidMantissa == NO_PRICE || bestAskMantissa == NO_PRICE || bidSize == NO_SIZE || askSize == NO_SIZE;
+        return !isNull && bidSize > 0 && askSize > 0 && bestBidMantissa < bestAskMantissa;
+    }
+
+    /**
+     * Compares the timestamps without creating date-times when both quotes are fixed-point and the unit is at
+     * most a day.
+     */
+    @Override
+    public boolean sameSampledTime(Quote other, TemporalUnit temporalUnit) {
+        if (other instanceof FixedPointQuote && temporalUnit instanceof ChronoUnit
+                && temporalUnit.getDuration().compareTo(ChronoUnit.DAYS.getDuration()) <= 0) {
+            Duration unitDuration = temporalUnit.getDuration();
+            long unitNanos = unitDuration.getSeconds() * NANOS_PER_SECOND + unitDuration.getNano();
+            long otherEpochNanos = ((FixedPointQuote) other).getEpochNanos();
+            return Math.floorDiv(epochNanos, unitNanos) == Math.floorDiv(otherEpochNanos, unitNanos);
+        }
+        return getLastModified().truncatedTo(temporalUnit).equals(other.getLastModified().truncatedTo(temporalUnit));
+    }
+
+    public String toString() {
+        String timestamp = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(getLastModified());
+        return "< " + getBestBidSize() + " " + getBestBidPrice() + " / " + getBestAskPrice() + " " + getBestAskSize() + " > (" + timestamp + " - " + getProductCode() + ")";
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.omarket.quotes;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies market depth updates addressed by row, as sent by Interactive Brokers, to an {@link OrderBook}.
+ * <p>
+ * Each row of a side is held by the book as one anonymous order: inserting a row shifts the rows below it,
+ * updating a row amends its order, or replaces it when the price moved. A row whose order was refused by the
+ * book (size 0, transiently crossed sides) is kept empty so that the following positions stay aligned.
+ * <p>
+ * Rows are only meant to be updated by the thread owning the book, an {@link OrderBookManager} shard for instance.
+ */
+public class MarketDepthRows {
+
+    public static final int INSERT = 0;
+    public static final int UPDATE = 1;
+    public static final int DELETE = 2;
+    public static final int SIDE_ASK = 0;
+    public static final int SIDE_BID = 1;
+
+    private final List<String> askRows = new ArrayList<>();
+    private final List<BigDecimal> askPrices = new ArrayList<>();
+    private final List<String> bidRows = new ArrayList<>();
+    private final List<BigDecimal> bidPrices = new ArrayList<>();
+
+    /**
+     * @param position  row of the side, 0 for the best price
+     * @param operation {@link #INSERT}, {@link #UPDATE} or {@link #DELETE}
+     * @param side      {@link #SIDE_ASK} or {@link #SIDE_BID}
+     * @return false if the update does not match the rows held, which are then left unchanged
+     */
+    public boolean apply(OrderBook orderBook, int position, int operation, int side, BigDecimal price, int size) {
+        boolean bid = side == SIDE_BID;
+        List<String> rows = bid ? bidRows : askRows;
+        List<BigDecimal> prices = bid ? bidPrices : askPrices;
+        switch (operation) {
+            case INSERT:
+                if (position < 0 || position > rows.size()) {
+                    return false;
+                }
+                rows.add(position, enter(orderBook, bid, price, size));
+                prices.add(position, price);
+                return true;
+            case UPDATE:
+                if (position < 0 || position >= rows.size()) {
+                    return false;
+                }
+                String orderId = rows.get(position);
+                if (orderId != null && size > 0 && price.compareTo(prices.get(position)) == 0) {
+                    orderBook.updateOrder(orderId, size);
+                } else {
+                    if (orderId != null) {
+                        orderBook.deleteOrder(orderId);
+                    }
+                    rows.set(position, enter(orderBook, bid, price, size));
+                    prices.set(position, price);
+                }
+                return true;
+            case DELETE:
+                if (position < 0 || position >= rows.size()) {
+                    return false;
+                }
+                String deleted = rows.remove(position);
+                prices.remove(position);
+                if (deleted != null) {
+                    orderBook.deleteOrder(deleted);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String enter(OrderBook orderBook, boolean bid, BigDecimal price, int size) {
+        if (size <= 0) {
+            return null;
+        }
+        return bid ? orderBook.newBid(price, size) : orderBook.newAsk(price, size);
+    }
+
+    public int getBidRowsCount() {
+        return bidRows.size();
+    }
+
+    public int getAskRowsCount() {
+        return askRows.size();
+    }
+}
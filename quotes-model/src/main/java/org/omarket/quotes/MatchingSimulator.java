@@ -0,0 +1,72 @@
+package org.omarket.quotes;
+
+/**
+ * Simulates the execution of aggressive orders against a {@link TickOrderBookImpl}.
+ * <p>
+ * Orders sweep the book level by level and consume the resting orders in time priority, so that simulated
+ * fills include the slippage of the visible depth rather than assuming the best price. Executions are
+ * optionally fed to a {@link ProfitAndLossTracker}, one fill per level.
+ * <p>
+ * A simulator is bound to one book and is not thread-safe; it does not allocate per order.
+ */
+public class MatchingSimulator implements TickOrderBookImpl.FillListener {
+
+    private final TickOrderBookImpl orderBook;
+    private final ProfitAndLossTracker profitAndLossTracker;
+    private final ExecutionReport report = new ExecutionReport();
+    private final double minTick;
+    private int fillSign;
+
+    public MatchingSimulator(TickOrderBookImpl orderBook) {
+        this(orderBook, null);
+    }
+
+    /**
+     * @param orderBook            book executed against
+     * @param profitAndLossTracker receives the fills, may be null
+     */
+    public MatchingSimulator(TickOrderBookImpl orderBook, ProfitAndLossTracker profitAndLossTracker) {
+        this.orderBook = orderBook;
+        this.profitAndLossTracker = profitAndLossTracker;
+        this.minTick = orderBook.getMinTick().doubleValue();
+    }
+
+    public ExecutionReport buy(OrderType orderType, int quantity, long limitTicks) {
+        return execute(Side.BID, orderType, quantity, limitTicks);
+    }
+
+    public ExecutionReport sell(OrderType orderType, int quantity, long limitTicks) {
+        return execute(Side.ASK, orderType, quantity, limitTicks);
+    }
+
+    /**
+     * @param side       BID to buy, ASK to sell
+     * @param orderType  how the quantity left after the sweep is handled
+     * @param quantity   quantity to be executed
+     * @param limitTicks limit price in ticks, ignored for market orders
+     * @return report of the execution, reused by the next call
+     */
+    public ExecutionReport execute(Side side, OrderType orderType, int quantity, long limitTicks) {
+        assert quantity > 0;
+        assert orderType == OrderType.MARKET || limitTicks != TickOrderBookImpl.NO_PRICE;
+        report.reset(side, orderType, quantity, minTick);
+        fillSign = side == Side.BID ? 1 : -1;
+        long limit = orderType == OrderType.MARKET ? TickOrderBookImpl.NO_PRICE : limitTicks;
+        long filled = orderBook.sweep(side, limit, quantity, this);
+        int remaining = (int) (quantity - filled);
+        if (remaining > 0 && orderType == OrderType.LIMIT) {
+            long restingOrderId = side == Side.BID ? orderBook.newBidTicks(limitTicks, remaining)
+                    : orderBook.newAskTicks(limitTicks, remaining);
+            report.setRestingOrderId(restingOrderId);
+        }
+        return report;
+    }
+
+    @Override
+    public void onFill(long priceTicks, long quantity) {
+        report.addFill(priceTicks, quantity);
+        if (profitAndLossTracker != null) {
+            profitAndLossTracker.addFill(fillSign * (int) quantity, orderBook.toDouble(priceTicks));
+        }
+    }
+}
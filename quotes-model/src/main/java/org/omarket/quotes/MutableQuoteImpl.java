@@ -3,68 +3,164 @@ package org.omarket.quotes;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Christophe on 04/11/2016.
  * <p>
  * Implementation of a MutableQuote interface.
+ * <p>
+ * Prices are held as a number of ticks and sizes as ints, so that updates only compare and write primitives.
+ * Timestamps come from a {@link QuoteClock}; decimal prices and date-times are created when first read after
+ * a change.
  */
 @Slf4j
 class MutableQuoteImpl extends QuoteImpl implements MutableQuote {
 
-    private BigDecimal minTick;
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int NO_SIZE = Integer.MIN_VALUE;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final BigDecimal minTick;
+    private final double minTickValue;
+    private final QuoteClock clock;
+    private long bestBidTicks = NO_PRICE;
+    private long bestAskTicks = NO_PRICE;
+    private int bidSize = NO_SIZE;
+    private int askSize = NO_SIZE;
+    private long lastModifiedNanos = NO_TIMESTAMP;
 
     MutableQuoteImpl(BigDecimal minTick, String productCode) {
+        this(minTick, productCode, QuoteClock.SYSTEM);
+    }
+
+    MutableQuoteImpl(BigDecimal minTick, String productCode, QuoteClock clock) {
         super(null, null, null, null, null, productCode);
         this.minTick = minTick;
+        this.minTickValue = minTick.doubleValue();
+        this.clock = clock;
     }
 
     @Override
     public boolean updateBestBidSize(int size) {
-        if (this.getBestBidSize() != null && this.getBestBidSize().equals(size)) {
+        if (bidSize == size) {
             return false;
         }
-        this.bestBidSize = size;
-        setLastModified(ZonedDateTime.now(ZoneOffset.UTC));
+        bidSize = size;
+        this.bestBidSize = null;
+        touch();
         return true;
     }
 
     @Override
     public boolean updateBestAskSize(int size) {
-        if (this.getBestAskSize() != null && this.getBestAskSize() == size) {
+        if (askSize == size) {
             return false;
         }
-        this.bestAskSize = size;
-        setLastModified(ZonedDateTime.now(ZoneOffset.UTC));
+        askSize = size;
+        this.bestAskSize = null;
+        touch();
         return true;
     }
 
     @Override
     public boolean updateBestBidPrice(double price) {
-        BigDecimal newBestBidPrice = BigDecimal.valueOf(Double.valueOf(price / minTick.doubleValue()).intValue()).multiply(minTick);
-        if (newBestBidPrice.equals(this.getBestBidPrice())) {
+        long ticks = toTicks(price);
+        if (ticks == bestBidTicks) {
             return false;
         }
-        this.bestBidPrice = newBestBidPrice;
-        setLastModified(ZonedDateTime.now(ZoneOffset.UTC));
+        bestBidTicks = ticks;
+        this.bestBidPrice = null;
+        touch();
         return true;
     }
 
     @Override
     public boolean updateBestAskPrice(double price) {
-        BigDecimal newBestAskPrice = BigDecimal.valueOf(Double.valueOf(price / minTick.doubleValue()).intValue()).multiply(minTick);
-        if (newBestAskPrice.equals(this.getBestAskPrice())) {
+        long ticks = toTicks(price);
+        if (ticks == bestAskTicks) {
             return false;
         }
-        this.bestAskPrice = newBestAskPrice;
-        setLastModified(ZonedDateTime.now(ZoneOffset.UTC));
+        bestAskTicks = ticks;
+        this.bestAskPrice = null;
+        touch();
         return true;
     }
 
-    private void setLastModified(ZonedDateTime lastModified) {
-        this.lastModified = lastModified;
+    /**
+     * Prices are truncated to the tick below (towards zero).
+     */
+    private long toTicks(double price) {
+        return (long) (price / minTickValue);
+    }
+
+    private void touch() {
+        lastModifiedNanos = clock.epochNanos();
+        this.lastModified = null;
+    }
+
+    public long getBestBidTicks() {
+        return bestBidTicks;
+    }
+
+    public long getBestAskTicks() {
+        return bestAskTicks;
+    }
+
+    public long getLastModifiedNanos() {
+        return lastModifiedNanos;
+    }
+
+    @Override
+    public ZonedDateTime getLastModified() {
+        if (this.lastModified == null && lastModifiedNanos != NO_TIMESTAMP) {
+            Instant instant = Instant.ofEpochSecond(Math.floorDiv(lastModifiedNanos, NANOS_PER_SECOND),
+                    Math.floorMod(lastModifiedNanos, NANOS_PER_SECOND));
+            this.lastModified = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
+        }
+        return this.lastModified;
+    }
+
+    @Override
+    public BigDecimal getBestBidPrice() {
+        if (this.bestBidPrice == null && bestBidTicks != NO_PRICE) {
+            this.bestBidPrice = BigDecimal.valueOf(bestBidTicks).multiply(minTick);
+        }
+        return this.bestBidPrice;
+    }
+
+    @Override
+    public BigDecimal getBestAskPrice() {
+        if (this.bestAskPrice == null && bestAskTicks != NO_PRICE) {
+            this.bestAskPrice = BigDecimal.valueOf(bestAskTicks).multiply(minTick);
+        }
+        return this.bestAskPrice;
+    }
+
+    @Override
+    public Integer getBestBidSize() {
+        if (this.bestBidSize == null && bidSize != NO_SIZE) {
+            this.bestBidSize = bidSize;
+        }
+        return this.bestBidSize;
+    }
+
+    @Override
+    public Integer getBestAskSize() {
+        if (this.bestAskSize == null && askSize != NO_SIZE) {
+            this.bestAskSize = askSize;
+        }
+        return this.bestAskSize;
+    }
+
+    @Override
+    public boolean isValid() {
+        boolean isNull = bestBidTicks == NO_PRICE || bestAskTicks == NO_PRICE || bidSize == NO_SIZE || askSize == NO_SIZE;
+        return !isNull && bidSize > 0 && askSize > 0 && bestBidTicks < bestAskTicks;
     }
 
 }
@@ -2,28 +2,59 @@ package org.omarket.quotes;
 
 import java.math.BigDecimal;
 import java.util.Date;
-import java.util.UUID;
 
 /**
  * Created by christophe on 23.09.16.
+ * <p>
+ * Anonymous orders are given the next number of an {@link OrderIdGenerator} as identifier. Its String form is
+ * prefixed with {@link #ANONYMOUS_ID_PREFIX}, so that it never clashes with an identifier given by the caller.
  */
 public class Order {
+    public static final long NO_ID = Long.MIN_VALUE;
+    public static final String ANONYMOUS_ID_PREFIX = "#";
+    private static final OrderIdGenerator ANONYMOUS_IDS = new SequenceOrderIdGenerator();
+
     private Date timestamp = null;
     private BigDecimal price = null;
     private Integer quantity = null;
     private String orderId = null;
+    private long id = NO_ID;
 
 
     public Order(BigDecimal price, Integer quantity, String orderId) {
+        this(price, quantity, orderId, NO_ID);
+    }
+
+    public Order(BigDecimal price, Integer quantity, long id) {
+        this(price, quantity, id, false);
+    }
+
+    public Order(BigDecimal price, Integer quantity, OrderIdGenerator idGenerator) {
+        this(price, quantity, idGenerator.nextId(), true);
+    }
+
+    private Order(BigDecimal price, Integer quantity, long id, boolean anonymous) {
+        this(price, quantity, anonymous ? anonymousId(id) : Long.toString(id), id);
+    }
+
+    private Order(BigDecimal price, Integer quantity, String orderId, long id) {
         assert quantity > 0;
         this.timestamp = new Date();
         this.price = price;
         this.quantity = quantity;
         this.orderId = orderId;
+        this.id = id;
     }
 
     public Order(BigDecimal price, Integer quantity) {
-        this(price, quantity, UUID.randomUUID().toString());
+        this(price, quantity, ANONYMOUS_IDS);
+    }
+
+    /**
+     * @return String identifier of an order numbered by an {@link OrderIdGenerator}
+     */
+    public static String anonymousId(long id) {
+        return ANONYMOUS_ID_PREFIX + id;
     }
 
     @Override
@@ -54,4 +85,11 @@ public class Order {
         return orderId;
     }
 
+    /**
+     * @return numeric identifier, {@link #NO_ID} when the order was created with a String identifier
+     */
+    public long getId() {
+        return id;
+    }
+
 }
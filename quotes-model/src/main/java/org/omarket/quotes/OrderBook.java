@@ -1,14 +1,11 @@
 package org.omarket.quotes;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.math.BigDecimal;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
  * Created by christophe on 23.09.16.
@@ -35,218 +32,101 @@ import java.util.TreeMap;
  * where you are submitting orders that will enter the order book queue rather than executing
  * immediately at the best market price.
  */
-public class OrderBook {
-
-    private TreeMap<BigDecimal, TreeMap<String, Order>> bidSide = new TreeMap<>();
-    private TreeMap<BigDecimal, TreeMap<String, Order>> askSide = new TreeMap<>();
-    private TreeMap<String, BigDecimal> orderIdToPrice = new TreeMap<>();
-    private Date lastUpdate = null;
-    private boolean ignoreInconsistentBidAsk = false;
-
-    private static ImmutablePair<BigDecimal, Integer> aggregateOrders(TreeMap<String, Order> ordersById) {
-        ImmutablePair<BigDecimal, Integer> ordersAggregate;
-        if (ordersById.size() == 0) {
-            return null;
-        }
-        BigDecimal price = ordersById.firstEntry().getValue().getPrice();
-        ordersAggregate = new ImmutablePair<>(price, 0);
-        for (Order order : ordersById.values()) {
-            Integer previousSize = ordersAggregate.getRight();
-            ordersAggregate = new ImmutablePair<>(price, previousSize + order.getQuantity());
-        }
-        return ordersAggregate;
-    }
+public interface OrderBook {
 
-    public void setIgnoreInconsistentBidAsk(boolean ignoreInconsistentBidAsk) {
-        this.ignoreInconsistentBidAsk = ignoreInconsistentBidAsk;
-    }
+    void setIgnoreInconsistentBidAsk(boolean ignoreInconsistentBidAsk);
 
-    private String newEntryFromOrder(Order order, TreeMap<BigDecimal, TreeMap<String, Order>> side) {
-        BigDecimal price = order.getPrice();
-        String orderId = order.getOrderId();
-        TreeMap<String, Order> targetPriceGroup = side.get(price);
-        if (targetPriceGroup == null) {
-            targetPriceGroup = new TreeMap<>();
-            side.put(order.getPrice(), targetPriceGroup);
-        }
-        targetPriceGroup.put(orderId, order);
-        orderIdToPrice.put(orderId, price);
-        this.lastUpdate = order.getTimestamp();
-        return orderId;
-    }
+    String newBid(BigDecimal price, Integer quantity, String orderId);
 
-    private String newBidEntryFromOrder(Order newOrder) {
-        if (getBestAsk() != null) {
-            boolean bidLowerThanAsk = newOrder.getPrice().compareTo(getBestAsk()) == -1;
-            if (!bidLowerThanAsk && ignoreInconsistentBidAsk) {
-                return null;
-            } else {
-                assert bidLowerThanAsk;
-            }
-        }
-        return newEntryFromOrder(newOrder, bidSide);
-    }
+    String newBid(BigDecimal price, Integer quantity);
 
-    private String newAskEntryFromOrder(Order newOrder) {
-        if (getBestBid() != null) {
-            boolean askHigherThanBid = newOrder.getPrice().compareTo(getBestBid()) == 1;
-            if (!askHigherThanBid && ignoreInconsistentBidAsk) {
-                return null;
-            } else {
-                assert askHigherThanBid;
-            }
-        }
-        return newEntryFromOrder(newOrder, askSide);
-    }
+    String newAsk(BigDecimal price, Integer quantity, String orderId);
 
-    public String newBid(BigDecimal price, Integer quantity, String orderId) {
-        Order newOrder = new Order(price, quantity, orderId);
-        return newBidEntryFromOrder(newOrder);
-    }
+    String newAsk(BigDecimal price, Integer quantity);
 
-    public String newBid(BigDecimal price, Integer quantity) {
-        Order newOrder = new Order(price, quantity);
-        return newBidEntryFromOrder(newOrder);
-    }
+    void deleteOrder(String orderId);
 
-    public String newAsk(BigDecimal price, Integer quantity, String orderId) {
-        Order newOrder = new Order(price, quantity, orderId);
-        return newAskEntryFromOrder(newOrder);
-    }
+    /**
+     * Amends the volume of an order: a reduction keeps its time priority, an increase sends it to the back
+     * of the queue.
+     */
+    void updateOrder(String orderId, Integer newVolume);
 
-    public String newAsk(BigDecimal price, Integer quantity) {
-        Order newOrder = new Order(price, quantity);
-        return newAskEntryFromOrder(newOrder);
-    }
+    /**
+     * Quantity queued in front of an order at its price level, which has to trade or cancel before the order
+     * gets filled.
+     *
+     * @param orderId order in the book
+     * @return quantity ahead of the order, -1 if the order is not in the book
+     */
+    long getQuantityAhead(String orderId);
 
-    public void deleteOrder(String orderId) {
-        BigDecimal targetPrice = orderIdToPrice.get(orderId);
-        TreeMap<String, Order> orders = bidSide.get(targetPrice);
-        if (orders != null) {
-            orders.remove(orderId);
-            if (orders.size() == 0) {
-                bidSide.remove(targetPrice);
-            }
-        }
-        orders = askSide.get(targetPrice);
-        if (orders != null) {
-            orders.remove(orderId);
-            if (orders.size() == 0) {
-                askSide.remove(targetPrice);
-            }
-        }
-        orderIdToPrice.remove(orderId);
-        this.lastUpdate = new Date();
-    }
+    Date getLastUpdate();
 
-    public void updateOrder(String orderId, Integer newVolume) {
-        assert newVolume > 0;
-        Order targetOrder = null;
-        BigDecimal targetPrice = orderIdToPrice.get(orderId);
-        TreeMap<String, Order> orders = bidSide.get(targetPrice);
-        if (orders != null) {
-            targetOrder = orders.get(orderId);
-            targetOrder.setQuantity(newVolume);
-        }
-        orders = askSide.get(targetPrice);
-        if (orders != null) {
-            targetOrder = orders.get(orderId);
-            targetOrder.setQuantity(newVolume);
-        }
-        this.lastUpdate = targetOrder.getTimestamp();
-    }
+    List<Pair<BigDecimal, Integer>> getBidOrderLevels();
 
-    public Date getLastUpdate() {
-        return this.lastUpdate;
-    }
+    List<Pair<BigDecimal, Integer>> getAskOrderLevels();
 
-    public List<Pair<BigDecimal, Integer>> getBidOrderLevels() {
-        List<Pair<BigDecimal, Integer>> orders = new LinkedList<>();
-        for (BigDecimal price : bidSide.keySet()) {
-            TreeMap<String, Order> ordersById = bidSide.get(price);
-            ImmutablePair<BigDecimal, Integer> ordersAggregate = OrderBook.aggregateOrders(ordersById);
-            orders.add(0, ordersAggregate);
-        }
-        return orders;
-    }
+    BigDecimal getBestBid();
 
-    public List<Pair<BigDecimal, Integer>> getAskOrderLevels() {
-        List<Pair<BigDecimal, Integer>> orders = new LinkedList<>();
-        for (BigDecimal price : askSide.keySet()) {
-            TreeMap<String, Order> ordersById = askSide.get(price);
-            ImmutablePair<BigDecimal, Integer> ordersAggregate = OrderBook.aggregateOrders(ordersById);
-            orders.add(ordersAggregate);
-        }
-        return orders;
-    }
+    BigDecimal getBestAsk();
 
-    public BigDecimal getBestBid() {
-        Pair<BigDecimal, Integer> best = getBidLevel(0);
-        if (best == null) {
-            return null;
-        }
-        return best.getLeft();
-    }
+    Pair<BigDecimal, Integer> getAskLevel(Integer level);
 
-    public BigDecimal getBestAsk() {
-        Pair<BigDecimal, Integer> best = getAskLevel(0);
-        if (best == null) {
-            return null;
-        }
-        return best.getLeft();
-    }
+    Pair<BigDecimal, Integer> getBidLevel(Integer level);
 
-    public Pair<BigDecimal, Integer> getAskLevel(Integer level) {
-        assert level >= 0;
-        if (askSide.size() == 0) {
-            return null;
-        }
-        Iterator<BigDecimal> keyIterator = askSide.navigableKeySet().iterator();
-        int counter = 0;
-        BigDecimal bestPrice = null;
-        while (keyIterator.hasNext()) {
-            bestPrice = keyIterator.next();
-            counter++;
-            if (counter > level) {
-                break;
-            }
-        }
-        if (counter <= level) {
-            return null;
-        }
-        TreeMap<String, Order> ordersById = askSide.get(bestPrice);
-        Pair<BigDecimal, Integer> best = aggregateOrders(ordersById);
-        if (best == null) {
-            return null;
-        }
-        return best;
-    }
+    /**
+     * Registers a listener for level and top-of-book changes. A top-of-book event is sent right away when the
+     * book is not empty.
+     */
+    void addListener(OrderBookListener listener);
 
-    public Pair<BigDecimal, Integer> getBidLevel(Integer level) {
-        assert level >= 0;
-        if (bidSide.size() == 0) {
-            return null;
-        }
-        Iterator<BigDecimal> keyIterator = bidSide.descendingKeySet().iterator();
-        int counter = 0;
-        BigDecimal bestPrice = null;
-        while (keyIterator.hasNext()) {
-            bestPrice = keyIterator.next();
-            counter++;
-            if (counter > level) {
-                break;
-            }
-        }
-        if (counter <= level) {
-            return null;
-        }
-        TreeMap<String, Order> ordersById = bidSide.get(bestPrice);
-        Pair<BigDecimal, Integer> best = aggregateOrders(ordersById);
-        if (best == null) {
-            return null;
+    void removeListener(OrderBookListener listener);
+
+    /**
+     * Starts a batch of updates: level events are still sent for each update, but top-of-book changes are
+     * coalesced into a single event sent by the matching {@link #endBatch()}. Batches may be nested.
+     */
+    void beginBatch();
+
+    void endBatch();
+
+    /**
+     * Applies several updates as a single batch.
+     *
+     * @param updates updates to be applied to this book
+     */
+    default void applyBatch(Consumer<OrderBook> updates) {
+        beginBatch();
+        try {
+            updates.accept(this);
+        } finally {
+            endBatch();
         }
-        return best;
     }
 
-}
+    int getBidLevelsCount();
+
+    int getAskLevelsCount();
+
+    /**
+     * Copies the bid side into caller-supplied buffers, best level first, without allocating.
+     *
+     * @param prices      price of each level
+     * @param quantities  total quantity of each level
+     * @param orderCounts number of orders of each level
+     * @return number of levels written, bounded by the shortest buffer
+     */
+    int getBidDepth(double[] prices, long[] quantities, int[] orderCounts);
 
+    /**
+     * Copies the ask side into caller-supplied buffers, best level first, without allocating.
+     *
+     * @param prices      price of each level
+     * @param quantities  total quantity of each level
+     * @param orderCounts number of orders of each level
+     * @return number of levels written, bounded by the shortest buffer
+     */
+    int getAskDepth(double[] prices, long[] quantities, int[] orderCounts);
+
+}
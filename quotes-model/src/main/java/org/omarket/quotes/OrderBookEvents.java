@@ -0,0 +1,102 @@
+package org.omarket.quotes;
+
+import java.util.Arrays;
+
+/**
+ * Dispatches the events of an order book to its listeners, coalescing top-of-book changes within batches.
+ */
+class OrderBookEvents {
+
+    private static final OrderBookListener[] NO_LISTENERS = new OrderBookListener[0];
+
+    private final OrderBook orderBook;
+    private OrderBookListener[] listeners = NO_LISTENERS;
+    private int batchDepth = 0;
+    private double bestBid = Double.NaN;
+    private long bestBidQuantity = 0L;
+    private double bestAsk = Double.NaN;
+    private long bestAskQuantity = 0L;
+
+    OrderBookEvents(OrderBook orderBook) {
+        this.orderBook = orderBook;
+    }
+
+    boolean isActive() {
+        return listeners.length > 0;
+    }
+
+    boolean isBatching() {
+        return batchDepth > 0;
+    }
+
+    void addListener(OrderBookListener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    void removeListener(OrderBookListener listener) {
+        for (int index = 0; index < listeners.length; index++) {
+            if (listeners[index] == listener) {
+                OrderBookListener[] remaining = new OrderBookListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, index);
+                System.arraycopy(listeners, index + 1, remaining, index, remaining.length - index);
+                listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * @return true when the outermost batch has ended
+     */
+    boolean endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("no batch in progress");
+        }
+        return --batchDepth == 0;
+    }
+
+    void levelAdded(Side side, double price, long quantity, int orderCount) {
+        for (OrderBookListener listener : listeners) {
+            listener.onLevelAdded(orderBook, side, price, quantity, orderCount);
+        }
+    }
+
+    void levelChanged(Side side, double price, long quantity, int orderCount) {
+        for (OrderBookListener listener : listeners) {
+            listener.onLevelChanged(orderBook, side, price, quantity, orderCount);
+        }
+    }
+
+    void levelRemoved(Side side, double price) {
+        for (OrderBookListener listener : listeners) {
+            listener.onLevelRemoved(orderBook, side, price);
+        }
+    }
+
+    /**
+     * Compares the current top of book with the last one published and notifies listeners if it differs.
+     * Empty sides are given a NaN price and a zero quantity.
+     */
+    void topOfBook(double bidPrice, long bidQuantity, double askPrice, long askQuantity) {
+        if (isBatching()) {
+            return;
+        }
+        boolean changed = Double.compare(bidPrice, bestBid) != 0 || bidQuantity != bestBidQuantity
+                || Double.compare(askPrice, bestAsk) != 0 || askQuantity != bestAskQuantity;
+        if (!changed) {
+            return;
+        }
+        bestBid = bidPrice;
+        bestBidQuantity = bidQuantity;
+        bestAsk = askPrice;
+        bestAskQuantity = askQuantity;
+        for (OrderBookListener listener : listeners) {
+            listener.onTopOfBookChanged(orderBook);
+        }
+    }
+}
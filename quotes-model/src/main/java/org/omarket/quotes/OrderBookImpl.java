@@ -0,0 +1,384 @@
+package org.omarket.quotes;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Created by christophe on 23.09.16.
+ * <p>
+ * Reference implementation of {@link OrderBook}, each side being kept as a sorted array of price levels.
+ * <p>
+ * Levels are sorted so that the best price sits at the end of the array: changes at the top of the book
+ * do not shift any element and level n is read directly by index. Each level maintains its total quantity
+ * and number of orders, so that aggregates are never recomputed on read.
+ */
+public class OrderBookImpl implements OrderBook {
+
+    private SortedLevels bidSide = new SortedLevels(true);
+    private SortedLevels askSide = new SortedLevels(false);
+    private TreeMap<String, BigDecimal> orderIdToPrice = new TreeMap<>();
+    private Date lastUpdate = null;
+    private boolean ignoreInconsistentBidAsk = false;
+    private final OrderBookEvents events = new OrderBookEvents(this);
+    private final OrderIdGenerator orderIdGenerator;
+
+    public OrderBookImpl() {
+        this(new SequenceOrderIdGenerator());
+    }
+
+    /**
+     * @param orderIdGenerator numbering of anonymous orders
+     */
+    public OrderBookImpl(OrderIdGenerator orderIdGenerator) {
+        this.orderIdGenerator = orderIdGenerator;
+    }
+
+    private static ImmutablePair<BigDecimal, Integer> aggregateOrders(PriceLevel level) {
+        if (level == null) {
+            return null;
+        }
+        return new ImmutablePair<>(level.getPrice(), (int) level.getTotalQuantity());
+    }
+
+    @Override
+    public void setIgnoreInconsistentBidAsk(boolean ignoreInconsistentBidAsk) {
+        this.ignoreInconsistentBidAsk = ignoreInconsistentBidAsk;
+    }
+
+    private String newEntryFromOrder(Order order, SortedLevels side) {
+        BigDecimal price = order.getPrice();
+        String orderId = order.getOrderId();
+        if (orderIdToPrice.containsKey(orderId)) {
+            throw new IllegalArgumentException("order already in book: " + orderId);
+        }
+        PriceLevel level = side.getOrCreate(price);
+        level.add(order);
+        orderIdToPrice.put(orderId, price);
+        this.lastUpdate = order.getTimestamp();
+        publishLevel(side, level, level.getOrderCount() == 1);
+        return orderId;
+    }
+
+    private String newBidEntryFromOrder(Order newOrder) {
+        if (getBestAsk() != null) {
+            boolean bidLowerThanAsk = newOrder.getPrice().compareTo(getBestAsk()) == -1;
+            if (!bidLowerThanAsk && ignoreInconsistentBidAsk) {
+                return null;
+            } else {
+                assert bidLowerThanAsk;
+            }
+        }
+        return newEntryFromOrder(newOrder, bidSide);
+    }
+
+    private String newAskEntryFromOrder(Order newOrder) {
+        if (getBestBid() != null) {
+            boolean askHigherThanBid = newOrder.getPrice().compareTo(getBestBid()) == 1;
+            if (!askHigherThanBid && ignoreInconsistentBidAsk) {
+                return null;
+            } else {
+                assert askHigherThanBid;
+            }
+        }
+        return newEntryFromOrder(newOrder, askSide);
+    }
+
+    @Override
+    public String newBid(BigDecimal price, Integer quantity, String orderId) {
+        Order newOrder = new Order(price, quantity, orderId);
+        return newBidEntryFromOrder(newOrder);
+    }
+
+    @Override
+    public String newBid(BigDecimal price, Integer quantity) {
+        Order newOrder = new Order(price, quantity, orderIdGenerator);
+        return newBidEntryFromOrder(newOrder);
+    }
+
+    @Override
+    public String newAsk(BigDecimal price, Integer quantity, String orderId) {
+        Order newOrder = new Order(price, quantity, orderId);
+        return newAskEntryFromOrder(newOrder);
+    }
+
+    @Override
+    public String newAsk(BigDecimal price, Integer quantity) {
+        Order newOrder = new Order(price, quantity, orderIdGenerator);
+        return newAskEntryFromOrder(newOrder);
+    }
+
+    @Override
+    public void deleteOrder(String orderId) {
+        BigDecimal targetPrice = orderIdToPrice.remove(orderId);
+        if (targetPrice == null) {
+            return;
+        }
+        this.lastUpdate = new Date();
+        for (SortedLevels side : new SortedLevels[]{bidSide, askSide}) {
+            PriceLevel level = side.get(targetPrice);
+            if (level != null && level.remove(orderId) != null) {
+                if (level.isEmpty()) {
+                    side.remove(level);
+                }
+                publishLevel(side, level, false);
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void updateOrder(String orderId, Integer newVolume) {
+        assert newVolume > 0;
+        Order targetOrder = null;
+        BigDecimal targetPrice = orderIdToPrice.get(orderId);
+        if (targetPrice == null) {
+            return;
+        }
+        SortedLevels side = bidSide;
+        PriceLevel level = bidSide.get(targetPrice);
+        if (level != null) {
+            targetOrder = level.update(orderId, newVolume);
+        }
+        if (targetOrder == null) {
+            side = askSide;
+            level = askSide.get(targetPrice);
+            if (level != null) {
+                targetOrder = level.update(orderId, newVolume);
+            }
+        }
+        this.lastUpdate = targetOrder.getTimestamp();
+        publishLevel(side, level, false);
+    }
+
+    @Override
+    public void addListener(OrderBookListener listener) {
+        events.addListener(listener);
+        publishTopOfBook();
+    }
+
+    @Override
+    public void removeListener(OrderBookListener listener) {
+        events.removeListener(listener);
+    }
+
+    @Override
+    public void beginBatch() {
+        events.beginBatch();
+    }
+
+    @Override
+    public void endBatch() {
+        if (events.endBatch() && events.isActive()) {
+            publishTopOfBook();
+        }
+    }
+
+    private void publishLevel(SortedLevels side, PriceLevel level, boolean created) {
+        if (!events.isActive()) {
+            return;
+        }
+        Side bookSide = side == bidSide ? Side.BID : Side.ASK;
+        double price = level.getPrice().doubleValue();
+        if (level.isEmpty()) {
+            events.levelRemoved(bookSide, price);
+        } else if (created) {
+            events.levelAdded(bookSide, price, level.getTotalQuantity(), level.getOrderCount());
+        } else {
+            events.levelChanged(bookSide, price, level.getTotalQuantity(), level.getOrderCount());
+        }
+        publishTopOfBook();
+    }
+
+    private void publishTopOfBook() {
+        PriceLevel bestBid = bidSide.level(0);
+        PriceLevel bestAsk = askSide.level(0);
+        events.topOfBook(bestBid == null ? Double.NaN : bestBid.getPrice().doubleValue(),
+                bestBid == null ? 0L : bestBid.getTotalQuantity(),
+                bestAsk == null ? Double.NaN : bestAsk.getPrice().doubleValue(),
+                bestAsk == null ? 0L : bestAsk.getTotalQuantity());
+    }
+
+    @Override
+    public long getQuantityAhead(String orderId) {
+        BigDecimal targetPrice = orderIdToPrice.get(orderId);
+        if (targetPrice == null) {
+            return -1L;
+        }
+        for (SortedLevels side : new SortedLevels[]{bidSide, askSide}) {
+            PriceLevel level = side.get(targetPrice);
+            if (level != null && level.contains(orderId)) {
+                return level.getQuantityAhead(orderId);
+            }
+        }
+        return -1L;
+    }
+
+    @Override
+    public Date getLastUpdate() {
+        return this.lastUpdate;
+    }
+
+    @Override
+    public List<Pair<BigDecimal, Integer>> getBidOrderLevels() {
+        return bidSide.toOrderLevels();
+    }
+
+    @Override
+    public List<Pair<BigDecimal, Integer>> getAskOrderLevels() {
+        return askSide.toOrderLevels();
+    }
+
+    @Override
+    public BigDecimal getBestBid() {
+        PriceLevel best = bidSide.level(0);
+        if (best == null) {
+            return null;
+        }
+        return best.getPrice();
+    }
+
+    @Override
+    public BigDecimal getBestAsk() {
+        PriceLevel best = askSide.level(0);
+        if (best == null) {
+            return null;
+        }
+        return best.getPrice();
+    }
+
+    @Override
+    public Pair<BigDecimal, Integer> getAskLevel(Integer level) {
+        assert level >= 0;
+        return aggregateOrders(askSide.level(level));
+    }
+
+    @Override
+    public Pair<BigDecimal, Integer> getBidLevel(Integer level) {
+        assert level >= 0;
+        return aggregateOrders(bidSide.level(level));
+    }
+
+    @Override
+    public int getBidLevelsCount() {
+        return bidSide.size;
+    }
+
+    @Override
+    public int getAskLevelsCount() {
+        return askSide.size;
+    }
+
+    @Override
+    public int getBidDepth(double[] prices, long[] quantities, int[] orderCounts) {
+        return bidSide.copyDepth(prices, quantities, orderCounts);
+    }
+
+    @Override
+    public int getAskDepth(double[] prices, long[] quantities, int[] orderCounts) {
+        return askSide.copyDepth(prices, quantities, orderCounts);
+    }
+
+    /**
+     * Price levels of one side, sorted from worst to best price.
+     */
+    private static final class SortedLevels {
+        /**
+         * True when a higher price is a better price (bid side).
+         */
+        private final boolean higherIsBetter;
+        private PriceLevel[] levels = new PriceLevel[16];
+        private int size = 0;
+
+        SortedLevels(boolean higherIsBetter) {
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        /**
+         * @return index of the level, or (-(insertion point) - 1) when missing
+         */
+        private int search(BigDecimal price) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = levels[middle].getPrice().compareTo(price);
+                if (!higherIsBetter) {
+                    comparison = -comparison;
+                }
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        PriceLevel get(BigDecimal price) {
+            int index = search(price);
+            return index >= 0 ? levels[index] : null;
+        }
+
+        PriceLevel getOrCreate(BigDecimal price) {
+            int index = search(price);
+            if (index >= 0) {
+                return levels[index];
+            }
+            index = -(index + 1);
+            if (size == levels.length) {
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            System.arraycopy(levels, index, levels, index + 1, size - index);
+            PriceLevel level = new PriceLevel(price);
+            levels[index] = level;
+            size++;
+            return level;
+        }
+
+        void remove(PriceLevel level) {
+            int index = search(level.getPrice());
+            System.arraycopy(levels, index + 1, levels, index, size - index - 1);
+            levels[--size] = null;
+        }
+
+        /**
+         * @param depth 0 for the best level
+         * @return level at the given depth, null when the side is not deep enough
+         */
+        PriceLevel level(int depth) {
+            if (depth >= size) {
+                return null;
+            }
+            return levels[size - 1 - depth];
+        }
+
+        List<Pair<BigDecimal, Integer>> toOrderLevels() {
+            List<Pair<BigDecimal, Integer>> orders = new ArrayList<>(size);
+            for (int depth = 0; depth < size; depth++) {
+                orders.add(aggregateOrders(level(depth)));
+            }
+            return orders;
+        }
+
+        int copyDepth(double[] prices, long[] quantities, int[] orderCounts) {
+            int count = Math.min(size, Math.min(prices.length, Math.min(quantities.length, orderCounts.length)));
+            for (int depth = 0; depth < count; depth++) {
+                PriceLevel level = levels[size - 1 - depth];
+                prices[depth] = level.getPrice().doubleValue();
+                quantities[depth] = level.getTotalQuantity();
+                orderCounts[depth] = level.getOrderCount();
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.omarket.quotes;
+
+/**
+ * Receives the changes applied to an {@link OrderBook}, level by level.
+ * <p>
+ * Level events are emitted for every update, top-of-book events only when the best price or the best quantity
+ * of either side has changed. During a batch (see {@link OrderBook#beginBatch()}) a single top-of-book event is
+ * emitted once the batch ends. Prices are given as doubles so that no object is created for the notification.
+ */
+public interface OrderBookListener {
+
+    /**
+     * A price level has been created by a new order.
+     */
+    default void onLevelAdded(OrderBook orderBook, Side side, double price, long quantity, int orderCount) {
+    }
+
+    /**
+     * Total quantity or number of orders of an existing price level has changed.
+     */
+    default void onLevelChanged(OrderBook orderBook, Side side, double price, long quantity, int orderCount) {
+    }
+
+    /**
+     * Last order of a price level has been removed.
+     */
+    default void onLevelRemoved(OrderBook orderBook, Side side, double price) {
+    }
+
+    /**
+     * Best price or best quantity has changed on at least one side; current values are read from the book.
+     */
+    default void onTopOfBookChanged(OrderBook orderBook) {
+    }
+}
@@ -0,0 +1,251 @@
+package org.omarket.quotes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.util.LongIntHashMap;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Order books of many instruments, partitioned across single-writer shards.
+ * <p>
+ * Each shard owns the books of its instruments and applies their updates on its own thread, taken from its own
+ * bounded inbound queue: books are never shared, so they need no locking. Once a shard has drained its queue,
+ * it publishes an immutable {@link DepthSnapshot} of every book it modified, which other threads read with
+ * {@link #getSnapshot(int)}. Updates are counted as processed once the resulting snapshots are visible.
+ */
+@Slf4j
+public class OrderBookManager implements Closeable {
+
+    private static final int MAX_DRAIN = 256;
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private final IntFunction<OrderBook> bookFactory;
+    private final int snapshotDepth;
+    private final Shard[] shards;
+    private final ConcurrentHashMap<Integer, DepthSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @param shardsCount   number of shards, hence of writer threads
+     * @param queueCapacity capacity of the inbound queue of each shard
+     * @param snapshotDepth number of levels per side kept in published snapshots
+     * @param bookFactory   creates the book of an instrument when it receives its first update
+     */
+    public OrderBookManager(int shardsCount, int queueCapacity, int snapshotDepth, IntFunction<OrderBook> bookFactory) {
+        assert shardsCount > 0 && queueCapacity > 0 && snapshotDepth > 0;
+        this.bookFactory = bookFactory;
+        this.snapshotDepth = snapshotDepth;
+        this.shards = new Shard[shardsCount];
+        for (int index = 0; index < shardsCount; index++) {
+            shards[index] = new Shard(index, queueCapacity);
+        }
+    }
+
+    public void start() {
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.running = false;
+            shard.thread.interrupt();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public int getShardsCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return shard in charge of the instrument
+     */
+    public int shardOf(int instrumentId) {
+        int hash = instrumentId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * Queues an update, waiting for room in the shard queue.
+     *
+     * @param instrumentId instrument of the book to be updated
+     * @param update       applied to the book on the shard thread
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void submit(int instrumentId, Consumer<OrderBook> update) throws InterruptedException {
+        shards[shardOf(instrumentId)].queue.put(new Update(instrumentId, update));
+    }
+
+    /**
+     * Queues an update unless the shard queue is full.
+     *
+     * @return false if the update has been rejected
+     */
+    public boolean trySubmit(int instrumentId, Consumer<OrderBook> update) {
+        Shard shard = shards[shardOf(instrumentId)];
+        if (shard.queue.offer(new Update(instrumentId, update))) {
+            return true;
+        }
+        shard.rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return latest published state of the book, null if the instrument has not been updated yet
+     */
+    public DepthSnapshot getSnapshot(int instrumentId) {
+        return snapshots.get(instrumentId);
+    }
+
+    public ShardMetrics getMetrics(int shard) {
+        return shards[shard].metrics();
+    }
+
+    public List<ShardMetrics> getMetrics() {
+        List<ShardMetrics> metrics = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            metrics.add(shard.metrics());
+        }
+        return metrics;
+    }
+
+    private static final class Update {
+        private final int instrumentId;
+        private final Consumer<OrderBook> update;
+
+        Update(int instrumentId, Consumer<OrderBook> update) {
+            this.instrumentId = instrumentId;
+            this.update = update;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private static final int NONE = -1;
+
+        private final int index;
+        private final int queueCapacity;
+        private final BlockingQueue<Update> queue;
+        private final Thread thread;
+        private final List<Update> drained = new ArrayList<>(MAX_DRAIN);
+        private final LongIntHashMap instrumentToBook = new LongIntHashMap(64, NONE);
+        private int[] instrumentIds = new int[64];
+        private OrderBook[] books = new OrderBook[64];
+        private long[] versions = new long[64];
+        private boolean[] modified = new boolean[64];
+        private int[] modifiedBooks = new int[64];
+        private int modifiedCount = 0;
+        private int booksCount = 0;
+        private volatile boolean running = true;
+        private volatile int maxQueueDepth = 0;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong published = new AtomicLong();
+
+        Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.queueCapacity = queueCapacity;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "book-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        ShardMetrics metrics() {
+            return new ShardMetrics(index, processed.get(), failed.get(), rejected.get(), published.get(),
+                    queue.size(), maxQueueDepth);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Update first;
+                try {
+                    first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first == null) {
+                    continue;
+                }
+                // the producer may refill the slot freed by poll() before size() is read
+                int depth = Math.min(queue.size() + 1, queueCapacity);
+                if (depth > maxQueueDepth) {
+                    maxQueueDepth = depth;
+                }
+                apply(first);
+                drained.clear();
+                queue.drainTo(drained, MAX_DRAIN);
+                for (Update update : drained) {
+                    apply(update);
+                }
+                publish();
+                processed.lazySet(processed.get() + 1 + drained.size());
+            }
+            log.info("book shard {} stopped", index);
+        }
+
+        private void apply(Update update) {
+            int book = bookOf(update.instrumentId);
+            try {
+                update.update.accept(books[book]);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("failed to update book of instrument " + update.instrumentId, e);
+            }
+            if (!modified[book]) {
+                modified[book] = true;
+                modifiedBooks[modifiedCount++] = book;
+            }
+        }
+
+        private int bookOf(int instrumentId) {
+            int book = instrumentToBook.get(instrumentId);
+            if (book != NONE) {
+                return book;
+            }
+            if (booksCount == books.length) {
+                int capacity = booksCount * 2;
+                instrumentIds = Arrays.copyOf(instrumentIds, capacity);
+                books = Arrays.copyOf(books, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                modified = Arrays.copyOf(modified, capacity);
+                modifiedBooks = Arrays.copyOf(modifiedBooks, capacity);
+            }
+            book = booksCount++;
+            instrumentIds[book] = instrumentId;
+            books[book] = bookFactory.apply(instrumentId);
+            instrumentToBook.put(instrumentId, book);
+            return book;
+        }
+
+        private void publish() {
+            for (int index = 0; index < modifiedCount; index++) {
+                int book = modifiedBooks[index];
+                modified[book] = false;
+                DepthSnapshot snapshot = new DepthSnapshot(instrumentIds[book], books[book], snapshotDepth, ++versions[book]);
+                snapshots.put(instrumentIds[book], snapshot);
+                published.lazySet(published.get() + 1);
+            }
+            modifiedCount = 0;
+        }
+    }
+}
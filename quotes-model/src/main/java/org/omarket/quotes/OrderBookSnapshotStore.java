@@ -0,0 +1,180 @@
+package org.omarket.quotes;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Periodic order book snapshots, stored next to the recorded ticks of a product.
+ * <p>
+ * Snapshots follow the layout of the tick files: {@code <product storage>/yyyyMMdd/HHmmss.book} (UTC), so that
+ * a replay starting at a given time restores the nearest earlier snapshot and only replays the ticks recorded
+ * after it.
+ */
+@Slf4j
+public class OrderBookSnapshotStore {
+
+    private static final DateTimeFormatter FORMAT_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter FORMAT_TIME = DateTimeFormatter.ofPattern("HHmmss");
+    private static final String EXTENSION = ".book";
+
+    private final Path productStorage;
+    private final Duration interval;
+    private ZonedDateTime lastSnapshot = null;
+
+    /**
+     * @param productStorage storage directory of the product, as used by the tick recorder
+     * @param interval       minimum time between two snapshots taken by {@link #snapshotIfDue}
+     */
+    public OrderBookSnapshotStore(Path productStorage, Duration interval) {
+        this.productStorage = productStorage;
+        this.interval = interval;
+    }
+
+    /**
+     * Saves a snapshot if none was taken by this store during the last interval.
+     *
+     * @param orderBook book to be saved
+     * @param time      time of the book state
+     * @return true if a snapshot has been written
+     * @throws IOException when writing fails
+     */
+    public boolean snapshotIfDue(TickOrderBookImpl orderBook, ZonedDateTime time) throws IOException {
+        if (lastSnapshot != null && time.isBefore(lastSnapshot.plus(interval))) {
+            return false;
+        }
+        write(orderBook, time);
+        return true;
+    }
+
+    /**
+     * Saves a snapshot, written to a temporary file first so that readers never see a partial snapshot.
+     *
+     * @param orderBook book to be saved
+     * @param time      time of the book state
+     * @return path of the snapshot
+     * @throws IOException when writing fails
+     */
+    public Path write(TickOrderBookImpl orderBook, ZonedDateTime time) throws IOException {
+        ZonedDateTime utcTime = time.withZoneSameInstant(ZoneOffset.UTC);
+        Path dayDirectory = productStorage.resolve(FORMAT_DAY.format(utcTime));
+        Files.createDirectories(dayDirectory);
+        Path snapshotPath = dayDirectory.resolve(FORMAT_TIME.format(utcTime) + EXTENSION);
+        Path temporaryPath = dayDirectory.resolve(FORMAT_TIME.format(utcTime) + EXTENSION + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            orderBook.writeSnapshot(output);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastSnapshot = time;
+        log.debug("order book snapshot saved: {}", snapshotPath);
+        return snapshotPath;
+    }
+
+    /**
+     * @param time time from which data is to be replayed
+     * @return latest snapshot taken at or before the given time, null if there is none
+     * @throws IOException when the storage cannot be listed
+     */
+    public Path findNearest(ZonedDateTime time) throws IOException {
+        ZonedDateTime utcTime = time.withZoneSameInstant(ZoneOffset.UTC);
+        LocalDate day = utcTime.toLocalDate();
+        for (Path dayDirectory : listDays(day)) {
+            LocalDate directoryDay = LocalDate.parse(dayDirectory.getFileName().toString(), FORMAT_DAY);
+            LocalTime latest = directoryDay.equals(day) ? utcTime.toLocalTime() : LocalTime.MAX;
+            Path nearest = null;
+            LocalTime nearestTime = null;
+            try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(dayDirectory, "*" + EXTENSION)) {
+                for (Path snapshot : snapshots) {
+                    LocalTime snapshotTime = parseTime(snapshot);
+                    if (snapshotTime == null || snapshotTime.isAfter(latest)) {
+                        continue;
+                    }
+                    if (nearestTime == null || snapshotTime.isAfter(nearestTime)) {
+                        nearest = snapshot;
+                        nearestTime = snapshotTime;
+                    }
+                }
+            }
+            if (nearest != null) {
+                return nearest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param time time from which data is to be replayed
+     * @return time of the latest snapshot taken at or before the given time, null if there is none
+     * @throws IOException when the storage cannot be listed
+     */
+    public ZonedDateTime findNearestTime(ZonedDateTime time) throws IOException {
+        Path nearest = findNearest(time);
+        if (nearest == null) {
+            return null;
+        }
+        LocalDate day = LocalDate.parse(nearest.getParent().getFileName().toString(), FORMAT_DAY);
+        return ZonedDateTime.of(day, parseTime(nearest), ZoneOffset.UTC);
+    }
+
+    /**
+     * @param snapshotPath snapshot file
+     * @return restored order book
+     * @throws IOException when reading fails
+     */
+    public static TickOrderBookImpl read(Path snapshotPath) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            return TickOrderBookImpl.readSnapshot(input);
+        }
+    }
+
+    /**
+     * @return day directories up to the given day, latest first
+     */
+    private List<Path> listDays(LocalDate lastDay) throws IOException {
+        List<Path> days = new ArrayList<>();
+        if (!Files.isDirectory(productStorage)) {
+            return days;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(productStorage, Files::isDirectory)) {
+            for (Path directory : directories) {
+                try {
+                    LocalDate day = LocalDate.parse(directory.getFileName().toString(), FORMAT_DAY);
+                    if (!day.isAfter(lastDay)) {
+                        days.add(directory);
+                    }
+                } catch (DateTimeParseException e) {
+                    log.debug("ignoring directory {}", directory);
+                }
+            }
+        }
+        days.sort(Collections.reverseOrder());
+        return days;
+    }
+
+    private static LocalTime parseTime(Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        try {
+            return LocalTime.parse(fileName.substring(0, fileName.length() - EXTENSION.length()), FORMAT_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
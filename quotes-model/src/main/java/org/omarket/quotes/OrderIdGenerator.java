@@ -0,0 +1,13 @@
+package org.omarket.quotes;
+
+/**
+ * Source of numeric order identifiers.
+ */
+public interface OrderIdGenerator {
+
+    /**
+     * @return an identifier never returned before by this generator
+     */
+    long nextId();
+
+}
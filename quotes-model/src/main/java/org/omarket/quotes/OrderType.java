@@ -0,0 +1,19 @@
+package org.omarket.quotes;
+
+/**
+ * Types of the orders handled by the {@link MatchingSimulator}.
+ */
+public enum OrderType {
+    /**
+     * Executes up to its limit price, the remaining quantity rests in the book.
+     */
+    LIMIT,
+    /**
+     * Executes at any price, the remaining quantity is cancelled.
+     */
+    MARKET,
+    /**
+     * Immediate or cancel: executes up to its limit price, the remaining quantity is cancelled.
+     */
+    IOC
+}
@@ -0,0 +1,187 @@
+package org.omarket.quotes;
+
+import java.util.Arrays;
+
+/**
+ * P&L of a portfolio of instruments, based on the weighted average acquisition cost method used by
+ * {@link ProfitAndLossTracker}.
+ * <p>
+ * Positions are kept in primitive arrays indexed by instrument id (ids are expected to be small and dense) and
+ * amounts are doubles. Portfolio totals are updated incrementally: a fill or a new mark price only changes the
+ * contribution of its own instrument, so reading the NAV does not loop over positions.
+ * {@link #resynchronize()} recomputes the totals from the positions, to discard the rounding accumulated by
+ * very long runs.
+ */
+public class PortfolioProfitAndLoss {
+
+    private final double startEquity;
+    private long[] quantities;
+    private double[] acquisitionCosts;
+    private double[] realizedPnls;
+    private double[] markPrices;
+    private double[] unrealizedPnls;
+    private double totalRealizedPnl = 0.;
+    private double totalUnrealizedPnl = 0.;
+
+    /**
+     * @param instrumentsCapacity expected number of instruments, arrays grow beyond it
+     * @param startEquity         equity before any trade
+     */
+    public PortfolioProfitAndLoss(int instrumentsCapacity, double startEquity) {
+        assert instrumentsCapacity > 0;
+        this.startEquity = startEquity;
+        this.quantities = new long[instrumentsCapacity];
+        this.acquisitionCosts = new double[instrumentsCapacity];
+        this.realizedPnls = new double[instrumentsCapacity];
+        this.markPrices = new double[instrumentsCapacity];
+        this.unrealizedPnls = new double[instrumentsCapacity];
+        Arrays.fill(markPrices, Double.NaN);
+    }
+
+    private void ensureCapacity(int instrumentId) {
+        if (instrumentId < quantities.length) {
+            return;
+        }
+        int capacity = Math.max(quantities.length * 2, instrumentId + 1);
+        int previousCapacity = quantities.length;
+        quantities = Arrays.copyOf(quantities, capacity);
+        acquisitionCosts = Arrays.copyOf(acquisitionCosts, capacity);
+        realizedPnls = Arrays.copyOf(realizedPnls, capacity);
+        markPrices = Arrays.copyOf(markPrices, capacity);
+        unrealizedPnls = Arrays.copyOf(unrealizedPnls, capacity);
+        Arrays.fill(markPrices, previousCapacity, capacity, Double.NaN);
+    }
+
+    /**
+     * @param instrumentId instrument traded
+     * @param fillQty      signed quantity, negative for a sale
+     * @param fillPrice    execution price
+     */
+    public void addFill(int instrumentId, long fillQty, double fillPrice) {
+        assert instrumentId >= 0;
+        ensureCapacity(instrumentId);
+        long oldQuantity = quantities[instrumentId];
+        double oldCost = acquisitionCosts[instrumentId];
+        if (oldQuantity == 0) {
+            acquisitionCosts[instrumentId] = fillPrice * fillQty;
+        } else {
+            long closingQty = 0;
+            long openingQty = fillQty;
+            if (Long.signum(oldQuantity) != Long.signum(fillQty)) {
+                closingQty = Math.min(Math.abs(oldQuantity), Math.abs(fillQty)) * Long.signum(fillQty);
+                openingQty = fillQty - closingQty;
+            }
+            double unitCost = oldCost / oldQuantity;
+            double realized = closingQty * (unitCost - fillPrice);
+            realizedPnls[instrumentId] += realized;
+            totalRealizedPnl += realized;
+            acquisitionCosts[instrumentId] = oldCost + openingQty * fillPrice + closingQty * unitCost;
+        }
+        quantities[instrumentId] = oldQuantity + fillQty;
+        if (quantities[instrumentId] == 0) {
+            acquisitionCosts[instrumentId] = 0.;
+        }
+        updateUnrealized(instrumentId);
+    }
+
+    /**
+     * Values the position of an instrument at a new price.
+     */
+    public void mark(int instrumentId, double price) {
+        assert instrumentId >= 0;
+        ensureCapacity(instrumentId);
+        markPrices[instrumentId] = price;
+        updateUnrealized(instrumentId);
+    }
+
+    /**
+     * Values every position at once.
+     *
+     * @param prices price of each instrument indexed by id, NaN to keep the previous mark
+     */
+    public void markAll(double[] prices) {
+        ensureCapacity(prices.length - 1);
+        for (int instrumentId = 0; instrumentId < prices.length; instrumentId++) {
+            if (!Double.isNaN(prices[instrumentId])) {
+                markPrices[instrumentId] = prices[instrumentId];
+                updateUnrealized(instrumentId);
+            }
+        }
+    }
+
+    private void updateUnrealized(int instrumentId) {
+        double unrealized = computeUnrealized(instrumentId);
+        totalUnrealizedPnl += unrealized - unrealizedPnls[instrumentId];
+        unrealizedPnls[instrumentId] = unrealized;
+    }
+
+    /**
+     * Positions that have never been marked are valued at their acquisition cost.
+     */
+    private double computeUnrealized(int instrumentId) {
+        double markPrice = markPrices[instrumentId];
+        if (Double.isNaN(markPrice) || quantities[instrumentId] == 0) {
+            return 0.;
+        }
+        return markPrice * quantities[instrumentId] - acquisitionCosts[instrumentId];
+    }
+
+    /**
+     * Recomputes portfolio totals from the positions.
+     */
+    public void resynchronize() {
+        double realized = 0.;
+        double unrealized = 0.;
+        for (int instrumentId = 0; instrumentId < quantities.length; instrumentId++) {
+            unrealizedPnls[instrumentId] = computeUnrealized(instrumentId);
+            realized += realizedPnls[instrumentId];
+            unrealized += unrealizedPnls[instrumentId];
+        }
+        totalRealizedPnl = realized;
+        totalUnrealizedPnl = unrealized;
+    }
+
+    public long getQuantity(int instrumentId) {
+        return instrumentId < quantities.length ? quantities[instrumentId] : 0L;
+    }
+
+    public double getAcquisitionCost(int instrumentId) {
+        return instrumentId < acquisitionCosts.length ? acquisitionCosts[instrumentId] : 0.;
+    }
+
+    public double getUnitAcquisitionCost(int instrumentId) {
+        return getAcquisitionCost(instrumentId) / getQuantity(instrumentId);
+    }
+
+    public double getMarkPrice(int instrumentId) {
+        return instrumentId < markPrices.length ? markPrices[instrumentId] : Double.NaN;
+    }
+
+    public double getRealizedPnl(int instrumentId) {
+        return instrumentId < realizedPnls.length ? realizedPnls[instrumentId] : 0.;
+    }
+
+    public double getUnrealizedPnl(int instrumentId) {
+        return instrumentId < unrealizedPnls.length ? unrealizedPnls[instrumentId] : 0.;
+    }
+
+    public double getTotalPnl(int instrumentId) {
+        return getRealizedPnl(instrumentId) + getUnrealizedPnl(instrumentId);
+    }
+
+    public double getRealizedPnl() {
+        return totalRealizedPnl;
+    }
+
+    public double getUnrealizedPnl() {
+        return totalUnrealizedPnl;
+    }
+
+    public double getTotalPnl() {
+        return totalRealizedPnl + totalUnrealizedPnl;
+    }
+
+    public double getNav() {
+        return startEquity + getTotalPnl();
+    }
+}
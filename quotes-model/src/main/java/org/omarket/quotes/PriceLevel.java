@@ -0,0 +1,84 @@
+package org.omarket.quotes;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+
+/**
+ * Orders resting at a given price in time priority, with their running total quantity.
+ */
+class PriceLevel {
+
+    private final BigDecimal price;
+    private final LinkedHashMap<String, Order> ordersById = new LinkedHashMap<>();
+    private long totalQuantity = 0L;
+
+    PriceLevel(BigDecimal price) {
+        this.price = price;
+    }
+
+    BigDecimal getPrice() {
+        return price;
+    }
+
+    long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    int getOrderCount() {
+        return ordersById.size();
+    }
+
+    boolean isEmpty() {
+        return ordersById.isEmpty();
+    }
+
+    boolean contains(String orderId) {
+        return ordersById.containsKey(orderId);
+    }
+
+    void add(Order order) {
+        Order previous = ordersById.put(order.getOrderId(), order);
+        if (previous != null) {
+            totalQuantity -= previous.getQuantity();
+        }
+        totalQuantity += order.getQuantity();
+    }
+
+    Order remove(String orderId) {
+        Order order = ordersById.remove(orderId);
+        if (order != null) {
+            totalQuantity -= order.getQuantity();
+        }
+        return order;
+    }
+
+    /**
+     * A reduced order keeps its time priority, an increased one goes to the back of the queue.
+     */
+    Order update(String orderId, Integer newVolume) {
+        Order order = ordersById.get(orderId);
+        if (order != null) {
+            if (newVolume > order.getQuantity()) {
+                ordersById.remove(orderId);
+                ordersById.put(orderId, order);
+            }
+            totalQuantity += newVolume - order.getQuantity();
+            order.setQuantity(newVolume);
+        }
+        return order;
+    }
+
+    /**
+     * @return quantity of the orders queued in front of the given order, -1 if it is not at this level
+     */
+    long getQuantityAhead(String orderId) {
+        long quantityAhead = 0L;
+        for (Order order : ordersById.values()) {
+            if (order.getOrderId().equals(orderId)) {
+                return quantityAhead;
+            }
+            quantityAhead += order.getQuantity();
+        }
+        return -1L;
+    }
+}
@@ -14,7 +14,7 @@ import static java.lang.Math.min;
  */
 @Slf4j
 public class ProfitAndLossTracker {
-    private Integer quantity = 0;
+    private int quantity = 0;
     private float acquisitionCost = 0;
     private float realizedPnl = 0;
 
@@ -39,24 +39,37 @@ public class ProfitAndLossTracker {
         /* Adding a fill updates the P&L intermediary data.
          */
         log.debug("adding fill: {} at {}", fillQty, fillPrice);
-        Integer oldQuantity = this.quantity;
+        if (this.quantity == 0) {
+            this.quantity = fillQty;
+            this.acquisitionCost = fillPrice.multiply(BigDecimal.valueOf(fillQty)).floatValue();
+        } else {
+            addFill(fillQty.intValue(), fillPrice.floatValue());
+        }
+    }
+
+    /**
+     * Same as {@link #addFill(Integer, BigDecimal)} without boxing, for simulated executions.
+     */
+    public void addFill(int fillQty, double fillPrice) {
+        int oldQuantity = this.quantity;
         float oldCost = this.acquisitionCost;
         float oldRealized = this.realizedPnl;
+        float price = (float) fillPrice;
 
         if (oldQuantity == 0) {
             this.quantity = fillQty;
-            this.acquisitionCost = fillPrice.multiply(BigDecimal.valueOf(fillQty)).floatValue();
+            this.acquisitionCost = (float) (fillPrice * fillQty);
         } else {
-            Integer closingQty = 0;
-            Integer openingQty = fillQty;
-            if (Math.signum(oldQuantity) != Math.signum(fillQty)) {
-                closingQty = min(abs(oldQuantity), abs(fillQty)) * (int) Math.signum(fillQty);
+            int closingQty = 0;
+            int openingQty = fillQty;
+            if (Integer.signum(oldQuantity) != Integer.signum(fillQty)) {
+                closingQty = min(abs(oldQuantity), abs(fillQty)) * Integer.signum(fillQty);
                 openingQty = fillQty - closingQty;
             }
 
             this.quantity = oldQuantity + fillQty;
-            this.acquisitionCost = oldCost + openingQty * fillPrice.floatValue() + closingQty.floatValue() * oldCost / oldQuantity;
-            this.realizedPnl = oldRealized + closingQty.floatValue() * (oldCost / oldQuantity - fillPrice.floatValue());
+            this.acquisitionCost = oldCost + openingQty * price + (float) closingQty * oldCost / oldQuantity;
+            this.realizedPnl = oldRealized + (float) closingQty * (oldCost / oldQuantity - price);
         }
     }
 
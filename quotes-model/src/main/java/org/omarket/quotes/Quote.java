@@ -27,4 +27,8 @@ public interface Quote {
 
     boolean sameSampledTime(Quote other, TemporalUnit temporalUnit);
 
+    default boolean sameSampledTime(Quote other, EpochSampler sampler) {
+        return sampler.bucketOf(this) == sampler.bucketOf(other);
+    }
+
 }
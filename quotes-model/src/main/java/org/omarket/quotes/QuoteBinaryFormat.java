@@ -0,0 +1,153 @@
+package org.omarket.quotes;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary form of a quote, for transport between processes.
+ * <p>
+ * Fixed layout (big-endian): version (byte), last modification in nanoseconds since epoch (long), bid size (int),
+ * ask size (int), bid and ask prices as unscaled values (2 longs) followed by their scales (2 bytes), then the
+ * product code as a length (short) and its UTF-8 bytes. Missing values are written as the minimum value of their
+ * type, a missing product code as a length of -1. Decoded timestamps are in UTC.
+ */
+public final class QuoteBinaryFormat {
+
+    public static final byte VERSION = 1;
+    /**
+     * Length of the fixed part, before the product code bytes.
+     */
+    public static final int FIXED_LENGTH = 1 + 8 + 4 + 4 + 8 + 8 + 1 + 1 + 2;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int NO_SIZE = Integer.MIN_VALUE;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private QuoteBinaryFormat() {
+    }
+
+    /**
+     * @return quote in binary form
+     * @throws IllegalArgumentException if a price does not fit the fixed layout
+     */
+    public static byte[] encode(Quote quote) {
+        String productCode = quote.getProductCode();
+        byte[] code = productCode == null ? new byte[0] : productCode.getBytes(StandardCharsets.UTF_8);
+        if (code.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("product code too long: " + productCode);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + code.length);
+        buffer.put(VERSION);
+        if (quote instanceof FixedPointQuote) {
+            writeFixedPoint((FixedPointQuote) quote, buffer);
+        } else {
+            writeDecimal(quote, buffer);
+        }
+        buffer.putShort(productCode == null ? -1 : (short) code.length);
+        buffer.put(code);
+        return buffer.array();
+    }
+
+    /**
+     * Fixed-point quotes are written without creating decimal prices.
+     */
+    private static void writeFixedPoint(FixedPointQuote quote, ByteBuffer buffer) {
+        byte scale = toScale(quote.getScale());
+        buffer.putLong(quote.getEpochNanos());
+        buffer.putInt(quote.getBidSize() == FixedPointQuote.NO_SIZE ? NO_SIZE : quote.getBidSize());
+        buffer.putInt(quote.getAskSize() == FixedPointQuote.NO_SIZE ? NO_SIZE : quote.getAskSize());
+        buffer.putLong(quote.getBestBidMantissa() == FixedPointQuote.NO_PRICE ? NO_PRICE : quote.getBestBidMantissa());
+        buffer.putLong(quote.getBestAskMantissa() == FixedPointQuote.NO_PRICE ? NO_PRICE : quote.getBestAskMantissa());
+        buffer.put(scale);
+        buffer.put(scale);
+    }
+
+    private static void writeDecimal(Quote quote, ByteBuffer buffer) {
+        ZonedDateTime lastModified = quote.getLastModified();
+        Integer bidSize = quote.getBestBidSize();
+        Integer askSize = quote.getBestAskSize();
+        BigDecimal bidPrice = quote.getBestBidPrice();
+        BigDecimal askPrice = quote.getBestAskPrice();
+        if (lastModified == null) {
+            buffer.putLong(NO_TIMESTAMP);
+        } else {
+            Instant instant = lastModified.toInstant();
+            buffer.putLong(instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano());
+        }
+        buffer.putInt(bidSize == null ? NO_SIZE : bidSize);
+        buffer.putInt(askSize == null ? NO_SIZE : askSize);
+        buffer.putLong(bidPrice == null ? NO_PRICE : toUnscaled(bidPrice));
+        buffer.putLong(askPrice == null ? NO_PRICE : toUnscaled(askPrice));
+        buffer.put(bidPrice == null ? 0 : toScale(bidPrice.scale()));
+        buffer.put(askPrice == null ? 0 : toScale(askPrice.scale()));
+    }
+
+    private static long toUnscaled(BigDecimal price) {
+        long unscaled;
+        try {
+            unscaled = price.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("price out of range: " + price, e);
+        }
+        if (unscaled == NO_PRICE) {
+            throw new IllegalArgumentException("price out of range: " + price);
+        }
+        return unscaled;
+    }
+
+    private static byte toScale(int scale) {
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("price scale out of range: " + scale);
+        }
+        return (byte) scale;
+    }
+
+    /**
+     * Reads a quote from the current position of the buffer, which is moved after it.
+     *
+     * @return immutable quote
+     * @throws IllegalArgumentException if the data is not a quote in a known version
+     */
+    public static Quote decode(ByteBuffer buffer) {
+        try {
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported quote format version: " + version);
+            }
+            long epochNanos = buffer.getLong();
+            int bidSize = buffer.getInt();
+            int askSize = buffer.getInt();
+            long bidUnscaled = buffer.getLong();
+            long askUnscaled = buffer.getLong();
+            byte bidScale = buffer.get();
+            byte askScale = buffer.get();
+            short codeLength = buffer.getShort();
+            String productCode = null;
+            if (codeLength >= 0) {
+                byte[] code = new byte[codeLength];
+                buffer.get(code);
+                productCode = new String(code, StandardCharsets.UTF_8);
+            }
+            ZonedDateTime lastModified = null;
+            if (epochNanos != NO_TIMESTAMP) {
+                Instant instant = Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                        Math.floorMod(epochNanos, NANOS_PER_SECOND));
+                lastModified = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
+            }
+            return new QuoteImpl(lastModified,
+                    bidSize == NO_SIZE ? null : bidSize,
+                    bidUnscaled == NO_PRICE ? null : BigDecimal.valueOf(bidUnscaled, bidScale),
+                    askUnscaled == NO_PRICE ? null : BigDecimal.valueOf(askUnscaled, askScale),
+                    askSize == NO_SIZE ? null : askSize,
+                    productCode);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated quote", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.omarket.quotes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of the timestamps given to quotes when they are updated.
+ */
+public interface QuoteClock {
+
+    /**
+     * Wall clock read on each call, with a millisecond resolution.
+     */
+    QuoteClock SYSTEM = () -> TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+    /**
+     * @return current time in nanoseconds since the epoch (UTC)
+     */
+    long epochNanos();
+
+}
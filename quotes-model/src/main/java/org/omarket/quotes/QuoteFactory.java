@@ -6,6 +6,7 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Christophe on 07/12/2016.
@@ -47,6 +48,14 @@ public class QuoteFactory {
         return output;
     }
 
+    /**
+     * @return copy of the quote stamped at the time of the sample of the given bucket
+     */
+    public QuoteImpl createSample(Quote quote, EpochSampler sampler, long bucket) {
+        return new QuoteImpl(sampler.sampleTime(bucket), quote.getBestBidSize(), quote.getBestBidPrice(),
+                quote.getBestAskPrice(), quote.getBestAskSize(), quote.getProductCode());
+    }
+
     public QuoteImpl createFrom(Quote quote, ChronoUnit sampleUnit, Integer sampleDelay) {
         ZonedDateTime lastModified = toSampledTime(quote.getLastModified(), sampleUnit).plus(sampleDelay, sampleUnit);
         Integer bestBidSize = quote.getBestBidSize();
@@ -57,10 +66,51 @@ public class QuoteFactory {
         return new QuoteImpl(lastModified, bestBidSize, bestBidPrice, bestAskPrice, bestAskSize, productCode);
     }
 
+    public FixedPointQuoteImpl createFixedPoint(int instrumentId, String productCode, int scale) {
+        return new FixedPointQuoteImpl(instrumentId, productCode, scale);
+    }
+
+    /**
+     * Converts a legacy quote, prices having at most scale decimals.
+     */
+    public FixedPointQuoteImpl createFixedPoint(Quote quote, int instrumentId, int scale) {
+        FixedPointQuoteImpl fixedPointQuote = new FixedPointQuoteImpl(instrumentId, quote.getProductCode(), scale);
+        return copyInto(quote, fixedPointQuote);
+    }
+
+    /**
+     * Writes a legacy quote into a reusable fixed-point quote of the same product.
+     *
+     * @return the target quote
+     */
+    public FixedPointQuoteImpl copyInto(Quote quote, FixedPointQuoteImpl target) {
+        ZonedDateTime lastModified = quote.getLastModified();
+        long epochNanos = lastModified == null ? 0L : TimeUnit.SECONDS.toNanos(lastModified.toEpochSecond()) + lastModified.getNano();
+        Integer bestBidSize = quote.getBestBidSize();
+        Integer bestAskSize = quote.getBestAskSize();
+        return target.set(epochNanos,
+                bestBidSize == null ? FixedPointQuote.NO_SIZE : bestBidSize,
+                target.toMantissa(quote.getBestBidPrice()),
+                target.toMantissa(quote.getBestAskPrice()),
+                bestAskSize == null ? FixedPointQuote.NO_SIZE : bestAskSize);
+    }
+
+    /**
+     * Creates an immutable copy of a quote, for instance to keep it in a history.
+     */
+    public QuoteImpl createFrom(Quote quote) {
+        return new QuoteImpl(quote.getLastModified(), quote.getBestBidSize(), quote.getBestBidPrice(),
+                quote.getBestAskPrice(), quote.getBestAskSize(), quote.getProductCode());
+    }
+
     public MutableQuoteImpl createMutable(BigDecimal minTick, String productCode) {
         return new MutableQuoteImpl(minTick, productCode);
     }
 
+    public MutableQuoteImpl createMutable(BigDecimal minTick, String productCode, QuoteClock clock) {
+        return new MutableQuoteImpl(minTick, productCode, clock);
+    }
+
     public MutableQuoteImpl createMutable(String minTick, String productCode) {
         return new MutableQuoteImpl(new BigDecimal(minTick), productCode);
     }
@@ -0,0 +1,276 @@
+package org.omarket.quotes;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Window of the latest samples of a product, one per bucket of an {@link EpochSampler}.
+ * <p>
+ * Samples are stored as runs: a value shared by consecutive buckets and the number of these buckets, so that
+ * forward filling an illiquid product only increments a counter. Timestamps are implicit: the sample of a bucket
+ * is stamped at the end of the bucket. {@link #asList()} gives a dense view of the window, runs are read through
+ * {@link #getRunValue(int)} and {@link #getRunLength(int)} without creating samples.
+ */
+public class SampledQuoteSeries {
+
+    private final EpochSampler sampler;
+    private final int capacity;
+    private final QuoteFactory quoteFactory = new QuoteFactory();
+    /*
+     * runs are kept in a ring, oldest at head
+     */
+    private final Quote[] values;
+    private final long[] firstBuckets;
+    private final int[] counts;
+    private int head = 0;
+    private int runsCount = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity maximum number of samples kept, oldest are dropped first
+     * @param sampler  defines the buckets
+     */
+    public SampledQuoteSeries(int capacity, EpochSampler sampler) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        this.sampler = sampler;
+        this.values = new Quote[capacity];
+        this.firstBuckets = new long[capacity];
+        this.counts = new int[capacity];
+    }
+
+    /**
+     * Sets the sample of a bucket, after the last one. Buckets in between repeat the previous sample.
+     *
+     * @param bucket bucket of the sample
+     * @param value  quote holding the sample prices and sizes, its time is ignored
+     * @throws IllegalArgumentException if the bucket is not after the last one
+     */
+    public void add(long bucket, Quote value) {
+        if (runsCount > 0) {
+            int last = lastRun();
+            long lastBucket = firstBuckets[last] + counts[last] - 1;
+            if (bucket <= lastBucket) {
+                throw new IllegalArgumentException("bucket " + bucket + " is not after last sample " + lastBucket);
+            }
+            if (sameValues(values[last], value)) {
+                extend(bucket - lastBucket);
+                return;
+            }
+            extend(bucket - lastBucket - 1);
+        }
+        if (runsCount == capacity) {
+            dropRun();
+        }
+        int run = (head + runsCount) % capacity;
+        values[run] = value;
+        firstBuckets[run] = bucket;
+        counts[run] = 1;
+        runsCount++;
+        size++;
+        trim();
+    }
+
+    /**
+     * Repeats the last sample up to the given bucket.
+     */
+    public void fillTo(long bucket) {
+        if (runsCount == 0) {
+            return;
+        }
+        long lastBucket = getLastBucket();
+        if (bucket > lastBucket) {
+            extend(bucket - lastBucket);
+        }
+    }
+
+    private void extend(long buckets) {
+        if (buckets <= 0) {
+            return;
+        }
+        int last = lastRun();
+        if (buckets >= capacity) {
+            // the last sample fills the whole window
+            long lastBucket = firstBuckets[last] + counts[last] - 1 + buckets;
+            while (runsCount > 1) {
+                dropRun();
+            }
+            firstBuckets[last] = lastBucket - capacity + 1;
+            counts[last] = capacity;
+            size = capacity;
+            return;
+        }
+        counts[last] += (int) buckets;
+        size += (int) buckets;
+        trim();
+    }
+
+    private void trim() {
+        while (size > capacity) {
+            int excess = size - capacity;
+            if (counts[head] > excess) {
+                counts[head] -= excess;
+                firstBuckets[head] += excess;
+                size -= excess;
+            } else {
+                dropRun();
+            }
+        }
+    }
+
+    private void dropRun() {
+        size -= counts[head];
+        values[head] = null;
+        head = (head + 1) % capacity;
+        runsCount--;
+    }
+
+    private int lastRun() {
+        return (head + runsCount - 1) % capacity;
+    }
+
+    private static boolean sameValues(Quote quote, Quote other) {
+        return quote == other || (Objects.equals(quote.getBestBidSize(), other.getBestBidSize())
+                && Objects.equals(quote.getBestAskSize(), other.getBestAskSize())
+                && samePrice(quote.getBestBidPrice(), other.getBestBidPrice())
+                && samePrice(quote.getBestAskPrice(), other.getBestAskPrice())
+                && Objects.equals(quote.getProductCode(), other.getProductCode()));
+    }
+
+    private static boolean samePrice(BigDecimal price, BigDecimal other) {
+        return price == null ? other == null : other != null && price.compareTo(other) == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of distinct runs held, which is the number of quotes referenced
+     */
+    public int getRunsCount() {
+        return runsCount;
+    }
+
+    public EpochSampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * @param run position of the run, 0 being the oldest
+     * @return quote shared by the samples of the run
+     */
+    public Quote getRunValue(int run) {
+        return values[runIndex(run)];
+    }
+
+    /**
+     * @return bucket of the first sample of the run still in the window
+     */
+    public long getRunFirstBucket(int run) {
+        return firstBuckets[runIndex(run)];
+    }
+
+    /**
+     * @return number of samples of the run still in the window
+     */
+    public int getRunLength(int run) {
+        return counts[runIndex(run)];
+    }
+
+    private int runIndex(int run) {
+        if (run < 0 || run >= runsCount) {
+            throw new IndexOutOfBoundsException("run " + run + ", runs " + runsCount);
+        }
+        return (head + run) % capacity;
+    }
+
+    public long getFirstBucket() {
+        if (runsCount == 0) {
+            throw new IllegalStateException("no sample");
+        }
+        return firstBuckets[head];
+    }
+
+    public long getLastBucket() {
+        if (runsCount == 0) {
+            throw new IllegalStateException("no sample");
+        }
+        int last = lastRun();
+        return firstBuckets[last] + counts[last] - 1;
+    }
+
+    /**
+     * @param index position in the window, 0 being the oldest sample
+     * @return bucket of the sample
+     */
+    public long getBucket(int index) {
+        checkIndex(index);
+        return getFirstBucket() + index;
+    }
+
+    /**
+     * @param index position in the window, 0 being the oldest sample
+     * @return shared quote holding the sample prices and sizes, not stamped at the sample time
+     */
+    public Quote getValue(int index) {
+        checkIndex(index);
+        long bucket = getFirstBucket() + index;
+        // latest run starting at or before the bucket
+        int low = 0;
+        int high = runsCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstBuckets[(head + middle) % capacity] <= bucket) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return values[(head + low) % capacity];
+    }
+
+    /**
+     * @return sample stamped at its time, created on each call
+     */
+    public Quote get(int index) {
+        return quoteFactory.createSample(getValue(index), sampler, getBucket(index));
+    }
+
+    public Quote getLast() {
+        return isEmpty() ? null : get(size - 1);
+    }
+
+    /**
+     * @return dense view of the window, from oldest to latest sample
+     */
+    public List<Quote> asList() {
+        return new AbstractList<Quote>() {
+            @Override
+            public Quote get(int index) {
+                return SampledQuoteSeries.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    public String toString() {
+        return asList().toString();
+    }
+}
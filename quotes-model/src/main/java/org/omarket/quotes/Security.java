@@ -18,6 +18,7 @@ public class Security {
     private Double minTick = null;
     private String priceMagnifier = null;
     private String longName = null;
+    private transient BigDecimal minTickDecimal = null;
 
     public Security(){
 
@@ -71,8 +72,24 @@ public class Security {
         return securityType;
     }
 
+    /**
+     * Computed once, the security is not modified after construction.
+     */
     public BigDecimal getMinTick() {
-        return new BigDecimal(minTick, MathContext.DECIMAL32).stripTrailingZeros();
+        if (minTickDecimal == null) {
+            minTickDecimal = new BigDecimal(minTick, MathContext.DECIMAL32).stripTrailingZeros();
+        }
+        return minTickDecimal;
+    }
+
+    /**
+     * @return ratio between quoted and traded prices, 1 when not specified
+     */
+    public int getPriceMagnifier() {
+        if (priceMagnifier == null || priceMagnifier.isEmpty()) {
+            return 1;
+        }
+        return Integer.parseInt(priceMagnifier);
     }
 
     public String getSymbol() {
@@ -0,0 +1,157 @@
+package org.omarket.quotes;
+
+import org.omarket.quotes.util.LongIntHashMap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of securities, keyed by their int contract id.
+ * <p>
+ * Derived metadata is computed once when the master is built: tick size as a decimal and as a double, tick scale
+ * (number of decimals of the tick) and price magnifier. Symbols and exchanges are interned, so that securities of
+ * the same exchange share one string. A refreshed master is built aside and swapped in as a whole.
+ */
+public final class SecurityMaster {
+
+    public static final SecurityMaster EMPTY = new SecurityMaster(new ArrayList<>(), 0L);
+    private static final int NONE = -1;
+
+    private final long version;
+    private final LongIntHashMap conIdToIndex;
+    private final Security[] securities;
+    private final int[] conIds;
+    private final BigDecimal[] minTicks;
+    private final double[] minTickValues;
+    private final int[] tickScales;
+    private final int[] priceMagnifiers;
+    private final String[] symbols;
+    private final String[] exchanges;
+
+    private SecurityMaster(List<Security> loaded, long version) {
+        int count = loaded.size();
+        this.version = version;
+        this.conIdToIndex = new LongIntHashMap(Math.max(count, 16), NONE);
+        this.securities = new Security[count];
+        this.conIds = new int[count];
+        this.minTicks = new BigDecimal[count];
+        this.minTickValues = new double[count];
+        this.tickScales = new int[count];
+        this.priceMagnifiers = new int[count];
+        this.symbols = new String[count];
+        this.exchanges = new String[count];
+        Map<String, String> interned = new HashMap<>();
+        for (int index = 0; index < count; index++) {
+            Security security = loaded.get(index);
+            int conId = Integer.parseInt(security.getCode());
+            if (conIdToIndex.put(conId, index) != NONE) {
+                throw new IllegalArgumentException("duplicate contract id: " + conId);
+            }
+            BigDecimal minTick = security.getMinTick();
+            securities[index] = security;
+            conIds[index] = conId;
+            minTicks[index] = minTick;
+            minTickValues[index] = minTick.doubleValue();
+            tickScales[index] = Math.max(minTick.scale(), 0);
+            priceMagnifiers[index] = security.getPriceMagnifier();
+            symbols[index] = intern(interned, security.getSymbol());
+            exchanges[index] = intern(interned, security.getExchange());
+        }
+    }
+
+    private static String intern(Map<String, String> interned, String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = interned.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    /**
+     * @param securities securities to be held, contract ids must be unique
+     * @param version    identifies the master, for instance a load counter
+     * @throws IllegalArgumentException if a contract id is not an int or appears twice
+     */
+    public static SecurityMaster of(Collection<Security> securities, long version) {
+        return new SecurityMaster(new ArrayList<>(securities), version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return securities.length;
+    }
+
+    public boolean isEmpty() {
+        return securities.length == 0;
+    }
+
+    /**
+     * @return position of the security, used by the indexed getters, -1 if unknown
+     */
+    public int indexOf(int conId) {
+        return conIdToIndex.get(conId);
+    }
+
+    public boolean contains(int conId) {
+        return indexOf(conId) != NONE;
+    }
+
+    /**
+     * @return security, null if unknown
+     */
+    public Security get(int conId) {
+        int index = indexOf(conId);
+        return index == NONE ? null : securities[index];
+    }
+
+    /**
+     * @param code contract id as a string, as used by quote channels
+     * @return security, null if unknown or if the code is not a contract id
+     */
+    public Security get(String code) {
+        try {
+            return get(Integer.parseInt(code));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public Security getAt(int index) {
+        return securities[index];
+    }
+
+    public int getConIdAt(int index) {
+        return conIds[index];
+    }
+
+    public BigDecimal getMinTickAt(int index) {
+        return minTicks[index];
+    }
+
+    public double getMinTickValueAt(int index) {
+        return minTickValues[index];
+    }
+
+    public int getTickScaleAt(int index) {
+        return tickScales[index];
+    }
+
+    public int getPriceMagnifierAt(int index) {
+        return priceMagnifiers[index];
+    }
+
+    public String getSymbolAt(int index) {
+        return symbols[index];
+    }
+
+    public String getExchangeAt(int index) {
+        return exchanges[index];
+    }
+}
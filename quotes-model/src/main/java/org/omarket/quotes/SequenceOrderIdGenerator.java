@@ -0,0 +1,31 @@
+package org.omarket.quotes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates consecutive order identifiers, starting from a given value.
+ */
+public class SequenceOrderIdGenerator implements OrderIdGenerator {
+
+    private final AtomicLong sequence;
+
+    public SequenceOrderIdGenerator() {
+        this(1L);
+    }
+
+    public SequenceOrderIdGenerator(long firstId) {
+        this.sequence = new AtomicLong(firstId);
+    }
+
+    @Override
+    public long nextId() {
+        return sequence.getAndIncrement();
+    }
+
+    /**
+     * Makes sure that the next identifiers are above the given one, used once existing orders are restored.
+     */
+    public void skipPast(long id) {
+        sequence.accumulateAndGet(id + 1, Math::max);
+    }
+}
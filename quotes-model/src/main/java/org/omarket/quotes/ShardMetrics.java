@@ -0,0 +1,70 @@
+package org.omarket.quotes;
+
+/**
+ * Counters of a book manager shard, read at a given time.
+ */
+public final class ShardMetrics {
+
+    private final int shard;
+    private final long processedUpdates;
+    private final long failedUpdates;
+    private final long rejectedUpdates;
+    private final long publishedSnapshots;
+    private final int queueDepth;
+    private final int maxQueueDepth;
+
+    ShardMetrics(int shard, long processedUpdates, long failedUpdates, long rejectedUpdates,
+                 long publishedSnapshots, int queueDepth, int maxQueueDepth) {
+        this.shard = shard;
+        this.processedUpdates = processedUpdates;
+        this.failedUpdates = failedUpdates;
+        this.rejectedUpdates = rejectedUpdates;
+        this.publishedSnapshots = publishedSnapshots;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * @return updates applied since the start, failed ones included; throughput is the difference between two reads
+     */
+    public long getProcessedUpdates() {
+        return processedUpdates;
+    }
+
+    public long getFailedUpdates() {
+        return failedUpdates;
+    }
+
+    /**
+     * @return updates refused because the inbound queue was full
+     */
+    public long getRejectedUpdates() {
+        return rejectedUpdates;
+    }
+
+    public long getPublishedSnapshots() {
+        return publishedSnapshots;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return highest queue depth seen by the shard thread when draining its queue
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + shard + ": processed=" + processedUpdates + " failed=" + failedUpdates
+                + " rejected=" + rejectedUpdates + " snapshots=" + publishedSnapshots
+                + " queue=" + queueDepth + " maxQueue=" + maxQueueDepth;
+    }
+}
@@ -0,0 +1,9 @@
+package org.omarket.quotes;
+
+/**
+ * Side of an order book.
+ */
+public enum Side {
+    BID,
+    ASK
+}
@@ -0,0 +1,1149 @@
+package org.omarket.quotes;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.omarket.quotes.util.LongIntHashMap;
+import org.omarket.quotes.util.ObjectIntHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Implementation of {@link OrderBook} keyed by integer tick offsets.
+ * <p>
+ * Prices are converted once into a number of ticks (multiples of the instrument min tick). Each side of the
+ * book is then a ladder of primitive arrays (total quantity and number of orders per level), indexed by the
+ * offset of the price from the ladder base. Best bid and best ask slots are cached: top-of-book reads are O(1)
+ * and updates do not allocate once the ladder covers the traded price range.
+ * <p>
+ * Each ladder also keeps a Fenwick tree of its occupied slots, so that the level at any depth is found in
+ * O(log n) without walking down from the top of the book.
+ * <p>
+ * Orders of a level form an intrusive doubly-linked FIFO threaded through the order arrays, so that time
+ * priority is kept and an order is cancelled in O(1) through the order id index. Orders whose queue position
+ * is tracked have the quantity ahead of them maintained as orders in front are reduced or cancelled: each level
+ * chains its tracked orders, and orders are stamped with an entry sequence telling which ones are in front, so
+ * that a cancel only visits the tracked orders of its level, whatever the depth of the queue.
+ * <p>
+ * Orders are identified either by a numeric id, indexed in a primitive long map, or through the String API
+ * kept for compatibility. Anonymous orders are numbered by an {@link OrderIdGenerator}, their String form being
+ * prefixed as done by {@link Order#anonymousId(long)}.
+ * <p>
+ * The whole book can be written to a compact binary snapshot and restored in bulk, see
+ * {@link #writeSnapshot(DataOutput)} and {@link #readSnapshot(DataInput)}.
+ */
+public class TickOrderBookImpl implements OrderBook {
+
+    public static final long NO_PRICE = Long.MIN_VALUE;
+    public static final long NO_ORDER_ID = Order.NO_ID;
+    private static final int NONE = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final int DEFAULT_LADDER_CAPACITY = 1024;
+    private static final int MAX_LADDER_CAPACITY = 1 << 24;
+    private static final int DEFAULT_ORDER_CAPACITY = 1024;
+    private static final byte BID = 0;
+    private static final byte ASK = 1;
+    private static final int SNAPSHOT_MAGIC = 0x4f4d4b42;
+    private static final byte SNAPSHOT_VERSION = 2;
+
+    private final BigDecimal minTick;
+    private final long minTickUnscaled;
+    private final double minTickDivisor;
+    private final PriceLadder bidSide;
+    private final PriceLadder askSide;
+    private long ladderBase = 0L;
+    private int ladderCapacity;
+
+    private String[] orderIds;
+    private long[] orderNumericIds;
+    private long[] orderTicks;
+    private long[] orderTimestamps;
+    private int[] orderQuantities;
+    private byte[] orderSides;
+    private int[] orderPrevious;
+    private int[] orderNext;
+    private boolean[] orderTracked;
+    private long[] orderQuantitiesAhead;
+    private long[] orderSequences;
+    private int[] orderPreviousTracked;
+    private int[] orderNextTracked;
+    private long nextOrderSequence = 0L;
+    private int[] freeOrders;
+    private int freeOrdersCount = 0;
+    private int ordersHighWaterMark = 0;
+    private final ObjectIntHashMap<String> orderIdToSlot;
+    private final LongIntHashMap orderNumericIdToSlot;
+    private final OrderIdGenerator orderIdGenerator;
+
+    private long lastUpdate = NO_TIMESTAMP;
+    private boolean ignoreInconsistentBidAsk = false;
+    private final OrderBookEvents events = new OrderBookEvents(this);
+
+    public TickOrderBookImpl(BigDecimal minTick) {
+        this(minTick, DEFAULT_LADDER_CAPACITY, DEFAULT_ORDER_CAPACITY);
+    }
+
+    public TickOrderBookImpl(Security security) {
+        this(security.getMinTick());
+    }
+
+    /**
+     * @param minTick        price increment of the instrument
+     * @param ladderCapacity initial number of price levels covered by the ladder
+     * @param orderCapacity  initial number of resting orders
+     */
+    public TickOrderBookImpl(BigDecimal minTick, int ladderCapacity, int orderCapacity) {
+        this(minTick, ladderCapacity, orderCapacity, new SequenceOrderIdGenerator());
+    }
+
+    /**
+     * @param minTick          price increment of the instrument
+     * @param ladderCapacity   initial number of price levels covered by the ladder
+     * @param orderCapacity    initial number of resting orders
+     * @param orderIdGenerator numbering of anonymous orders
+     */
+    public TickOrderBookImpl(BigDecimal minTick, int ladderCapacity, int orderCapacity, OrderIdGenerator orderIdGenerator) {
+        assert minTick.signum() > 0;
+        assert ladderCapacity > 0 && orderCapacity > 0;
+        this.minTick = minTick;
+        if (minTick.scale() >= 0) {
+            this.minTickUnscaled = minTick.unscaledValue().longValueExact();
+            this.minTickDivisor = Math.pow(10, minTick.scale());
+        } else {
+            this.minTickUnscaled = minTick.longValueExact();
+            this.minTickDivisor = 1.;
+        }
+        this.ladderCapacity = ladderCapacity;
+        this.bidSide = new PriceLadder(1, ladderCapacity);
+        this.askSide = new PriceLadder(-1, ladderCapacity);
+        this.orderIds = new String[orderCapacity];
+        this.orderNumericIds = new long[orderCapacity];
+        this.orderTicks = new long[orderCapacity];
+        this.orderTimestamps = new long[orderCapacity];
+        this.orderQuantities = new int[orderCapacity];
+        this.orderSides = new byte[orderCapacity];
+        this.orderPrevious = new int[orderCapacity];
+        this.orderNext = new int[orderCapacity];
+        this.orderTracked = new boolean[orderCapacity];
+        this.orderQuantitiesAhead = new long[orderCapacity];
+        this.orderSequences = new long[orderCapacity];
+        this.orderPreviousTracked = new int[orderCapacity];
+        this.orderNextTracked = new int[orderCapacity];
+        this.freeOrders = new int[orderCapacity];
+        this.orderIdToSlot = new ObjectIntHashMap<>(orderCapacity, NONE);
+        this.orderNumericIdToSlot = new LongIntHashMap(orderCapacity, NONE);
+        this.orderIdGenerator = orderIdGenerator;
+    }
+
+    public BigDecimal getMinTick() {
+        return minTick;
+    }
+
+    /**
+     * @param price price expressed as a multiple of the min tick
+     * @return number of ticks
+     */
+    public long toTicks(BigDecimal price) {
+        BigDecimal[] quotientAndRemainder = price.divideAndRemainder(minTick);
+        if (quotientAndRemainder[1].signum() != 0) {
+            throw new IllegalArgumentException("price " + price + " is not a multiple of min tick " + minTick);
+        }
+        return quotientAndRemainder[0].longValueExact();
+    }
+
+    /**
+     * @param ticks number of ticks
+     * @return price in its shortest decimal form
+     */
+    public BigDecimal toPrice(long ticks) {
+        BigDecimal price = minTick.multiply(BigDecimal.valueOf(ticks)).stripTrailingZeros();
+        if (price.scale() < 0) {
+            price = price.setScale(0);
+        }
+        return price;
+    }
+
+    /**
+     * @param ticks number of ticks
+     * @return closest double to the exact decimal price
+     */
+    public double toDouble(long ticks) {
+        return (ticks * minTickUnscaled) / minTickDivisor;
+    }
+
+    @Override
+    public void setIgnoreInconsistentBidAsk(boolean ignoreInconsistentBidAsk) {
+        this.ignoreInconsistentBidAsk = ignoreInconsistentBidAsk;
+    }
+
+    @Override
+    public String newBid(BigDecimal price, Integer quantity, String orderId) {
+        return newEntry(BID, toTicks(price), quantity, orderId);
+    }
+
+    @Override
+    public String newBid(BigDecimal price, Integer quantity) {
+        return newEntry(BID, toTicks(price), quantity, Order.anonymousId(orderIdGenerator.nextId()));
+    }
+
+    @Override
+    public String newAsk(BigDecimal price, Integer quantity, String orderId) {
+        return newEntry(ASK, toTicks(price), quantity, orderId);
+    }
+
+    @Override
+    public String newAsk(BigDecimal price, Integer quantity) {
+        return newEntry(ASK, toTicks(price), quantity, Order.anonymousId(orderIdGenerator.nextId()));
+    }
+
+    public String newBidTicks(long priceTicks, int quantity, String orderId) {
+        return newEntry(BID, priceTicks, quantity, orderId);
+    }
+
+    public String newAskTicks(long priceTicks, int quantity, String orderId) {
+        return newEntry(ASK, priceTicks, quantity, orderId);
+    }
+
+    /**
+     * @return id of the new order, {@link #NO_ORDER_ID} if ignored because inconsistent with the other side
+     */
+    public long newBidTicks(long priceTicks, int quantity, long orderId) {
+        return newEntry(BID, priceTicks, quantity, orderId);
+    }
+
+    /**
+     * @return id of the new order, {@link #NO_ORDER_ID} if ignored because inconsistent with the other side
+     */
+    public long newAskTicks(long priceTicks, int quantity, long orderId) {
+        return newEntry(ASK, priceTicks, quantity, orderId);
+    }
+
+    /**
+     * @return id given to the new order, {@link #NO_ORDER_ID} if ignored because inconsistent with the other side
+     */
+    public long newBidTicks(long priceTicks, int quantity) {
+        return newEntry(BID, priceTicks, quantity, orderIdGenerator.nextId());
+    }
+
+    /**
+     * @return id given to the new order, {@link #NO_ORDER_ID} if ignored because inconsistent with the other side
+     */
+    public long newAskTicks(long priceTicks, int quantity) {
+        return newEntry(ASK, priceTicks, quantity, orderIdGenerator.nextId());
+    }
+
+    private String newEntry(byte side, long priceTicks, int quantity, String orderId) {
+        if (!acceptPrice(side, priceTicks)) {
+            return null;
+        }
+        if (orderIdToSlot.containsKey(orderId)) {
+            throw new IllegalArgumentException("order already in book: " + orderId);
+        }
+        int orderSlot = enterOrder(side, priceTicks, quantity, orderId, NO_ORDER_ID);
+        orderIdToSlot.put(orderId, orderSlot);
+        return orderId;
+    }
+
+    private long newEntry(byte side, long priceTicks, int quantity, long orderId) {
+        assert orderId != NO_ORDER_ID;
+        if (!acceptPrice(side, priceTicks)) {
+            return NO_ORDER_ID;
+        }
+        if (orderNumericIdToSlot.containsKey(orderId)) {
+            throw new IllegalArgumentException("order already in book: " + orderId);
+        }
+        int orderSlot = enterOrder(side, priceTicks, quantity, null, orderId);
+        orderNumericIdToSlot.put(orderId, orderSlot);
+        return orderId;
+    }
+
+    /**
+     * @return false when the price crosses the other side and inconsistent prices are to be ignored
+     */
+    private boolean acceptPrice(byte side, long priceTicks) {
+        if (side == BID) {
+            if (askSide.best != NONE) {
+                boolean bidLowerThanAsk = priceTicks < ladderBase + askSide.best;
+                if (!bidLowerThanAsk && ignoreInconsistentBidAsk) {
+                    return false;
+                } else {
+                    assert bidLowerThanAsk;
+                }
+            }
+        } else {
+            if (bidSide.best != NONE) {
+                boolean askHigherThanBid = priceTicks > ladderBase + bidSide.best;
+                if (!askHigherThanBid && ignoreInconsistentBidAsk) {
+                    return false;
+                } else {
+                    assert askHigherThanBid;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int enterOrder(byte side, long priceTicks, int quantity, String orderId, long numericId) {
+        assert quantity > 0;
+        int levelSlot = toLadderSlot(priceTicks);
+        int orderSlot = allocateOrder();
+        this.lastUpdate = System.currentTimeMillis();
+        orderIds[orderSlot] = orderId;
+        orderNumericIds[orderSlot] = numericId;
+        orderTicks[orderSlot] = priceTicks;
+        orderTimestamps[orderSlot] = lastUpdate;
+        orderQuantities[orderSlot] = quantity;
+        orderSides[orderSlot] = side;
+        orderTracked[orderSlot] = false;
+        PriceLadder ladder = ladder(side);
+        appendToLevel(ladder, levelSlot, orderSlot);
+        ladder.addOrder(levelSlot, quantity);
+        publishLevel(ladder, side, levelSlot, ladder.orderCounts[levelSlot] == 1);
+        return orderSlot;
+    }
+
+    @Override
+    public void deleteOrder(String orderId) {
+        int orderSlot = orderIdToSlot.remove(orderId);
+        if (orderSlot != NONE) {
+            removeOrder(orderSlot);
+        }
+    }
+
+    public void deleteOrder(long orderId) {
+        int orderSlot = orderNumericIdToSlot.remove(orderId);
+        if (orderSlot != NONE) {
+            removeOrder(orderSlot);
+        }
+    }
+
+    private void removeOrder(int orderSlot) {
+        int levelSlot = (int) (orderTicks[orderSlot] - ladderBase);
+        PriceLadder ladder = ladder(orderSides[orderSlot]);
+        releaseQueuePosition(ladder, levelSlot, orderSlot, orderQuantities[orderSlot]);
+        if (orderTracked[orderSlot]) {
+            untrack(ladder, levelSlot, orderSlot);
+        }
+        unlinkFromLevel(ladder, levelSlot, orderSlot);
+        ladder.removeOrder(levelSlot, orderQuantities[orderSlot]);
+        orderIds[orderSlot] = null;
+        freeOrders[freeOrdersCount++] = orderSlot;
+        this.lastUpdate = System.currentTimeMillis();
+        publishLevel(ladder, orderSides[orderSlot], levelSlot, false);
+    }
+
+    /**
+     * Executes an aggressive order against the resting orders of the other side: levels are consumed from the
+     * best price, orders of a level in time priority. Filled orders are removed and the last one reached is
+     * reduced. Top-of-book listeners are notified once, when the sweep is over.
+     *
+     * @param aggressorSide side of the aggressive order
+     * @param limitTicks    worst price accepted, {@link #NO_PRICE} for no limit
+     * @param quantity      quantity to be executed
+     * @param fills         receives the quantity executed at each level
+     * @return quantity executed
+     */
+    public long sweep(Side aggressorSide, long limitTicks, long quantity, FillListener fills) {
+        assert quantity > 0;
+        PriceLadder ladder = aggressorSide == Side.BID ? askSide : bidSide;
+        long remaining = quantity;
+        events.beginBatch();
+        try {
+            while (remaining > 0 && ladder.best != NONE) {
+                long priceTicks = ladderBase + ladder.best;
+                if (limitTicks != NO_PRICE && (priceTicks - limitTicks) * ladder.direction < 0) {
+                    break;
+                }
+                long levelFilled = 0L;
+                int levelSlot = ladder.best;
+                while (remaining > 0 && ladder.orderCounts[levelSlot] > 0) {
+                    int orderSlot = ladder.heads[levelSlot];
+                    int orderQuantity = orderQuantities[orderSlot];
+                    if (orderQuantity <= remaining) {
+                        removeFromIndex(orderSlot);
+                        removeOrder(orderSlot);
+                        remaining -= orderQuantity;
+                        levelFilled += orderQuantity;
+                    } else {
+                        amendOrder(orderSlot, (int) (orderQuantity - remaining));
+                        levelFilled += remaining;
+                        remaining = 0;
+                    }
+                }
+                fills.onFill(priceTicks, levelFilled);
+            }
+        } finally {
+            endBatch();
+        }
+        return quantity - remaining;
+    }
+
+    private void removeFromIndex(int orderSlot) {
+        if (orderIds[orderSlot] != null) {
+            orderIdToSlot.remove(orderIds[orderSlot]);
+        } else {
+            orderNumericIdToSlot.remove(orderNumericIds[orderSlot]);
+        }
+    }
+
+    @Override
+    public void updateOrder(String orderId, Integer newVolume) {
+        int orderSlot = orderIdToSlot.get(orderId);
+        if (orderSlot != NONE) {
+            amendOrder(orderSlot, newVolume);
+        }
+    }
+
+    public void updateOrder(long orderId, int newVolume) {
+        int orderSlot = orderNumericIdToSlot.get(orderId);
+        if (orderSlot != NONE) {
+            amendOrder(orderSlot, newVolume);
+        }
+    }
+
+    private void amendOrder(int orderSlot, int newVolume) {
+        assert newVolume > 0;
+        int levelSlot = (int) (orderTicks[orderSlot] - ladderBase);
+        PriceLadder ladder = ladder(orderSides[orderSlot]);
+        int oldVolume = orderQuantities[orderSlot];
+        if (newVolume < oldVolume) {
+            releaseQueuePosition(ladder, levelSlot, orderSlot, oldVolume - newVolume);
+        } else if (newVolume > oldVolume) {
+            releaseQueuePosition(ladder, levelSlot, orderSlot, oldVolume);
+            unlinkFromLevel(ladder, levelSlot, orderSlot);
+            orderQuantitiesAhead[orderSlot] = ladder.quantities[levelSlot] - oldVolume;
+            appendToLevel(ladder, levelSlot, orderSlot);
+        }
+        ladder.quantities[levelSlot] += newVolume - oldVolume;
+        orderQuantities[orderSlot] = newVolume;
+        this.lastUpdate = System.currentTimeMillis();
+        publishLevel(ladder, orderSides[orderSlot], levelSlot, false);
+    }
+
+    @Override
+    public void addListener(OrderBookListener listener) {
+        events.addListener(listener);
+        publishTopOfBook();
+    }
+
+    @Override
+    public void removeListener(OrderBookListener listener) {
+        events.removeListener(listener);
+    }
+
+    @Override
+    public void beginBatch() {
+        events.beginBatch();
+    }
+
+    @Override
+    public void endBatch() {
+        if (events.endBatch() && events.isActive()) {
+            publishTopOfBook();
+        }
+    }
+
+    private void publishLevel(PriceLadder ladder, byte side, int levelSlot, boolean created) {
+        if (!events.isActive()) {
+            return;
+        }
+        Side bookSide = side == BID ? Side.BID : Side.ASK;
+        double price = toDouble(ladderBase + levelSlot);
+        int orderCount = ladder.orderCounts[levelSlot];
+        if (orderCount == 0) {
+            events.levelRemoved(bookSide, price);
+        } else if (created) {
+            events.levelAdded(bookSide, price, ladder.quantities[levelSlot], orderCount);
+        } else {
+            events.levelChanged(bookSide, price, ladder.quantities[levelSlot], orderCount);
+        }
+        publishTopOfBook();
+    }
+
+    private void publishTopOfBook() {
+        double bestBid = bidSide.best == NONE ? Double.NaN : toDouble(ladderBase + bidSide.best);
+        double bestAsk = askSide.best == NONE ? Double.NaN : toDouble(ladderBase + askSide.best);
+        events.topOfBook(bestBid, getBestBidQuantity(), bestAsk, getBestAskQuantity());
+    }
+
+    @Override
+    public long getQuantityAhead(String orderId) {
+        return quantityAhead(orderIdToSlot.get(orderId));
+    }
+
+    public long getQuantityAhead(long orderId) {
+        return quantityAhead(orderNumericIdToSlot.get(orderId));
+    }
+
+    private long quantityAhead(int orderSlot) {
+        if (orderSlot == NONE) {
+            return -1L;
+        }
+        if (orderTracked[orderSlot]) {
+            return orderQuantitiesAhead[orderSlot];
+        }
+        return computeQuantityAhead(orderSlot);
+    }
+
+    /**
+     * From now on, maintains the quantity ahead of the order as orders in front of it trade or cancel,
+     * making {@link #getQuantityAhead(String)} O(1) for that order.
+     *
+     * @param orderId order to be tracked
+     * @return quantity currently ahead of the order, -1 if the order is not in the book
+     */
+    public long trackQueuePosition(String orderId) {
+        return trackQueuePosition(orderIdToSlot.get(orderId));
+    }
+
+    /**
+     * Same as {@link #trackQueuePosition(String)} for an order entered with a numeric id.
+     */
+    public long trackQueuePosition(long orderId) {
+        return trackQueuePosition(orderNumericIdToSlot.get(orderId));
+    }
+
+    private long trackQueuePosition(int orderSlot) {
+        if (orderSlot == NONE) {
+            return -1L;
+        }
+        if (!orderTracked[orderSlot]) {
+            int levelSlot = (int) (orderTicks[orderSlot] - ladderBase);
+            orderQuantitiesAhead[orderSlot] = computeQuantityAhead(orderSlot);
+            track(ladder(orderSides[orderSlot]), levelSlot, orderSlot);
+        }
+        return orderQuantitiesAhead[orderSlot];
+    }
+
+    private long computeQuantityAhead(int orderSlot) {
+        long quantityAhead = 0L;
+        for (int ahead = orderPrevious[orderSlot]; ahead != NONE; ahead = orderPrevious[ahead]) {
+            quantityAhead += orderQuantities[ahead];
+        }
+        return quantityAhead;
+    }
+
+    private void track(PriceLadder ladder, int levelSlot, int orderSlot) {
+        int head = ladder.trackedCounts[levelSlot] == 0 ? NONE : ladder.trackedHeads[levelSlot];
+        orderTracked[orderSlot] = true;
+        orderPreviousTracked[orderSlot] = NONE;
+        orderNextTracked[orderSlot] = head;
+        if (head != NONE) {
+            orderPreviousTracked[head] = orderSlot;
+        }
+        ladder.trackedHeads[levelSlot] = orderSlot;
+        ladder.trackedCounts[levelSlot]++;
+    }
+
+    private void untrack(PriceLadder ladder, int levelSlot, int orderSlot) {
+        int previous = orderPreviousTracked[orderSlot];
+        int next = orderNextTracked[orderSlot];
+        if (previous == NONE) {
+            ladder.trackedHeads[levelSlot] = next;
+        } else {
+            orderNextTracked[previous] = next;
+        }
+        if (next != NONE) {
+            orderPreviousTracked[next] = previous;
+        }
+        orderTracked[orderSlot] = false;
+        ladder.trackedCounts[levelSlot]--;
+    }
+
+    /**
+     * Some quantity of the order leaves the queue: tracked orders behind it, entered later, move forward. Only the
+     * tracked orders of the level are visited.
+     */
+    private void releaseQueuePosition(PriceLadder ladder, int levelSlot, int orderSlot, long quantity) {
+        if (ladder.trackedCounts[levelSlot] == 0) {
+            return;
+        }
+        long sequence = orderSequences[orderSlot];
+        for (int tracked = ladder.trackedHeads[levelSlot]; tracked != NONE; tracked = orderNextTracked[tracked]) {
+            if (orderSequences[tracked] > sequence) {
+                orderQuantitiesAhead[tracked] -= quantity;
+            }
+        }
+    }
+
+    private void appendToLevel(PriceLadder ladder, int levelSlot, int orderSlot) {
+        int tail = ladder.orderCounts[levelSlot] == 0 ? NONE : ladder.tails[levelSlot];
+        orderSequences[orderSlot] = nextOrderSequence++;
+        orderPrevious[orderSlot] = tail;
+        orderNext[orderSlot] = NONE;
+        if (tail == NONE) {
+            ladder.heads[levelSlot] = orderSlot;
+        } else {
+            orderNext[tail] = orderSlot;
+        }
+        ladder.tails[levelSlot] = orderSlot;
+    }
+
+    private void unlinkFromLevel(PriceLadder ladder, int levelSlot, int orderSlot) {
+        int previous = orderPrevious[orderSlot];
+        int next = orderNext[orderSlot];
+        if (previous == NONE) {
+            ladder.heads[levelSlot] = next;
+        } else {
+            orderNext[previous] = next;
+        }
+        if (next == NONE) {
+            ladder.tails[levelSlot] = previous;
+        } else {
+            orderPrevious[next] = previous;
+        }
+    }
+
+    @Override
+    public Date getLastUpdate() {
+        if (lastUpdate == NO_TIMESTAMP) {
+            return null;
+        }
+        return new Date(lastUpdate);
+    }
+
+    @Override
+    public List<Pair<BigDecimal, Integer>> getBidOrderLevels() {
+        return getOrderLevels(bidSide);
+    }
+
+    @Override
+    public List<Pair<BigDecimal, Integer>> getAskOrderLevels() {
+        return getOrderLevels(askSide);
+    }
+
+    @Override
+    public BigDecimal getBestBid() {
+        if (bidSide.best == NONE) {
+            return null;
+        }
+        return toPrice(ladderBase + bidSide.best);
+    }
+
+    @Override
+    public BigDecimal getBestAsk() {
+        if (askSide.best == NONE) {
+            return null;
+        }
+        return toPrice(ladderBase + askSide.best);
+    }
+
+    /**
+     * @return best bid in ticks, or {@link #NO_PRICE} when there is no bid
+     */
+    public long getBestBidTicks() {
+        return bidSide.best == NONE ? NO_PRICE : ladderBase + bidSide.best;
+    }
+
+    /**
+     * @return best ask in ticks, or {@link #NO_PRICE} when there is no ask
+     */
+    public long getBestAskTicks() {
+        return askSide.best == NONE ? NO_PRICE : ladderBase + askSide.best;
+    }
+
+    public long getBestBidQuantity() {
+        return bidSide.best == NONE ? 0L : bidSide.quantities[bidSide.best];
+    }
+
+    public long getBestAskQuantity() {
+        return askSide.best == NONE ? 0L : askSide.quantities[askSide.best];
+    }
+
+    @Override
+    public Pair<BigDecimal, Integer> getAskLevel(Integer level) {
+        return getLevel(askSide, level);
+    }
+
+    @Override
+    public Pair<BigDecimal, Integer> getBidLevel(Integer level) {
+        return getLevel(bidSide, level);
+    }
+
+    @Override
+    public int getBidLevelsCount() {
+        return bidSide.levelsCount;
+    }
+
+    @Override
+    public int getAskLevelsCount() {
+        return askSide.levelsCount;
+    }
+
+    @Override
+    public int getBidDepth(double[] prices, long[] quantities, int[] orderCounts) {
+        return copyDepth(bidSide, prices, null, quantities, orderCounts);
+    }
+
+    @Override
+    public int getAskDepth(double[] prices, long[] quantities, int[] orderCounts) {
+        return copyDepth(askSide, prices, null, quantities, orderCounts);
+    }
+
+    /**
+     * Same as {@link #getBidDepth(double[], long[], int[])} with exact prices expressed in ticks.
+     */
+    public int getBidDepthTicks(long[] priceTicks, long[] quantities, int[] orderCounts) {
+        return copyDepth(bidSide, null, priceTicks, quantities, orderCounts);
+    }
+
+    /**
+     * Same as {@link #getAskDepth(double[], long[], int[])} with exact prices expressed in ticks.
+     */
+    public int getAskDepthTicks(long[] priceTicks, long[] quantities, int[] orderCounts) {
+        return copyDepth(askSide, null, priceTicks, quantities, orderCounts);
+    }
+
+    private int copyDepth(PriceLadder side, double[] prices, long[] priceTicks, long[] quantities, int[] orderCounts) {
+        int maxLevels = Math.min(quantities.length, orderCounts.length);
+        maxLevels = Math.min(maxLevels, prices != null ? prices.length : priceTicks.length);
+        int count = 0;
+        for (int slot = side.best; slot != NONE && count < maxLevels; slot = side.nextWorse(slot)) {
+            if (prices != null) {
+                prices[count] = toDouble(ladderBase + slot);
+            } else {
+                priceTicks[count] = ladderBase + slot;
+            }
+            quantities[count] = side.quantities[slot];
+            orderCounts[count] = side.orderCounts[slot];
+            count++;
+        }
+        return count;
+    }
+
+    private Pair<BigDecimal, Integer> getLevel(PriceLadder side, int level) {
+        assert level >= 0;
+        int slot = side.slotAtDepth(level);
+        if (slot == NONE) {
+            return null;
+        }
+        return new ImmutablePair<>(toPrice(ladderBase + slot), (int) side.quantities[slot]);
+    }
+
+    private List<Pair<BigDecimal, Integer>> getOrderLevels(PriceLadder side) {
+        List<Pair<BigDecimal, Integer>> levels = new ArrayList<>();
+        for (int slot = side.best; slot != NONE; slot = side.nextWorse(slot)) {
+            levels.add(new ImmutablePair<>(toPrice(ladderBase + slot), (int) side.quantities[slot]));
+        }
+        return levels;
+    }
+
+    /**
+     * Writes the full content of the book: levels from best to worst on each side, and for each level its orders
+     * in queue order with their id, quantity and entry timestamp. Queue position tracking is not saved.
+     *
+     * @param output destination of the snapshot
+     * @throws IOException when writing fails
+     */
+    public void writeSnapshot(DataOutput output) throws IOException {
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeByte(SNAPSHOT_VERSION);
+        byte[] minTickUnscaledBytes = minTick.unscaledValue().toByteArray();
+        output.writeInt(minTick.scale());
+        output.writeByte(minTickUnscaledBytes.length);
+        output.write(minTickUnscaledBytes);
+        output.writeLong(lastUpdate);
+        output.writeInt(orderIdToSlot.size() + orderNumericIdToSlot.size());
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (PriceLadder side : new PriceLadder[]{bidSide, askSide}) {
+            if (side.best != NONE) {
+                low = Math.min(low, ladderBase + Math.min(side.best, side.worst));
+                high = Math.max(high, ladderBase + Math.max(side.best, side.worst));
+            }
+        }
+        output.writeLong(low);
+        output.writeLong(high);
+        for (PriceLadder side : new PriceLadder[]{bidSide, askSide}) {
+            output.writeInt(side.levelsCount);
+            for (int slot = side.best; slot != NONE; slot = side.nextWorse(slot)) {
+                output.writeLong(ladderBase + slot);
+                output.writeInt(side.orderCounts[slot]);
+                for (int orderSlot = side.heads[slot]; orderSlot != NONE; orderSlot = orderNext[orderSlot]) {
+                    if (orderIds[orderSlot] != null) {
+                        output.writeBoolean(false);
+                        output.writeUTF(orderIds[orderSlot]);
+                    } else {
+                        output.writeBoolean(true);
+                        output.writeLong(orderNumericIds[orderSlot]);
+                    }
+                    output.writeInt(orderQuantities[orderSlot]);
+                    output.writeLong(orderTimestamps[orderSlot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a book from a snapshot. Ladder and order arrays are sized once from the snapshot header and
+     * filled level by level, without going through the usual order entry path.
+     *
+     * @param input source of a snapshot written by {@link #writeSnapshot(DataOutput)}
+     * @return restored book
+     * @throws IOException when reading fails or the snapshot is not valid
+     */
+    public static TickOrderBookImpl readSnapshot(DataInput input) throws IOException {
+        if (input.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("not an order book snapshot");
+        }
+        byte version = input.readByte();
+        if (version != 1 && version != SNAPSHOT_VERSION) {
+            throw new IOException("unsupported order book snapshot version: " + version);
+        }
+        int minTickScale = input.readInt();
+        byte[] minTickUnscaledBytes = new byte[input.readByte()];
+        input.readFully(minTickUnscaledBytes);
+        BigDecimal minTick = new BigDecimal(new BigInteger(minTickUnscaledBytes), minTickScale);
+        long lastUpdate = input.readLong();
+        int ordersCount = input.readInt();
+        long low = input.readLong();
+        long high = input.readLong();
+
+        int ladderCapacity = DEFAULT_LADDER_CAPACITY;
+        if (ordersCount > 0) {
+            long span = high - low + 1;
+            while (ladderCapacity < 2 * span) {
+                ladderCapacity *= 2;
+            }
+            if (ladderCapacity > MAX_LADDER_CAPACITY) {
+                throw new IOException("price range too wide for tick ladder: " + span + " ticks");
+            }
+        }
+        SequenceOrderIdGenerator orderIdGenerator = new SequenceOrderIdGenerator();
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(minTick, ladderCapacity,
+                Math.max(ordersCount, DEFAULT_ORDER_CAPACITY), orderIdGenerator);
+        if (ordersCount > 0) {
+            orderBook.ladderBase = low - (ladderCapacity - (high - low + 1)) / 2;
+        }
+        for (byte side : new byte[]{BID, ASK}) {
+            // new orders are numbered after the restored ones, whether anonymous or numeric
+            orderIdGenerator.skipPast(orderBook.restoreSide(side, input, version));
+        }
+        if (orderBook.ordersHighWaterMark != ordersCount) {
+            throw new IOException("corrupted order book snapshot: expected " + ordersCount + " orders");
+        }
+        orderBook.lastUpdate = lastUpdate;
+        return orderBook;
+    }
+
+    /**
+     * @return highest numeric or anonymous order id restored, 0 if there is none
+     */
+    private long restoreSide(byte side, DataInput input, byte version) throws IOException {
+        long highestId = 0L;
+        PriceLadder ladder = ladder(side);
+        int levelsCount = input.readInt();
+        for (int level = 0; level < levelsCount; level++) {
+            int slot = (int) (input.readLong() - ladderBase);
+            int orderCount = input.readInt();
+            long quantity = 0L;
+            int previous = NONE;
+            for (int order = 0; order < orderCount; order++) {
+                int orderSlot = allocateOrder();
+                boolean numeric = version > 1 && input.readBoolean();
+                if (numeric) {
+                    long orderId = input.readLong();
+                    orderIds[orderSlot] = null;
+                    orderNumericIds[orderSlot] = orderId;
+                    orderNumericIdToSlot.put(orderId, orderSlot);
+                    highestId = Math.max(highestId, orderId);
+                } else {
+                    String orderId = input.readUTF();
+                    orderIds[orderSlot] = orderId;
+                    orderNumericIds[orderSlot] = NO_ORDER_ID;
+                    orderIdToSlot.put(orderId, orderSlot);
+                    highestId = Math.max(highestId, anonymousNumber(orderId));
+                }
+                orderTicks[orderSlot] = ladderBase + slot;
+                orderQuantities[orderSlot] = input.readInt();
+                orderTimestamps[orderSlot] = input.readLong();
+                orderSides[orderSlot] = side;
+                orderSequences[orderSlot] = nextOrderSequence++;
+                orderPrevious[orderSlot] = previous;
+                orderNext[orderSlot] = NONE;
+                if (previous == NONE) {
+                    ladder.heads[slot] = orderSlot;
+                } else {
+                    orderNext[previous] = orderSlot;
+                }
+                previous = orderSlot;
+                quantity += orderQuantities[orderSlot];
+            }
+            ladder.tails[slot] = previous;
+            ladder.quantities[slot] = quantity;
+            ladder.orderCounts[slot] = orderCount;
+            if (level == 0) {
+                ladder.best = slot;
+            }
+            ladder.worst = slot;
+        }
+        ladder.levelsCount = levelsCount;
+        ladder.rebuildOccupancy();
+        return highestId;
+    }
+
+    /**
+     * @return number of an id given by {@link Order#anonymousId(long)}, 0 for an id given by the caller
+     */
+    private static long anonymousNumber(String orderId) {
+        if (!orderId.startsWith(Order.ANONYMOUS_ID_PREFIX)) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(orderId.substring(Order.ANONYMOUS_ID_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private PriceLadder ladder(byte side) {
+        return side == BID ? bidSide : askSide;
+    }
+
+    private int allocateOrder() {
+        if (freeOrdersCount > 0) {
+            return freeOrders[--freeOrdersCount];
+        }
+        if (ordersHighWaterMark == orderTicks.length) {
+            int capacity = orderTicks.length * 2;
+            orderIds = Arrays.copyOf(orderIds, capacity);
+            orderNumericIds = Arrays.copyOf(orderNumericIds, capacity);
+            orderTicks = Arrays.copyOf(orderTicks, capacity);
+            orderTimestamps = Arrays.copyOf(orderTimestamps, capacity);
+            orderQuantities = Arrays.copyOf(orderQuantities, capacity);
+            orderSides = Arrays.copyOf(orderSides, capacity);
+            orderPrevious = Arrays.copyOf(orderPrevious, capacity);
+            orderNext = Arrays.copyOf(orderNext, capacity);
+            orderTracked = Arrays.copyOf(orderTracked, capacity);
+            orderQuantitiesAhead = Arrays.copyOf(orderQuantitiesAhead, capacity);
+            orderSequences = Arrays.copyOf(orderSequences, capacity);
+            orderPreviousTracked = Arrays.copyOf(orderPreviousTracked, capacity);
+            orderNextTracked = Arrays.copyOf(orderNextTracked, capacity);
+            freeOrders = Arrays.copyOf(freeOrders, capacity);
+        }
+        return ordersHighWaterMark++;
+    }
+
+    /**
+     * Maps a price to its ladder slot, re-centering an empty ladder or growing it when the price falls outside.
+     */
+    private int toLadderSlot(long priceTicks) {
+        if (bidSide.best == NONE && askSide.best == NONE) {
+            ladderBase = priceTicks - ladderCapacity / 2;
+        }
+        long slot = priceTicks - ladderBase;
+        if (slot < 0 || slot >= ladderCapacity) {
+            growLadder(priceTicks);
+            slot = priceTicks - ladderBase;
+        }
+        return (int) slot;
+    }
+
+    private void growLadder(long priceTicks) {
+        long low = priceTicks;
+        long high = priceTicks;
+        for (PriceLadder side : new PriceLadder[]{bidSide, askSide}) {
+            if (side.best != NONE) {
+                low = Math.min(low, ladderBase + Math.min(side.best, side.worst));
+                high = Math.max(high, ladderBase + Math.max(side.best, side.worst));
+            }
+        }
+        long span = high - low + 1;
+        long capacity = ladderCapacity;
+        while (capacity < 2 * span) {
+            capacity *= 2;
+        }
+        if (capacity > MAX_LADDER_CAPACITY) {
+            throw new IllegalArgumentException("price range too wide for tick ladder: " + span + " ticks");
+        }
+        long newBase = low - (capacity - span) / 2;
+        int shift = (int) (ladderBase - newBase);
+        bidSide.resize((int) capacity, shift);
+        askSide.resize((int) capacity, shift);
+        ladderBase = newBase;
+        ladderCapacity = (int) capacity;
+    }
+
+    /**
+     * One side of the book: aggregated quantity, number of orders and FIFO queue ends for each slot of the ladder.
+     */
+    private static final class PriceLadder {
+        /**
+         * +1 when a higher slot is a better price (bid side), -1 otherwise (ask side).
+         */
+        private final int direction;
+        private long[] quantities;
+        private int[] orderCounts;
+        private int[] heads;
+        private int[] tails;
+        private int[] trackedCounts;
+        private int[] trackedHeads;
+        /**
+         * Fenwick tree (1-based) counting occupied slots.
+         */
+        private int[] occupancy;
+        private int levelsCount = 0;
+        private int best = NONE;
+        private int worst = NONE;
+
+        PriceLadder(int direction, int capacity) {
+            this.direction = direction;
+            this.quantities = new long[capacity];
+            this.orderCounts = new int[capacity];
+            this.heads = new int[capacity];
+            this.tails = new int[capacity];
+            this.trackedCounts = new int[capacity];
+            this.trackedHeads = new int[capacity];
+            this.occupancy = new int[capacity + 1];
+        }
+
+        private void updateOccupancy(int slot, int delta) {
+            for (int index = slot + 1; index < occupancy.length; index += index & -index) {
+                occupancy[index] += delta;
+            }
+        }
+
+        /**
+         * @param rank 1-based rank of an occupied slot in ascending slot order
+         * @return the slot of that rank
+         */
+        private int findOccupied(int rank) {
+            int position = 0;
+            for (int step = Integer.highestOneBit(occupancy.length - 1); step > 0; step >>= 1) {
+                int next = position + step;
+                if (next < occupancy.length && occupancy[next] < rank) {
+                    position = next;
+                    rank -= occupancy[next];
+                }
+            }
+            return position;
+        }
+
+        /**
+         * @param depth 0 for the top of the book
+         * @return slot of the level at that depth, NONE when the side is not deep enough
+         */
+        int slotAtDepth(int depth) {
+            if (depth >= levelsCount) {
+                return NONE;
+            }
+            return findOccupied(direction > 0 ? levelsCount - depth : depth + 1);
+        }
+
+        void addOrder(int slot, int quantity) {
+            quantities[slot] += quantity;
+            if (orderCounts[slot]++ > 0) {
+                return;
+            }
+            levelsCount++;
+            updateOccupancy(slot, 1);
+            if (best == NONE) {
+                best = slot;
+                worst = slot;
+            } else if ((slot - best) * direction > 0) {
+                best = slot;
+            } else if ((worst - slot) * direction > 0) {
+                worst = slot;
+            }
+        }
+
+        void removeOrder(int slot, int quantity) {
+            quantities[slot] -= quantity;
+            if (--orderCounts[slot] > 0) {
+                return;
+            }
+            levelsCount--;
+            updateOccupancy(slot, -1);
+            if (best == worst) {
+                best = NONE;
+                worst = NONE;
+            } else if (slot == best) {
+                best = nextWorse(slot);
+            } else if (slot == worst) {
+                int candidate = slot + direction;
+                while (orderCounts[candidate] == 0) {
+                    candidate += direction;
+                }
+                worst = candidate;
+            }
+        }
+
+        /**
+         * @return next occupied slot further away from the top of book, NONE when slot is the worst level
+         */
+        int nextWorse(int slot) {
+            if (slot == worst) {
+                return NONE;
+            }
+            int candidate = slot - direction;
+            while (orderCounts[candidate] == 0) {
+                candidate -= direction;
+            }
+            return candidate;
+        }
+
+        void resize(int capacity, int shift) {
+            long[] newQuantities = new long[capacity];
+            int[] newOrderCounts = new int[capacity];
+            int[] newHeads = new int[capacity];
+            int[] newTails = new int[capacity];
+            int[] newTrackedCounts = new int[capacity];
+            int[] newTrackedHeads = new int[capacity];
+            if (best != NONE) {
+                int from = Math.min(best, worst);
+                int length = Math.abs(best - worst) + 1;
+                System.arraycopy(quantities, from, newQuantities, from + shift, length);
+                System.arraycopy(orderCounts, from, newOrderCounts, from + shift, length);
+                System.arraycopy(heads, from, newHeads, from + shift, length);
+                System.arraycopy(tails, from, newTails, from + shift, length);
+                System.arraycopy(trackedCounts, from, newTrackedCounts, from + shift, length);
+                System.arraycopy(trackedHeads, from, newTrackedHeads, from + shift, length);
+                best += shift;
+                worst += shift;
+            }
+            quantities = newQuantities;
+            orderCounts = newOrderCounts;
+            heads = newHeads;
+            tails = newTails;
+            trackedCounts = newTrackedCounts;
+            trackedHeads = newTrackedHeads;
+            occupancy = new int[capacity + 1];
+            rebuildOccupancy();
+        }
+
+        /**
+         * Builds the Fenwick tree from the order counts in linear time.
+         */
+        void rebuildOccupancy() {
+            int capacity = occupancy.length - 1;
+            for (int index = 1; index <= capacity; index++) {
+                if (orderCounts[index - 1] > 0) {
+                    occupancy[index]++;
+                }
+                int parent = index + (index & -index);
+                if (parent <= capacity) {
+                    occupancy[parent] += occupancy[index];
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the executions of a {@link #sweep}.
+     */
+    public interface FillListener {
+        /**
+         * @param priceTicks price of the level, in ticks
+         * @param quantity   quantity executed at that level
+         */
+        void onFill(long priceTicks, long quantity);
+    }
+
+}
@@ -0,0 +1,31 @@
+package org.omarket.quotes;
+
+/**
+ * Clock driven by the data being replayed rather than by the wall clock.
+ */
+public class VirtualClock implements QuoteClock {
+
+    private long epochNanos;
+
+    public VirtualClock(long epochNanos) {
+        this.epochNanos = epochNanos;
+    }
+
+    @Override
+    public long epochNanos() {
+        return epochNanos;
+    }
+
+    public void setEpochNanos(long epochNanos) {
+        this.epochNanos = epochNanos;
+    }
+
+    /**
+     * Moves the clock forward, ignoring times earlier than the current one.
+     */
+    public void advanceTo(long epochNanos) {
+        if (epochNanos > this.epochNanos) {
+            this.epochNanos = epochNanos;
+        }
+    }
+}
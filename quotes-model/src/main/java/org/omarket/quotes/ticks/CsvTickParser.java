@@ -0,0 +1,317 @@
+package org.omarket.quotes.ticks;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses hourly CSV tick files, {@code mm:ss.SSS,bidSize,bid,ask,askSize} lines, straight from their bytes.
+ * <p>
+ * Fields of the current line are primitives: the time in milliseconds since epoch, computed from the start of the
+ * hour given once per file, and prices as mantissas at a fixed scale. Nothing is allocated per line. The scale
+ * of a file is the largest number of decimals of its prices, see {@link #scanScale(ByteBuffer)}. Prices may carry
+ * an exponent, {@code 1.234E+4}, as written by {@link java.math.BigDecimal#toString()}: it only shifts their
+ * decimals.
+ */
+public final class CsvTickParser {
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final int MAX_DIGITS = 18;
+    private static final int MAX_EXPONENT = 999;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int index = 1; index < POWERS_OF_TEN.length; index++) {
+            POWERS_OF_TEN[index] = POWERS_OF_TEN[index - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer content;
+    private final int limit;
+    private final long hourStartMillis;
+    private final int scale;
+    private int position;
+    private int lineNumber = 0;
+    private long epochMillis;
+    private int bidSize;
+    private long bidMantissa;
+    private long askMantissa;
+    private int askSize;
+
+    /**
+     * @param content         file content, parsed from its position to its limit, which are left unchanged
+     * @param hourStartMillis start of the hour of the file, in milliseconds since epoch
+     * @param scale           number of decimals of the mantissas, at least the one of any price of the file
+     */
+    public CsvTickParser(ByteBuffer content, long hourStartMillis, int scale) {
+        if (scale < 0 || scale > MAX_DIGITS) {
+            throw new IllegalArgumentException("invalid scale: " + scale);
+        }
+        this.content = content;
+        this.position = content.position();
+        this.limit = content.limit();
+        this.hourStartMillis = hourStartMillis;
+        this.scale = scale;
+    }
+
+    /**
+     * @param tickFile hourly file, {@code .../yyyyMMdd/HH}
+     * @return start of the hour of the file, in milliseconds since epoch
+     * @throws IllegalArgumentException if the path does not name an hour
+     */
+    public static long hourStartMillis(Path tickFile) {
+        Path day = tickFile.getParent() == null ? null : tickFile.getParent().getFileName();
+        if (day == null) {
+            throw new IllegalArgumentException("not an hourly tick file: " + tickFile);
+        }
+        try {
+            return LocalDateTime.parse(day.toString() + tickFile.getFileName(), HOUR_FORMAT)
+                    .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("not an hourly tick file: " + tickFile, e);
+        }
+    }
+
+    /**
+     * @return largest number of decimals of the prices, the third and fourth fields of each line, once their
+     * exponent is applied
+     */
+    public static int scanScale(ByteBuffer content) {
+        int scale = 0;
+        int field = 0;
+        int decimals = 0;
+        boolean fraction = false;
+        boolean inExponent = false;
+        boolean negativeExponent = false;
+        int exponent = 0;
+        for (int index = content.position(); index < content.limit(); index++) {
+            byte current = content.get(index);
+            if (current == ',' || current == '\n') {
+                int shifted = decimals - (negativeExponent ? -exponent : exponent);
+                if (shifted > scale) {
+                    scale = shifted;
+                }
+                decimals = 0;
+                fraction = false;
+                inExponent = false;
+                negativeExponent = false;
+                exponent = 0;
+                field = current == ',' ? field + 1 : 0;
+            } else if (field == 2 || field == 3) {
+                if (current == 'e' || current == 'E') {
+                    inExponent = true;
+                } else if (inExponent) {
+                    if (current == '-') {
+                        negativeExponent = true;
+                    } else if (current >= '0' && current <= '9' && exponent <= MAX_EXPONENT) {
+                        exponent = exponent * 10 + (current - '0');
+                    }
+                } else if (current == '.') {
+                    fraction = true;
+                } else if (fraction && current >= '0' && current <= '9') {
+                    decimals++;
+                }
+            }
+        }
+        return Math.max(scale, decimals - (negativeExponent ? -exponent : exponent));
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Parses the next line, blank lines are skipped.
+     *
+     * @return false at the end of the content
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public boolean next() {
+        while (position < limit) {
+            lineNumber++;
+            byte first = content.get(position);
+            if (first == '\n' || first == '\r') {
+                skipEndOfLine();
+                continue;
+            }
+            epochMillis = hourStartMillis + parseTime();
+            expect(',');
+            bidSize = parseSize();
+            expect(',');
+            bidMantissa = parsePrice();
+            expect(',');
+            askMantissa = parsePrice();
+            expect(',');
+            askSize = parseSize();
+            if (position < limit) {
+                byte current = content.get(position);
+                if (current != '\n' && current != '\r') {
+                    throw malformed("unexpected character '" + (char) current + "'");
+                }
+                skipEndOfLine();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void skipEndOfLine() {
+        if (content.get(position) == '\r') {
+            position++;
+        }
+        if (position < limit && content.get(position) == '\n') {
+            position++;
+        }
+    }
+
+    private long parseTime() {
+        if (limit - position < 9 || content.get(position + 2) != ':' || content.get(position + 5) != '.') {
+            throw malformed("time is not mm:ss.SSS");
+        }
+        long minutes = digit(position) * 10 + digit(position + 1);
+        long seconds = digit(position + 3) * 10 + digit(position + 4);
+        long millis = digit(position + 6) * 100 + digit(position + 7) * 10 + digit(position + 8);
+        position += 9;
+        return (minutes * 60 + seconds) * 1000 + millis;
+    }
+
+    private int digit(int index) {
+        int value = content.get(index) - '0';
+        if (value < 0 || value > 9) {
+            throw malformed("digit expected");
+        }
+        return value;
+    }
+
+    private void expect(char separator) {
+        if (position >= limit || content.get(position) != separator) {
+            throw malformed("'" + separator + "' expected");
+        }
+        position++;
+    }
+
+    private int parseSize() {
+        long value = 0;
+        int digits = 0;
+        while (position < limit) {
+            int current = content.get(position) - '0';
+            if (current < 0 || current > 9) {
+                break;
+            }
+            value = value * 10 + current;
+            if (value > Integer.MAX_VALUE) {
+                throw malformed("size too large");
+            }
+            digits++;
+            position++;
+        }
+        if (digits == 0) {
+            throw malformed("size expected");
+        }
+        return (int) value;
+    }
+
+    private long parsePrice() {
+        boolean negative = position < limit && content.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        while (position < limit) {
+            byte current = content.get(position);
+            if (current == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (current >= '0' && current <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    throw malformed("price too long");
+                }
+                mantissa = mantissa * 10 + (current - '0');
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (digits == 0) {
+            throw malformed("price expected");
+        }
+        decimals = Math.max(decimals, 0);
+        if (position < limit && (content.get(position) == 'e' || content.get(position) == 'E')) {
+            position++;
+            decimals -= parseExponent();
+        }
+        if (decimals > scale) {
+            throw malformed("price has more than " + scale + " decimals");
+        }
+        int shift = scale - decimals;
+        if (digits + shift > MAX_DIGITS) {
+            throw malformed("price too large for scale " + scale);
+        }
+        mantissa *= POWERS_OF_TEN[shift];
+        return negative ? -mantissa : mantissa;
+    }
+
+    private int parseExponent() {
+        boolean negative = position < limit && content.get(position) == '-';
+        if (negative || position < limit && content.get(position) == '+') {
+            position++;
+        }
+        int exponent = 0;
+        int digits = 0;
+        while (position < limit) {
+            int current = content.get(position) - '0';
+            if (current < 0 || current > 9) {
+                break;
+            }
+            exponent = exponent * 10 + current;
+            if (exponent > MAX_EXPONENT) {
+                throw malformed("exponent too large");
+            }
+            digits++;
+            position++;
+        }
+        if (digits == 0) {
+            throw malformed("exponent expected");
+        }
+        return negative ? -exponent : exponent;
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("malformed tick at line " + lineNumber + ": " + reason);
+    }
+
+    /**
+     * @return number of the current line, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public int getBidSize() {
+        return bidSize;
+    }
+
+    public long getBidMantissa() {
+        return bidMantissa;
+    }
+
+    public long getAskMantissa() {
+        return askMantissa;
+    }
+
+    public int getAskSize() {
+        return askSize;
+    }
+}
@@ -0,0 +1,181 @@
+package org.omarket.quotes.ticks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the CSV ticks of a product recorded in {@code [fromMillis, toMillis[}, using its {@link TickArchiveIndex}.
+ * <p>
+ * Only the hours of the window are visited. In an hour, each indexed segment overlapping the window is parsed
+ * between the sparse offsets surrounding the window, in file order. The bytes outside of the indexed segments are
+ * parsed whole: hours recorded before the index existed, sessions that stopped without closing their file, and the
+ * hour being recorded, which is parsed up to its last complete line. Fields of the current record are exposed as primitives, as by
+ * {@link CsvTickParser}.
+ */
+public class IndexedTickReplay {
+
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path productStorage;
+    private final TickArchiveIndex index;
+    private final long fromMillis;
+    private final long toMillis;
+    private final long recordingHour;
+    private final long lastHour;
+    private final ArrayDeque<long[]> ranges = new ArrayDeque<>();
+    private long hour;
+    private Path hourPath = null;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private CsvTickParser parser = null;
+    private long parsedBytes = 0;
+    private long skippedRecords = 0;
+
+    /**
+     * @param productStorage storage directory of the product
+     * @param fromMillis     start of the window, included
+     * @param toMillis       end of the window, excluded
+     * @param nowMillis      current time: hours after it are not visited, its hour may be incomplete
+     * @throws IOException when the index cannot be read
+     */
+    public IndexedTickReplay(Path productStorage, long fromMillis, long toMillis, long nowMillis) throws IOException {
+        this.productStorage = productStorage;
+        this.index = TickArchiveIndex.load(productStorage);
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.recordingHour = TickArchiveIndex.hourOf(nowMillis);
+        this.hour = TickArchiveIndex.hourOf(fromMillis);
+        this.lastHour = fromMillis < toMillis ? Math.min(TickArchiveIndex.hourOf(toMillis - 1), recordingHour) : hour - 1;
+    }
+
+    /**
+     * @return false once all the records of the window have been read
+     * @throws IOException              when a tick file cannot be read
+     * @throws IllegalArgumentException if a tick file is malformed
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (parser != null) {
+                while (parser.next()) {
+                    long epochMillis = parser.getEpochMillis();
+                    if (epochMillis >= fromMillis && epochMillis < toMillis) {
+                        return true;
+                    }
+                    skippedRecords++;
+                }
+                parser = null;
+            }
+            if (!ranges.isEmpty()) {
+                parse(ranges.poll());
+            } else if (hour <= lastHour) {
+                plan(hour);
+                hour += MILLIS_PER_HOUR;
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private void plan(long hourStartMillis) throws IOException {
+        hourPath = TickArchiveIndex.hourPath(productStorage, hourStartMillis);
+        if (!Files.exists(hourPath)) {
+            return;
+        }
+        List<TickSegment> segments = new ArrayList<>(index.getSegments(hourStartMillis));
+        segments.sort(Comparator.comparingLong(TickSegment::getStartOffset));
+        // bytes outside of the segments, left by a session that never closed the file, are parsed whole
+        long unindexedStart = 0;
+        for (TickSegment segment : segments) {
+            if (segment.getStartOffset() > unindexedStart) {
+                ranges.add(new long[]{unindexedStart, segment.getStartOffset(), hourStartMillis});
+            }
+            if (segment.overlaps(fromMillis, toMillis)) {
+                ranges.add(new long[]{segment.offsetOf(fromMillis), segment.endOffsetOf(toMillis), hourStartMillis});
+            }
+            unindexedStart = Math.max(unindexedStart, segment.getEndOffset());
+        }
+        long size = Files.size(hourPath);
+        if (size > unindexedStart) {
+            ranges.add(new long[]{unindexedStart, size, hourStartMillis});
+        }
+    }
+
+    private void parse(long[] range) throws IOException {
+        long start = range[0];
+        int length = (int) (range[1] - start);
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.limit(length);
+        try (FileChannel channel = FileChannel.open(hourPath, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+        long hourStartMillis = range[2];
+        if (hourStartMillis >= recordingHour) {
+            // the recorder may be writing the last line
+            int end = buffer.limit();
+            while (end > 0 && buffer.get(end - 1) != '\n') {
+                end--;
+            }
+            buffer.limit(end);
+        }
+        parsedBytes += buffer.remaining();
+        parser = new CsvTickParser(buffer, hourStartMillis, CsvTickParser.scanScale(buffer));
+    }
+
+    /**
+     * @return scale of the mantissas of the current record
+     */
+    public int getScale() {
+        return parser.getScale();
+    }
+
+    public long getEpochMillis() {
+        return parser.getEpochMillis();
+    }
+
+    public int getBidSize() {
+        return parser.getBidSize();
+    }
+
+    public long getBidMantissa() {
+        return parser.getBidMantissa();
+    }
+
+    public long getAskMantissa() {
+        return parser.getAskMantissa();
+    }
+
+    public int getAskSize() {
+        return parser.getAskSize();
+    }
+
+    /**
+     * @return number of bytes read from tick files so far
+     */
+    public long getParsedBytes() {
+        return parsedBytes;
+    }
+
+    /**
+     * @return number of records parsed so far that were outside of the window
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+}
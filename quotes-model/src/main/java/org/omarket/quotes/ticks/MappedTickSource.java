@@ -0,0 +1,120 @@
+package org.omarket.quotes.ticks;
+
+import org.omarket.quotes.FixedPointQuote;
+import org.omarket.quotes.FixedPointQuoteImpl;
+import org.omarket.quotes.util.MappedBuffers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays binary tick files of one instrument, in the given order, by mapping them in memory.
+ * <p>
+ * Records are decoded in place from the mapping into a single {@link FixedPointQuoteImpl}, which is returned by
+ * every call to {@link #next()}: it is only valid until the following call, consumers keeping quotes must copy
+ * them. A file is mapped when the replay reaches it and unmapped as soon as its last record has been read,
+ * see {@link MappedBuffers}. With preloading, the whole file is paged in when it is mapped, so that the replay
+ * then reads memory instead of faulting page after page.
+ */
+public class MappedTickSource implements Closeable {
+
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Path> files;
+    private final int instrumentId;
+    private final String productCode;
+    private final boolean preload;
+    private int fileIndex = 0;
+    private MappedByteBuffer mapped = null;
+    private TickFileReader reader = null;
+    private FixedPointQuoteImpl flyweight = null;
+    private long mappedBytes = 0;
+
+    /**
+     * @param files        binary tick files, replayed in this order
+     * @param instrumentId instrument expected in the file headers
+     * @param productCode  product code of the quotes
+     * @param preload      pages files in when they are mapped
+     */
+    public MappedTickSource(List<Path> files, int instrumentId, String productCode, boolean preload) {
+        this.files = new ArrayList<>(files);
+        this.instrumentId = instrumentId;
+        this.productCode = productCode;
+        this.preload = preload;
+    }
+
+    /**
+     * @return next tick, in a quote reused by the following call, null once all files have been replayed
+     * @throws IOException              when a file cannot be mapped
+     * @throws IllegalArgumentException if a file is not a tick file of the instrument or is truncated
+     */
+    public FixedPointQuote next() throws IOException {
+        while (true) {
+            if (reader != null && reader.next()) {
+                return flyweight.set(reader.getEpochMillis() * NANOS_PER_MILLI, reader.getBidSize(),
+                        reader.getBidTicks(), reader.getAskTicks(), reader.getAskSize());
+            }
+            release();
+            if (fileIndex == files.size()) {
+                return null;
+            }
+            map(files.get(fileIndex++));
+        }
+    }
+
+    private void map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mappedBytes += mapped.capacity();
+        if (preload) {
+            mapped.load();
+        }
+        try {
+            reader = new TickFileReader(mapped);
+        } catch (IllegalArgumentException e) {
+            release();
+            throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+        }
+        if (reader.getInstrumentId() != instrumentId) {
+            int found = reader.getInstrumentId();
+            release();
+            throw new IllegalArgumentException(file + " holds ticks of instrument " + found + ", expected " + instrumentId);
+        }
+        if (flyweight == null || flyweight.getScale() != reader.getTickScale()) {
+            flyweight = new FixedPointQuoteImpl(instrumentId, productCode, reader.getTickScale());
+        }
+    }
+
+    private void release() {
+        reader = null;
+        if (mapped != null) {
+            MappedByteBuffer released = mapped;
+            mapped = null;
+            MappedBuffers.unmap(released);
+        }
+    }
+
+    /**
+     * @return total size of the files mapped so far
+     */
+    public long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    /**
+     * Unmaps the current file, the replay is then over.
+     */
+    @Override
+    public void close() {
+        release();
+        fileIndex = files.size();
+    }
+}
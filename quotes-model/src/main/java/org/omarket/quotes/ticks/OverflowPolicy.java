@@ -0,0 +1,16 @@
+package org.omarket.quotes.ticks;
+
+/**
+ * What the producer of a {@link TickPipeline} does when the slowest stage is a whole ring behind.
+ */
+public enum OverflowPolicy {
+    /**
+     * Waits for the slowest stage to free a slot, stalling the producer thread.
+     */
+    BLOCK,
+    /**
+     * Drops the new tick and counts it, so that the producer never waits: no stage gets the tick, so a slow stage
+     * makes the others miss ticks.
+     */
+    DROP
+}
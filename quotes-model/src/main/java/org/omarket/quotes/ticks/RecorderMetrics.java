@@ -0,0 +1,150 @@
+package org.omarket.quotes.ticks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters of the recording path: updates received per instrument, how many were ignored or dropped, the
+ * latency of writing ticks and of publishing them since the broker callback.
+ * <p>
+ * Counters of an instrument are only incremented by the thread of the broker callbacks. Rates are computed by
+ * {@link #sample(long)}, over the time elapsed since the previous sample.
+ */
+public class RecorderMetrics {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<Integer, Instrument> instruments = new ConcurrentHashMap<>();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    private long lastSampleNanos = Long.MIN_VALUE;
+
+    /**
+     * @return counters of the instrument, created on first call
+     */
+    public Instrument getInstrument(int instrumentId) {
+        Instrument instrument = instruments.get(instrumentId);
+        if (instrument == null) {
+            instrument = instruments.computeIfAbsent(instrumentId, Instrument::new);
+        }
+        return instrument;
+    }
+
+    public Collection<Instrument> getInstruments() {
+        return new ArrayList<>(instruments.values());
+    }
+
+    /**
+     * @return time spent recording a tick to its file
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @return time from the broker callback to the tick being sent on the event bus
+     */
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    /**
+     * Updates the rates of all instruments. The first sample only sets the start of the next period.
+     *
+     * @param nowNanos {@link System#nanoTime()}
+     */
+    public synchronized void sample(long nowNanos) {
+        long elapsed = nowNanos - lastSampleNanos;
+        boolean first = lastSampleNanos == Long.MIN_VALUE;
+        lastSampleNanos = nowNanos;
+        for (Instrument instrument : instruments.values()) {
+            instrument.sample(first || elapsed <= 0 ? 0 : elapsed);
+        }
+    }
+
+    public static final class Instrument {
+        private final int instrumentId;
+        private volatile long updates = 0;
+        private volatile long unmodified = 0;
+        private volatile long invalid = 0;
+        private volatile long published = 0;
+        private volatile long dropped = 0;
+        private long sampledPublished = 0;
+        private volatile double ticksPerSecond = 0.;
+
+        Instrument(int instrumentId) {
+            this.instrumentId = instrumentId;
+        }
+
+        private void sample(long elapsedNanos) {
+            long current = published;
+            if (elapsedNanos > 0) {
+                ticksPerSecond = (current - sampledPublished) * NANOS_PER_SECOND / elapsedNanos;
+            }
+            sampledPublished = current;
+        }
+
+        public void onUpdate() {
+            updates++;
+        }
+
+        /**
+         * The update did not change the book.
+         */
+        public void onUnmodified() {
+            unmodified++;
+        }
+
+        /**
+         * The book is incomplete, empty on one side or crossed.
+         */
+        public void onInvalid() {
+            invalid++;
+        }
+
+        public void onPublished() {
+            published++;
+        }
+
+        /**
+         * The tick pipeline was full.
+         */
+        public void onDropped() {
+            dropped++;
+        }
+
+        public int getInstrumentId() {
+            return instrumentId;
+        }
+
+        public long getUpdates() {
+            return updates;
+        }
+
+        public long getUnmodified() {
+            return unmodified;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        public long getPublished() {
+            return published;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return ticks published per second over the last sampling period
+         */
+        public double getTicksPerSecond() {
+            return ticksPerSecond;
+        }
+    }
+}
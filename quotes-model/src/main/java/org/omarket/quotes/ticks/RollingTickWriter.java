@@ -0,0 +1,234 @@
+package org.omarket.quotes.ticks;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends the ticks of one product to hourly files, {@code <product storage>/yyyyMMdd/HH} (UTC).
+ * <p>
+ * The current file stays open until a tick falls outside of its hour: the hour boundaries are computed when the
+ * file is opened, so writing a tick only compares its timestamp to them. Written lines are buffered and flushed
+ * once enough bytes are pending or when the flush interval has elapsed, either on the next write or on
+ * {@link #flushIfDue(long)}. Methods are synchronized so that flushes can be triggered from another thread.
+ * <p>
+ * With a sparse interval, the lines written to a file are appended as a {@link TickSegment} to the
+ * {@link TickArchiveIndex} of the product when the file is closed.
+ * <p>
+ * Flushed ticks are left to the operating system until {@link #sync()} forces them to the storage device. When
+ * syncing on close, a file is forced before being closed, so that rotating never loses unsynced ticks. Writes are
+ * numbered: a sync only marks the writes it covers as synced once its force has succeeded, so that a rotation
+ * racing with the force still forces the file it closes.
+ */
+public class RollingTickWriter implements Closeable {
+
+    private static final long NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int LINE_SEPARATOR_LENGTH = System.lineSeparator().length();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path productStorage;
+    private final long flushIntervalNanos;
+    private final int flushBytes;
+    private final TickSegmentBuilder segment;
+    private final boolean syncOnClose;
+    private FileChannel channel = null;
+    private BufferedWriter writer = null;
+    private Path currentPath = null;
+    private long hourStartNanos = Long.MAX_VALUE;
+    private long nextRotationNanos = Long.MIN_VALUE;
+    private long lastFlushNanos = Long.MIN_VALUE;
+    private int pendingBytes = 0;
+    private long writeSequence = 0;
+    private long syncedSequence = 0;
+    private long ticksCount = 0;
+
+    /**
+     * @param productStorage     storage directory of the product
+     * @param flushIntervalNanos maximum time a written tick waits before being flushed
+     * @param flushBytes         number of pending bytes triggering a flush
+     */
+    public RollingTickWriter(Path productStorage, long flushIntervalNanos, int flushBytes) {
+        this(productStorage, flushIntervalNanos, flushBytes, 0);
+    }
+
+    /**
+     * @param sparseInterval number of records between two offsets kept by the index, 0 to write no index
+     */
+    public RollingTickWriter(Path productStorage, long flushIntervalNanos, int flushBytes, int sparseInterval) {
+        this(productStorage, flushIntervalNanos, flushBytes, sparseInterval, false);
+    }
+
+    /**
+     * @param syncOnClose true to force each file before closing it
+     */
+    public RollingTickWriter(Path productStorage, long flushIntervalNanos, int flushBytes, int sparseInterval,
+                             boolean syncOnClose) {
+        assert flushIntervalNanos >= 0 && flushBytes >= 0 && sparseInterval >= 0;
+        this.productStorage = productStorage;
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.flushBytes = flushBytes;
+        this.segment = sparseInterval == 0 ? null : new TickSegmentBuilder(sparseInterval);
+        this.syncOnClose = syncOnClose;
+    }
+
+    /**
+     * @param epochNanos time of the tick, selects the hourly file
+     * @param line       recorded tick, without line separator
+     * @throws IOException when the file cannot be opened or written
+     */
+    public synchronized void write(long epochNanos, String line) throws IOException {
+        if (epochNanos >= nextRotationNanos || epochNanos < hourStartNanos) {
+            rotate(epochNanos);
+        }
+        writer.write(line);
+        writer.newLine();
+        if (segment != null) {
+            segment.add(Math.floorDiv(epochNanos, NANOS_PER_MILLI), line.length() + LINE_SEPARATOR_LENGTH);
+        }
+        pendingBytes += line.length() + LINE_SEPARATOR_LENGTH;
+        writeSequence++;
+        ticksCount++;
+        if (pendingBytes >= flushBytes || epochNanos - lastFlushNanos >= flushIntervalNanos) {
+            flush(epochNanos);
+        }
+    }
+
+    private void rotate(long epochNanos) throws IOException {
+        closeWriter();
+        hourStartNanos = Math.floorDiv(epochNanos, NANOS_PER_HOUR) * NANOS_PER_HOUR;
+        nextRotationNanos = hourStartNanos + NANOS_PER_HOUR;
+        long hourStartMillis = hourStartNanos / NANOS_PER_MILLI;
+        currentPath = TickArchiveIndex.hourPath(productStorage, hourStartMillis);
+        Files.createDirectories(currentPath.getParent());
+        channel = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        if (segment != null) {
+            segment.start(hourStartMillis, Files.size(currentPath));
+        }
+        lastFlushNanos = epochNanos;
+    }
+
+    private void flush(long epochNanos) throws IOException {
+        writer.flush();
+        pendingBytes = 0;
+        lastFlushNanos = epochNanos;
+    }
+
+    /**
+     * Flushes pending ticks if the flush interval has elapsed since the last flush.
+     *
+     * @param nowNanos current time in nanoseconds since epoch
+     * @return true if ticks have been flushed
+     * @throws IOException when writing fails
+     */
+    public synchronized boolean flushIfDue(long nowNanos) throws IOException {
+        if (writer == null || pendingBytes == 0 || nowNanos - lastFlushNanos < flushIntervalNanos) {
+            return false;
+        }
+        flush(nowNanos);
+        return true;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (writer != null && pendingBytes > 0) {
+            flush(lastFlushNanos);
+        }
+    }
+
+    /**
+     * Flushes pending ticks and forces the current file to the storage device. The file is forced without holding
+     * the writer, so that ticks keep being written meanwhile: they may or may not be covered by this sync. Unless
+     * syncing on close, ticks of the files closed since the last sync are not forced.
+     *
+     * @return false if no tick has been written since the last sync
+     * @throws IOException when flushing or forcing fails, or when the file has been closed meanwhile without
+     *                     being forced
+     */
+    public boolean sync() throws IOException {
+        FileChannel syncing;
+        long syncingSequence;
+        synchronized (this) {
+            if (writer == null || syncedSequence == writeSequence) {
+                return false;
+            }
+            flush(lastFlushNanos);
+            syncing = channel;
+            syncingSequence = writeSequence;
+        }
+        try {
+            force(syncing);
+        } catch (ClosedChannelException e) {
+            synchronized (this) {
+                if (syncedSequence < syncingSequence) {
+                    throw e;
+                }
+            }
+            // rotated meanwhile, the closed file has been forced
+            return true;
+        }
+        synchronized (this) {
+            syncedSequence = Math.max(syncedSequence, syncingSequence);
+        }
+        return true;
+    }
+
+    void force(FileChannel syncing) throws IOException {
+        syncing.force(false);
+    }
+
+    /**
+     * @return true if all the written ticks have been forced to the storage device
+     */
+    public synchronized boolean isSynced() {
+        return syncedSequence == writeSequence;
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            BufferedWriter closing = writer;
+            writer = null;
+            pendingBytes = 0;
+            if (syncOnClose && syncedSequence != writeSequence) {
+                closing.flush();
+                force(channel);
+                syncedSequence = writeSequence;
+            }
+            channel = null;
+            closing.close();
+            if (segment != null && !segment.isEmpty()) {
+                TickArchiveIndex.append(productStorage, segment.build());
+                segment.start(0, 0);
+            }
+        }
+    }
+
+    /**
+     * @return file of the current hour, null before the first tick
+     */
+    public synchronized Path getCurrentPath() {
+        return currentPath;
+    }
+
+    public synchronized long getTicksCount() {
+        return ticksCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeWriter();
+        hourStartNanos = Long.MAX_VALUE;
+        nextRotationNanos = Long.MIN_VALUE;
+    }
+}
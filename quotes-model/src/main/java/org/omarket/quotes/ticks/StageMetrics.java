@@ -0,0 +1,56 @@
+package org.omarket.quotes.ticks;
+
+/**
+ * Counters of a tick pipeline stage, read at a given time.
+ */
+public final class StageMetrics {
+
+    private final String name;
+    private final long processedTicks;
+    private final long failedTicks;
+    private final long lag;
+    private final long maxLag;
+
+    StageMetrics(String name, long processedTicks, long failedTicks, long lag, long maxLag) {
+        this.name = name;
+        this.processedTicks = processedTicks;
+        this.failedTicks = failedTicks;
+        this.lag = lag;
+        this.maxLag = maxLag;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return ticks handled since the start, failed ones included
+     */
+    public long getProcessedTicks() {
+        return processedTicks;
+    }
+
+    public long getFailedTicks() {
+        return failedTicks;
+    }
+
+    /**
+     * @return number of ticks published by the producer and not yet handled by the stage
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * @return highest lag seen by the stage when it woke up
+     */
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public String toString() {
+        return "stage " + name + ": processed=" + processedTicks + " failed=" + failedTicks + " lag=" + lag
+                + " maxLag=" + maxLag;
+    }
+}
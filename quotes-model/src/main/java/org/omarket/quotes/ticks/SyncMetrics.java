@@ -0,0 +1,99 @@
+package org.omarket.quotes.ticks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durability counters of a {@link TickRecorder}, read at a given time.
+ */
+public final class SyncMetrics {
+
+    private final SyncMode mode;
+    private final long elapsedNanos;
+    private final long recordedTicks;
+    private final long syncedTicks;
+    private final long syncs;
+    private final long syncNanos;
+    private final long lastLagNanos;
+    private final long maxLagNanos;
+
+    SyncMetrics(SyncMode mode, long elapsedNanos, long recordedTicks, long syncedTicks, long syncs, long syncNanos,
+                long lastLagNanos, long maxLagNanos) {
+        this.mode = mode;
+        this.elapsedNanos = elapsedNanos;
+        this.recordedTicks = recordedTicks;
+        this.syncedTicks = syncedTicks;
+        this.syncs = syncs;
+        this.syncNanos = syncNanos;
+        this.lastLagNanos = lastLagNanos;
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    public SyncMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return time since the recorder was created
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getRecordedTicks() {
+        return recordedTicks;
+    }
+
+    /**
+     * @return ticks covered by a completed sync, always 0 without sync
+     */
+    public long getSyncedTicks() {
+        return syncedTicks;
+    }
+
+    /**
+     * @return number of group commits, each one forcing every file with unsynced ticks
+     */
+    public long getSyncs() {
+        return syncs;
+    }
+
+    /**
+     * @return time spent forcing files
+     */
+    public long getSyncNanos() {
+        return syncNanos;
+    }
+
+    /**
+     * @return time the oldest tick of the last group commit waited before being synced
+     */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * @return ticks recorded per second since the recorder was created
+     */
+    public double getTicksPerSecond() {
+        return elapsedNanos == 0 ? 0. : recordedTicks * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return average number of ticks covered by one sync
+     */
+    public double getTicksPerSync() {
+        return syncs == 0 ? 0. : (double) syncedTicks / syncs;
+    }
+
+    @Override
+    public String toString() {
+        return "sync " + mode + ": recorded=" + recordedTicks + String.format(" (%.1f/s)", getTicksPerSecond())
+                + " synced=" + syncedTicks + " syncs=" + syncs + " syncMs=" + TimeUnit.NANOSECONDS.toMillis(syncNanos)
+                + " lagMs=" + TimeUnit.NANOSECONDS.toMillis(lastLagNanos)
+                + " maxLagMs=" + TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+    }
+}
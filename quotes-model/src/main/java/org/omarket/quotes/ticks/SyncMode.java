@@ -0,0 +1,23 @@
+package org.omarket.quotes.ticks;
+
+/**
+ * When a {@link TickRecorder} forces recorded ticks to the storage device.
+ * <p>
+ * Syncs are group commits: one force per file with unsynced ticks covers all the ticks recorded since the previous
+ * sync, whatever their number.
+ */
+public enum SyncMode {
+    /**
+     * Ticks are flushed to the file system and left to the operating system, a crash of the box may lose the
+     * ticks of the last seconds.
+     */
+    NONE,
+    /**
+     * Ticks are forced every sync interval, in milliseconds, by a background thread.
+     */
+    PERIODIC,
+    /**
+     * Ticks are forced by the recording thread once the sync interval, in number of ticks, has been recorded.
+     */
+    RECORDS
+}
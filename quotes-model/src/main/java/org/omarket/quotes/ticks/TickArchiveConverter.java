@@ -0,0 +1,126 @@
+package org.omarket.quotes.ticks;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the CSV tick archive, {@code <product storage>/yyyyMMdd/HH} files holding
+ * {@code mm:ss.SSS,bidSize,bid,ask,askSize} lines, into binary tick files written next to them.
+ * <p>
+ * CSV files are kept. The tick scale of a binary file is the largest number of decimals found in its prices.
+ */
+@Slf4j
+public final class TickArchiveConverter {
+
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private TickArchiveConverter() {
+    }
+
+    /**
+     * @param csvFile         hourly CSV file
+     * @param binaryFile      binary file to be written, replaced if it exists
+     * @param instrumentId    written in the header
+     * @param hourStartMillis start of the hour of the CSV file, in milliseconds since epoch
+     * @return number of converted ticks
+     * @throws IllegalArgumentException if a line is malformed, in which case no binary file is left
+     * @throws IOException              when reading or writing fails
+     */
+    public static int convert(Path csvFile, Path binaryFile, int instrumentId, long hourStartMillis) throws IOException {
+        List<String> lines = Files.readAllLines(csvFile, StandardCharsets.US_ASCII);
+        List<String[]> rows = new ArrayList<>(lines.size());
+        int tickScale = 0;
+        for (int index = 0; index < lines.size(); index++) {
+            String line = lines.get(index).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 5 || fields[0].length() != 9) {
+                throw new IllegalArgumentException("malformed tick at " + csvFile + ":" + (index + 1) + ": " + line);
+            }
+            tickScale = Math.max(tickScale, Math.max(new BigDecimal(fields[2]).scale(), new BigDecimal(fields[3]).scale()));
+            rows.add(fields);
+        }
+        Path temporary = binaryFile.resolveSibling(binaryFile.getFileName() + ".tmp");
+        try (TickFileWriter writer = new TickFileWriter(temporary, instrumentId, tickScale, hourStartMillis)) {
+            for (String[] fields : rows) {
+                writer.append(hourStartMillis + parseMinuteMillis(fields[0]),
+                        toTicks(fields[2], tickScale), Integer.parseInt(fields[1]),
+                        toTicks(fields[3], tickScale), Integer.parseInt(fields[4]));
+            }
+        } catch (RuntimeException | IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows.size();
+    }
+
+    /**
+     * Converts the hourly files of a product that have no binary file yet.
+     *
+     * @param productStorage storage directory of the product
+     * @param instrumentId   written in the headers
+     * @param untilMillis    only hours ending at or before this time are converted, so that files still being
+     *                       recorded are left alone
+     * @return number of converted files, files failing to convert are logged and skipped
+     * @throws IOException when the storage cannot be listed
+     */
+    public static int convertProduct(Path productStorage, int instrumentId, long untilMillis) throws IOException {
+        int converted = 0;
+        try (DirectoryStream<Path> days = Files.newDirectoryStream(productStorage, "[0-9][0-9][0-9][0-9][0-9][0-9][0-9][0-9]")) {
+            for (Path day : days) {
+                try (DirectoryStream<Path> hours = Files.newDirectoryStream(day, "[0-9][0-9]")) {
+                    for (Path csvFile : hours) {
+                        long hourStart = LocalDateTime.parse(day.getFileName().toString() + csvFile.getFileName(),
+                                HOUR_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+                        Path binaryFile = csvFile.resolveSibling(csvFile.getFileName() + TickFileFormat.EXTENSION);
+                        if (hourStart + MILLIS_PER_HOUR > untilMillis || Files.exists(binaryFile)) {
+                            continue;
+                        }
+                        try {
+                            int ticks = convert(csvFile, binaryFile, instrumentId, hourStart);
+                            log.debug("converted {} ticks from {}", ticks, csvFile);
+                            converted++;
+                        } catch (IllegalArgumentException | IOException e) {
+                            log.error("failed to convert " + csvFile, e);
+                        }
+                    }
+                }
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * @param minuteSecondMillis time in the hour, {@code mm:ss.SSS}
+     */
+    static long parseMinuteMillis(String minuteSecondMillis) {
+        if (minuteSecondMillis.charAt(2) != ':' || minuteSecondMillis.charAt(5) != '.') {
+            throw new IllegalArgumentException("malformed time: " + minuteSecondMillis);
+        }
+        int minutes = Integer.parseInt(minuteSecondMillis.substring(0, 2));
+        int seconds = Integer.parseInt(minuteSecondMillis.substring(3, 5));
+        int millis = Integer.parseInt(minuteSecondMillis.substring(6, 9));
+        return (minutes * 60L + seconds) * 1000L + millis;
+    }
+
+    private static long toTicks(String price, int tickScale) {
+        return new BigDecimal(price).setScale(tickScale).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,177 @@
+package org.omarket.quotes.ticks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segments of the CSV tick files of a product, appended by the recorder to {@code <product storage>/ticks.idx}
+ * each time it closes an hourly file.
+ * <p>
+ * An hourly file may hold several segments, one per recording session. Bytes appended to a file after its last
+ * indexed segment, typically by the session still recording, are not indexed, nor are the bytes of a session that
+ * stopped without closing the file: replays parse the bytes outside of the segments whole. Each entry is written in one go: a truncated last entry, left by a crash, is
+ * ignored on load.
+ */
+public final class TickArchiveIndex {
+
+    public static final String FILE_NAME = "ticks.idx";
+    private static final DateTimeFormatter FORMAT_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter FORMAT_HOUR = DateTimeFormatter.ofPattern("HH");
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final TreeMap<Long, List<TickSegment>> segmentsByHour = new TreeMap<>();
+
+    private TickArchiveIndex() {
+    }
+
+    /**
+     * @return index of the product, empty if the product has no index yet
+     * @throws IOException when the index cannot be read
+     */
+    public static TickArchiveIndex load(Path productStorage) throws IOException {
+        TickArchiveIndex index = new TickArchiveIndex();
+        Path indexPath = productStorage.resolve(FILE_NAME);
+        if (!Files.exists(indexPath)) {
+            return index;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            while (true) {
+                TickSegment segment;
+                try {
+                    segment = read(input);
+                } catch (EOFException e) {
+                    break;
+                }
+                index.segmentsByHour.computeIfAbsent(segment.getHourStartMillis(), hour -> new ArrayList<>()).add(segment);
+            }
+        }
+        return index;
+    }
+
+    private static TickSegment read(DataInputStream input) throws IOException {
+        long hourStartMillis = input.readLong();
+        long firstMillis = input.readLong();
+        long lastMillis = input.readLong();
+        int recordCount = input.readInt();
+        long startOffset = input.readLong();
+        long endOffset = input.readLong();
+        int sparseInterval = input.readInt();
+        int sparseCount = input.readInt();
+        if (sparseCount < 0 || sparseCount > recordCount) {
+            throw new IOException("corrupted tick index entry for hour " + hourStartMillis);
+        }
+        long[] sparseMillis = new long[sparseCount];
+        long[] sparseOffsets = new long[sparseCount];
+        for (int index = 0; index < sparseCount; index++) {
+            sparseMillis[index] = input.readLong();
+            sparseOffsets[index] = input.readLong();
+        }
+        return new TickSegment(hourStartMillis, firstMillis, lastMillis, recordCount, startOffset, endOffset,
+                sparseInterval, sparseMillis, sparseOffsets);
+    }
+
+    /**
+     * Appends a segment to the index of the product.
+     *
+     * @throws IOException when the index cannot be written
+     */
+    public static void append(Path productStorage, TickSegment segment) throws IOException {
+        int sparseCount = segment.getSparseCount();
+        int length = 8 * 6 + 4 * 3 + 16 * sparseCount;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(productStorage.resolve(FILE_NAME), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND), length))) {
+            output.writeLong(segment.getHourStartMillis());
+            output.writeLong(segment.getFirstMillis());
+            output.writeLong(segment.getLastMillis());
+            output.writeInt(segment.getRecordCount());
+            output.writeLong(segment.getStartOffset());
+            output.writeLong(segment.getEndOffset());
+            output.writeInt(segment.getSparseInterval());
+            output.writeInt(sparseCount);
+            for (int index = 0; index < sparseCount; index++) {
+                output.writeLong(segment.getSparseMillis(index));
+                output.writeLong(segment.getSparseOffset(index));
+            }
+        }
+    }
+
+    /**
+     * @return CSV file of the hour, {@code <product storage>/yyyyMMdd/HH}
+     */
+    public static Path hourPath(Path productStorage, long hourStartMillis) {
+        ZonedDateTime hour = ZonedDateTime.ofInstant(Instant.ofEpochMilli(hourStartMillis), ZoneOffset.UTC);
+        return productStorage.resolve(FORMAT_DAY.format(hour)).resolve(FORMAT_HOUR.format(hour));
+    }
+
+    /**
+     * @return start of the hour holding the time
+     */
+    public static long hourOf(long epochMillis) {
+        return Math.floorDiv(epochMillis, MILLIS_PER_HOUR) * MILLIS_PER_HOUR;
+    }
+
+    public boolean isEmpty() {
+        return segmentsByHour.isEmpty();
+    }
+
+    /**
+     * @return segments of the hour, in the order they were recorded
+     */
+    public List<TickSegment> getSegments(long hourStartMillis) {
+        List<TickSegment> segments = segmentsByHour.get(hourStartMillis);
+        return segments == null ? Collections.emptyList() : Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * @return segments that may hold records in {@code [fromMillis, toMillis[}, in time order
+     */
+    public List<TickSegment> find(long fromMillis, long toMillis) {
+        List<TickSegment> found = new ArrayList<>();
+        if (fromMillis >= toMillis) {
+            return found;
+        }
+        for (List<TickSegment> segments : segmentsByHour.subMap(hourOf(fromMillis), true, hourOf(toMillis - 1), true).values()) {
+            for (TickSegment segment : segments) {
+                if (segment.overlaps(fromMillis, toMillis)) {
+                    found.add(segment);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return offset following the last indexed segment of the hour, 0 if the hour is not indexed
+     */
+    public long getIndexedEndOffset(long hourStartMillis) {
+        long end = 0;
+        for (TickSegment segment : getSegments(hourStartMillis)) {
+            end = Math.max(end, segment.getEndOffset());
+        }
+        return end;
+    }
+
+    /**
+     * @return start of the last indexed hour, null if the index is empty
+     */
+    public Long getLastHour() {
+        return segmentsByHour.isEmpty() ? null : segmentsByHour.lastKey();
+    }
+}
@@ -0,0 +1,88 @@
+package org.omarket.quotes.ticks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout of an hourly tick file.
+ * <p>
+ * Header (big-endian): magic (int), version (byte), tick scale (byte), instrument id (int), base time in
+ * milliseconds since epoch (long), record count (int). Prices are stored as tick integers: unscaled values at the
+ * tick scale, so that {@code 101.25} at scale 2 is {@code 10125}. Each record holds, in this order:
+ * <ul>
+ * <li>time elapsed since the previous record (since the base time for the first one), in milliseconds</li>
+ * <li>bid price minus the previous bid price, in ticks</li>
+ * <li>ask price minus the previous ask price, in ticks</li>
+ * <li>bid size</li>
+ * <li>ask size</li>
+ * </ul>
+ * Deltas are zigzag-encoded varints, sizes are unsigned varints: a typical record takes 5 to 8 bytes instead of
+ * about 30 characters in the CSV archive.
+ */
+public final class TickFileFormat {
+
+    public static final int MAGIC = 0x4F544B46;
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 4 + 1 + 1 + 4 + 8 + 4;
+    /**
+     * Position of the record count in the header, written once the file is complete.
+     */
+    public static final int RECORD_COUNT_OFFSET = HEADER_LENGTH - 4;
+    public static final int MAX_RECORD_LENGTH = 3 * 10 + 2 * 5;
+    /**
+     * Extension of binary tick files, stored next to the CSV file of the same hour.
+     */
+    public static final String EXTENSION = ".tick";
+
+    private TickFileFormat() {
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    static long getVarLong(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (shift > 63) {
+                throw new IllegalArgumentException("malformed varint at " + buffer.position());
+            }
+            current = buffer.get();
+            zigzag |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative size: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (shift > 28) {
+                throw new IllegalArgumentException("malformed varint at " + buffer.position());
+            }
+            current = buffer.get();
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return value;
+    }
+}
@@ -0,0 +1,134 @@
+package org.omarket.quotes.ticks;
+
+import org.omarket.quotes.Quote;
+import org.omarket.quotes.QuoteFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Reads the records of a binary tick file one after the other, see {@link TickFileFormat}.
+ * <p>
+ * Fields of the current record are primitives, decoded in place: {@link #toQuote(String, QuoteFactory)} is only
+ * needed by consumers of {@link Quote}s.
+ */
+public class TickFileReader {
+
+    private final ByteBuffer buffer;
+    private final int instrumentId;
+    private final int tickScale;
+    private final long baseEpochMillis;
+    private final int recordCount;
+    private int recordIndex = 0;
+    private long epochMillis;
+    private long bidTicks = 0;
+    private long askTicks = 0;
+    private int bidSize;
+    private int askSize;
+
+    /**
+     * @param buffer content of the file, from its current position
+     * @throws IllegalArgumentException if the header is not one of a tick file
+     */
+    public TickFileReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.remaining() < TickFileFormat.HEADER_LENGTH || buffer.getInt() != TickFileFormat.MAGIC) {
+            throw new IllegalArgumentException("not a tick file");
+        }
+        byte version = buffer.get();
+        if (version != TickFileFormat.VERSION) {
+            throw new IllegalArgumentException("unsupported tick file version: " + version);
+        }
+        this.tickScale = buffer.get();
+        this.instrumentId = buffer.getInt();
+        this.baseEpochMillis = buffer.getLong();
+        this.recordCount = buffer.getInt();
+        this.epochMillis = baseEpochMillis;
+    }
+
+    /**
+     * Reads the whole file in memory.
+     */
+    public static TickFileReader open(Path path) throws IOException {
+        return new TickFileReader(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    public int getTickScale() {
+        return tickScale;
+    }
+
+    public long getBaseEpochMillis() {
+        return baseEpochMillis;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public boolean hasNext() {
+        return recordIndex < recordCount;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false once all records have been read
+     * @throws IllegalArgumentException if the file is truncated
+     */
+    public boolean next() {
+        if (recordIndex == recordCount) {
+            return false;
+        }
+        try {
+            epochMillis += TickFileFormat.getVarLong(buffer);
+            bidTicks += TickFileFormat.getVarLong(buffer);
+            askTicks += TickFileFormat.getVarLong(buffer);
+            bidSize = TickFileFormat.getVarInt(buffer);
+            askSize = TickFileFormat.getVarInt(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated tick file at record " + recordIndex, e);
+        }
+        recordIndex++;
+        return true;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public long getBidTicks() {
+        return bidTicks;
+    }
+
+    public long getAskTicks() {
+        return askTicks;
+    }
+
+    public int getBidSize() {
+        return bidSize;
+    }
+
+    public int getAskSize() {
+        return askSize;
+    }
+
+    /**
+     * @return current record as a quote stamped in UTC
+     */
+    public Quote toQuote(String productCode, QuoteFactory quoteFactory) {
+        ZonedDateTime lastModified = ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+        return quoteFactory.create(lastModified, bidSize, BigDecimal.valueOf(bidTicks, tickScale),
+                BigDecimal.valueOf(askTicks, tickScale), askSize, productCode);
+    }
+}
@@ -0,0 +1,132 @@
+package org.omarket.quotes.ticks;
+
+import org.omarket.quotes.Quote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary tick file, see {@link TickFileFormat}.
+ * <p>
+ * The header is written when the file is created, its record count on {@link #close()}: a file that was not
+ * closed reads as empty.
+ */
+public class TickFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final int tickScale;
+    private long previousMillis;
+    private long previousBid = 0;
+    private long previousAsk = 0;
+    private int recordCount = 0;
+    private boolean closed = false;
+
+    /**
+     * @param path            file to be created, replaced if it exists
+     * @param instrumentId    instrument of the ticks
+     * @param tickScale       number of decimals of the tick integers
+     * @param baseEpochMillis time from which the first record is counted, typically the start of the hour
+     * @throws IOException when the file cannot be created
+     */
+    public TickFileWriter(Path path, int instrumentId, int tickScale, long baseEpochMillis) throws IOException {
+        if (tickScale < 0 || tickScale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("invalid tick scale: " + tickScale);
+        }
+        this.tickScale = tickScale;
+        this.previousMillis = baseEpochMillis;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer.putInt(TickFileFormat.MAGIC);
+        buffer.put(TickFileFormat.VERSION);
+        buffer.put((byte) tickScale);
+        buffer.putInt(instrumentId);
+        buffer.putLong(baseEpochMillis);
+        buffer.putInt(0);
+        drain();
+    }
+
+    public int getTickScale() {
+        return tickScale;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @param epochMillis time of the tick
+     * @param bidTicks    bid price as a tick integer
+     * @param askTicks    ask price as a tick integer
+     * @throws IOException when writing fails
+     */
+    public void append(long epochMillis, long bidTicks, int bidSize, long askTicks, int askSize) throws IOException {
+        if (buffer.remaining() < TickFileFormat.MAX_RECORD_LENGTH) {
+            drain();
+        }
+        TickFileFormat.putVarLong(buffer, epochMillis - previousMillis);
+        TickFileFormat.putVarLong(buffer, bidTicks - previousBid);
+        TickFileFormat.putVarLong(buffer, askTicks - previousAsk);
+        TickFileFormat.putVarInt(buffer, bidSize);
+        TickFileFormat.putVarInt(buffer, askSize);
+        previousMillis = epochMillis;
+        previousBid = bidTicks;
+        previousAsk = askTicks;
+        recordCount++;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is missing or a price has more decimals than the tick scale
+     * @throws IOException              when writing fails
+     */
+    public void append(Quote quote) throws IOException {
+        if (quote.getBestBidSize() == null || quote.getBestAskSize() == null) {
+            throw new IllegalArgumentException("missing size: " + quote);
+        }
+        long epochMillis = quote.getLastModified().toInstant().toEpochMilli();
+        append(epochMillis, toTicks(quote.getBestBidPrice()), quote.getBestBidSize(),
+                toTicks(quote.getBestAskPrice()), quote.getBestAskSize());
+    }
+
+    private long toTicks(BigDecimal price) {
+        if (price == null) {
+            throw new IllegalArgumentException("missing price");
+        }
+        try {
+            return price.setScale(tickScale).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("price " + price + " does not fit tick scale " + tickScale, e);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            drain();
+            ByteBuffer count = ByteBuffer.allocate(4);
+            count.putInt(0, recordCount);
+            channel.write(count, TickFileFormat.RECORD_COUNT_OFFSET);
+        } finally {
+            channel.close();
+        }
+    }
+}
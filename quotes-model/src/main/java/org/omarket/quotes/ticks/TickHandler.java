@@ -0,0 +1,18 @@
+package org.omarket.quotes.ticks;
+
+import org.omarket.quotes.Quote;
+
+/**
+ * Processes the ticks of a {@link TickPipeline} stage, on the stage thread.
+ */
+@FunctionalInterface
+public interface TickHandler {
+
+    /**
+     * @param instrumentId instrument given by the producer
+     * @param quote        immutable quote given by the producer
+     * @param endOfBatch   true for the last tick available when the stage woke up, a hint to flush buffers
+     * @throws Exception counted as a failure of the stage, which goes on with the next tick
+     */
+    void onTick(int instrumentId, Quote quote, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,297 @@
+package org.omarket.quotes.ticks;
+
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.Quote;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands ticks from a single producer thread over to consumer stages, each one running on its own thread.
+ * <p>
+ * Ticks are stored in a preallocated ring: the producer writes a slot then moves its sequence forward, each stage
+ * reads every tick in order and moves its own sequence forward once its batch is handled. Stages are independent,
+ * so a slow stage only delays itself, until it is a whole ring behind: the producer then waits or drops the tick,
+ * depending on the {@link OverflowPolicy}. A dropped tick is missed by every stage. The lag of each stage is the
+ * distance between the two sequences.
+ * <p>
+ * Stages are added before {@link #start()}, {@link #publish(int, Quote)} must always be called by the same
+ * thread.
+ */
+@Slf4j
+public class TickPipeline implements Closeable {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long BLOCKING_TIMEOUT_MS = 100;
+
+    private final int capacity;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final int[] instrumentIds;
+    private final Quote[] quotes;
+    private final long[] producedNanos;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Stage> stages = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private Stage[] gatingStages = new Stage[0];
+    private long nextSequence = 0;
+    private long cachedGatingSequence = -1;
+    private volatile boolean started = false;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity       number of slots of the ring, a power of 2
+     * @param waitStrategy   how stages wait for ticks
+     * @param overflowPolicy what the producer does when the ring is full
+     */
+    public TickPipeline(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of 2: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.instrumentIds = new int[capacity];
+        this.quotes = new Quote[capacity];
+        this.producedNanos = new long[capacity];
+    }
+
+    /**
+     * @param name    names the stage thread and its metrics
+     * @param handler called for every published tick, on the stage thread
+     * @throws IllegalStateException if the pipeline is started
+     */
+    public void addStage(String name, TickHandler handler) {
+        addStage(name, (TimedTickHandler) (instrumentId, quote, producedNanos, endOfBatch) ->
+                handler.onTick(instrumentId, quote, endOfBatch));
+    }
+
+    /**
+     * @param handler also given the time at which the producer received the tick, to measure latencies
+     * @throws IllegalStateException if the pipeline is started
+     */
+    public void addStage(String name, TimedTickHandler handler) {
+        if (started) {
+            throw new IllegalStateException("stages must be added before start");
+        }
+        stages.add(new Stage(name, handler));
+    }
+
+    public void start() {
+        gatingStages = stages.toArray(new Stage[0]);
+        started = true;
+        for (Stage stage : gatingStages) {
+            stage.thread.start();
+        }
+    }
+
+    /**
+     * Stops the stages once they have handled the ticks already published, ticks published afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        signalStages();
+        for (Stage stage : gatingStages) {
+            try {
+                stage.thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param instrumentId instrument passed to the stages
+     * @param quote        passed to the stages, must not be modified afterwards
+     * @return false if the tick has been dropped, because the ring is full or the pipeline closed
+     */
+    public boolean publish(int instrumentId, Quote quote) {
+        return publish(instrumentId, quote, System.nanoTime());
+    }
+
+    /**
+     * @param producedNanos {@link System#nanoTime()} at which the producer received the tick
+     * @return false if the tick has been dropped, because the ring is full or the pipeline closed
+     */
+    public boolean publish(int instrumentId, Quote quote, long producedNanos) {
+        if (!running) {
+            dropped.lazySet(dropped.get() + 1);
+            return false;
+        }
+        long sequence = nextSequence;
+        long wrapPoint = sequence - capacity;
+        if (wrapPoint > cachedGatingSequence) {
+            long gatingSequence = minimumSequence(sequence - 1);
+            while (wrapPoint > gatingSequence) {
+                if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                    dropped.lazySet(dropped.get() + 1);
+                    return false;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+                gatingSequence = minimumSequence(sequence - 1);
+            }
+            cachedGatingSequence = gatingSequence;
+        }
+        int slot = (int) sequence & mask;
+        instrumentIds[slot] = instrumentId;
+        quotes[slot] = quote;
+        this.producedNanos[slot] = producedNanos;
+        nextSequence = sequence + 1;
+        cursor.lazySet(sequence);
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            signalStages();
+        }
+        return true;
+    }
+
+    private long minimumSequence(long minimum) {
+        for (Stage stage : gatingStages) {
+            minimum = Math.min(minimum, stage.sequence.get());
+        }
+        return minimum;
+    }
+
+    private void signalStages() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return ticks accepted by the ring since the start
+     */
+    public long getPublishedTicks() {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * @return ticks refused by the ring since the start
+     */
+    public long getDroppedTicks() {
+        return dropped.get();
+    }
+
+    public List<StageMetrics> getMetrics() {
+        List<StageMetrics> metrics = new ArrayList<>(stages.size());
+        long published = cursor.get();
+        for (Stage stage : stages) {
+            metrics.add(stage.metrics(published));
+        }
+        return metrics;
+    }
+
+    private final class Stage implements Runnable {
+        private final String name;
+        private final TimedTickHandler handler;
+        private final Thread thread;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final AtomicLong failed = new AtomicLong();
+        private volatile long maxLag = 0;
+
+        Stage(String name, TimedTickHandler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.thread = new Thread(this, "tick-stage-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        StageMetrics metrics(long published) {
+            long handled = sequence.get();
+            return new StageMetrics(name, handled + 1, failed.get(), Math.max(published - handled, 0), maxLag);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long available = waitFor(next);
+                if (available < next) {
+                    break;
+                }
+                long lag = available - next + 1;
+                if (lag > maxLag) {
+                    maxLag = lag;
+                }
+                for (long current = next; current <= available; current++) {
+                    int slot = (int) current & mask;
+                    try {
+                        handler.onTick(instrumentIds[slot], quotes[slot], producedNanos[slot], current == available);
+                    } catch (Exception e) {
+                        failed.lazySet(failed.get() + 1);
+                        log.error("stage " + name + " failed to handle tick of instrument " + instrumentIds[slot], e);
+                    }
+                }
+                sequence.lazySet(available);
+                next = available + 1;
+            }
+            log.info("tick stage {} stopped", name);
+        }
+
+        /**
+         * @return highest available sequence, below the expected one once the pipeline is closed and drained
+         */
+        private long waitFor(long expected) {
+            int tries = 0;
+            long available;
+            while ((available = cursor.get()) < expected) {
+                if (!running) {
+                    return cursor.get();
+                }
+                switch (waitStrategy) {
+                    case BUSY_SPIN:
+                        break;
+                    case YIELDING:
+                        if (tries++ >= SPIN_TRIES) {
+                            Thread.yield();
+                        }
+                        break;
+                    case SLEEPING:
+                        if (tries < SPIN_TRIES) {
+                            tries++;
+                        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+                            tries++;
+                            Thread.yield();
+                        } else {
+                            LockSupport.parkNanos(PARK_NANOS);
+                        }
+                        break;
+                    case BLOCKING:
+                        lock.lock();
+                        try {
+                            if (cursor.get() < expected && running) {
+                                published.await(BLOCKING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return cursor.get();
+                        } finally {
+                            lock.unlock();
+                        }
+                        break;
+                }
+            }
+            return available;
+        }
+    }
+}
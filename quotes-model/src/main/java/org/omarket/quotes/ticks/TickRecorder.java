@@ -0,0 +1,227 @@
+package org.omarket.quotes.ticks;
+
+import lombok.extern.slf4j.Slf4j;
+import org.omarket.quotes.EpochSampler;
+import org.omarket.quotes.Quote;
+import org.omarket.quotes.QuoteClock;
+import org.omarket.quotes.QuoteConverter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the ticks of many instruments, each one to its own {@link RollingTickWriter}.
+ * <p>
+ * A background thread flushes the writers of instruments that did not tick during the flush interval, so that
+ * recorded ticks never wait longer than the interval before reaching the file system.
+ * <p>
+ * Durability is set by a {@link SyncMode}. Syncs are group commits: all the ticks recorded since the previous sync
+ * share one force per file, whatever their number. A sync is started either by the background thread every sync
+ * interval (milliseconds) or by the recording thread once the sync interval (ticks) has been recorded. Since the
+ * tick count is shared by all instruments, a quiet instrument may wait for the busy ones before being synced.
+ */
+@Slf4j
+public class TickRecorder implements Closeable {
+
+    private final long flushIntervalNanos;
+    private final int flushBytes;
+    private final int sparseInterval;
+    private final SyncMode syncMode;
+    private final long syncInterval;
+    private final QuoteClock clock;
+    private final Map<Integer, RollingTickWriter> writers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    /*
+     * ticks recorded since the last sync, guarded by itself and never held while forcing
+     */
+    private final Object unsyncedLock = new Object();
+    private long unsyncedTicks = 0;
+    private long firstUnsyncedNanos = 0;
+    /*
+     * one group commit at a time, metrics below are written while holding it
+     */
+    private final Object syncLock = new Object();
+    private final long startNanos;
+    private final AtomicLong recordedTicks = new AtomicLong();
+    private volatile long syncedTicks = 0;
+    private volatile long syncs = 0;
+    private volatile long syncNanos = 0;
+    private volatile long lastLagNanos = 0;
+    private volatile long maxLagNanos = 0;
+
+    /**
+     * @param flushInterval  maximum time a tick waits before being flushed
+     * @param flushBytes     number of pending bytes of an instrument triggering a flush
+     * @param sparseInterval number of records between two offsets of the archive index, 0 to write no index
+     * @param clock          time used to detect idle instruments
+     */
+    public TickRecorder(Duration flushInterval, int flushBytes, int sparseInterval, QuoteClock clock) {
+        this(flushInterval, flushBytes, sparseInterval, SyncMode.NONE, 0, clock);
+    }
+
+    /**
+     * @param syncMode     when recorded ticks are forced to the storage device
+     * @param syncInterval milliseconds between two syncs when periodic, ticks recorded between two syncs when
+     *                     syncing every records, ignored otherwise
+     */
+    public TickRecorder(Duration flushInterval, int flushBytes, int sparseInterval, SyncMode syncMode,
+                        long syncInterval, QuoteClock clock) {
+        if (syncMode != SyncMode.NONE && syncInterval <= 0) {
+            throw new IllegalArgumentException("sync interval must be positive: " + syncInterval);
+        }
+        this.syncMode = syncMode;
+        this.syncInterval = syncInterval;
+        this.startNanos = System.nanoTime();
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.flushBytes = flushBytes;
+        this.sparseInterval = sparseInterval;
+        this.clock = clock;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tick-recorder-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = Math.max(1L, flushInterval.toMillis());
+        this.flusher.scheduleWithFixedDelay(this::flushIdle, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        if (syncMode == SyncMode.PERIODIC) {
+            this.flusher.scheduleWithFixedDelay(this::syncPeriodically, syncInterval, syncInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param instrumentId   identifies the instrument in {@link #record}
+     * @param productStorage storage directory of the instrument
+     * @return false if the instrument was already registered
+     */
+    public boolean register(int instrumentId, Path productStorage) {
+        RollingTickWriter writer = new RollingTickWriter(productStorage, flushIntervalNanos, flushBytes,
+                sparseInterval, syncMode != SyncMode.NONE);
+        return writers.putIfAbsent(instrumentId, writer) == null;
+    }
+
+    public boolean isRegistered(int instrumentId) {
+        return writers.containsKey(instrumentId);
+    }
+
+    /**
+     * @throws IOException when writing fails
+     * @throws IllegalArgumentException if the instrument is not registered
+     */
+    public void record(int instrumentId, Quote quote) throws IOException {
+        RollingTickWriter writer = writers.get(instrumentId);
+        if (writer == null) {
+            throw new IllegalArgumentException("instrument not registered: " + instrumentId);
+        }
+        writer.write(EpochSampler.epochNanos(quote), QuoteConverter.toPriceVolumeString(quote));
+        recordedTicks.incrementAndGet();
+        if (syncMode == SyncMode.NONE) {
+            return;
+        }
+        long unsynced;
+        synchronized (unsyncedLock) {
+            if (unsyncedTicks == 0) {
+                firstUnsyncedNanos = System.nanoTime();
+            }
+            unsynced = ++unsyncedTicks;
+        }
+        if (syncMode == SyncMode.RECORDS && unsynced >= syncInterval) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the ticks recorded so far by all instruments, one force per file with unsynced ticks.
+     *
+     * @return number of ticks covered by this sync
+     * @throws IOException when forcing fails, ticks are then accounted to the next sync
+     */
+    public long sync() throws IOException {
+        synchronized (syncLock) {
+            long ticks;
+            long firstNanos;
+            synchronized (unsyncedLock) {
+                ticks = unsyncedTicks;
+                firstNanos = firstUnsyncedNanos;
+                unsyncedTicks = 0;
+            }
+            if (ticks == 0) {
+                return 0;
+            }
+            long started = System.nanoTime();
+            try {
+                for (RollingTickWriter writer : writers.values()) {
+                    writer.sync();
+                }
+            } catch (IOException e) {
+                synchronized (unsyncedLock) {
+                    if (unsyncedTicks == 0) {
+                        firstUnsyncedNanos = firstNanos;
+                    }
+                    unsyncedTicks += ticks;
+                }
+                throw e;
+            }
+            long done = System.nanoTime();
+            syncs++;
+            syncedTicks += ticks;
+            syncNanos += done - started;
+            lastLagNanos = done - firstNanos;
+            maxLagNanos = Math.max(maxLagNanos, lastLagNanos);
+            return ticks;
+        }
+    }
+
+    private void syncPeriodically() {
+        try {
+            sync();
+        } catch (IOException e) {
+            log.error("failed to sync recorded ticks", e);
+        }
+    }
+
+    public SyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    public SyncMetrics getSyncMetrics() {
+        return new SyncMetrics(syncMode, System.nanoTime() - startNanos, recordedTicks.get(), syncedTicks, syncs,
+                syncNanos, lastLagNanos, maxLagNanos);
+    }
+
+    private void flushIdle() {
+        long now = clock.epochNanos();
+        for (Map.Entry<Integer, RollingTickWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().flushIfDue(now);
+            } catch (IOException e) {
+                log.error("failed to flush ticks of instrument " + entry.getKey(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        IOException failure = null;
+        for (RollingTickWriter writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        writers.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package org.omarket.quotes.ticks;
+
+import java.util.Arrays;
+
+/**
+ * Entry of a {@link TickArchiveIndex}: a range of bytes of an hourly CSV file written in one go by the recorder.
+ * <p>
+ * Besides the range of times and the number of records, a segment keeps the time and byte offset of one record
+ * every {@link #getSparseInterval()} records, so that a replay can start close to a given time without parsing the
+ * segment from its start. Records of a segment are expected in time order, as recorded.
+ */
+public final class TickSegment {
+
+    private final long hourStartMillis;
+    private final long firstMillis;
+    private final long lastMillis;
+    private final int recordCount;
+    private final long startOffset;
+    private final long endOffset;
+    private final int sparseInterval;
+    private final long[] sparseMillis;
+    private final long[] sparseOffsets;
+
+    TickSegment(long hourStartMillis, long firstMillis, long lastMillis, int recordCount, long startOffset,
+                long endOffset, int sparseInterval, long[] sparseMillis, long[] sparseOffsets) {
+        assert sparseMillis.length == sparseOffsets.length;
+        this.hourStartMillis = hourStartMillis;
+        this.firstMillis = firstMillis;
+        this.lastMillis = lastMillis;
+        this.recordCount = recordCount;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.sparseInterval = sparseInterval;
+        this.sparseMillis = sparseMillis;
+        this.sparseOffsets = sparseOffsets;
+    }
+
+    /**
+     * @return start of the hour of the file holding the segment
+     */
+    public long getHourStartMillis() {
+        return hourStartMillis;
+    }
+
+    public long getFirstMillis() {
+        return firstMillis;
+    }
+
+    public long getLastMillis() {
+        return lastMillis;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return offset of the first record in the file
+     */
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * @return offset following the last record in the file
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public int getSparseInterval() {
+        return sparseInterval;
+    }
+
+    int getSparseCount() {
+        return sparseMillis.length;
+    }
+
+    long getSparseMillis(int index) {
+        return sparseMillis[index];
+    }
+
+    long getSparseOffset(int index) {
+        return sparseOffsets[index];
+    }
+
+    /**
+     * @return true if the segment may hold records in {@code [fromMillis, toMillis[}
+     */
+    public boolean overlaps(long fromMillis, long toMillis) {
+        return recordCount > 0 && firstMillis < toMillis && lastMillis >= fromMillis;
+    }
+
+    /**
+     * @return offset from which to parse so as to find the first record at or after the given time, records
+     * before that time may still have to be skipped
+     */
+    public long offsetOf(long fromMillis) {
+        // last sparse record strictly before the time: records sharing its time may precede it
+        int low = 0;
+        int high = sparseMillis.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (sparseMillis[middle] < fromMillis) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found < 0 ? startOffset : sparseOffsets[found];
+    }
+
+    /**
+     * @return offset up to which to parse so as to find every record before the given time, records at or after
+     * that time may still have to be skipped
+     */
+    public long endOffsetOf(long toMillis) {
+        // first sparse record at or after the time: all the records following it are too
+        int low = 0;
+        int high = sparseMillis.length - 1;
+        int found = sparseMillis.length;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (sparseMillis[middle] >= toMillis) {
+                found = middle;
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return found == sparseMillis.length ? endOffset : sparseOffsets[found];
+    }
+
+    @Override
+    public String toString() {
+        return "segment " + hourStartMillis + " [" + firstMillis + ", " + lastMillis + "] records=" + recordCount
+                + " bytes=[" + startOffset + ", " + endOffset + "[ sparse=" + Arrays.toString(sparseMillis);
+    }
+}
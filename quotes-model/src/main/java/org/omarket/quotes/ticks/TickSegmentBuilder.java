@@ -0,0 +1,67 @@
+package org.omarket.quotes.ticks;
+
+import java.util.Arrays;
+
+/**
+ * Collects the index entry of the segment being written by a {@link RollingTickWriter}.
+ */
+final class TickSegmentBuilder {
+
+    private final int sparseInterval;
+    private long hourStartMillis;
+    private long startOffset;
+    private long endOffset;
+    private long firstMillis;
+    private long lastMillis;
+    private int recordCount;
+    private long[] sparseMillis = new long[16];
+    private long[] sparseOffsets = new long[16];
+    private int sparseCount;
+
+    TickSegmentBuilder(int sparseInterval) {
+        assert sparseInterval > 0;
+        this.sparseInterval = sparseInterval;
+    }
+
+    /**
+     * Starts a segment at the given offset of an hourly file.
+     */
+    void start(long hourStartMillis, long startOffset) {
+        this.hourStartMillis = hourStartMillis;
+        this.startOffset = startOffset;
+        this.endOffset = startOffset;
+        this.recordCount = 0;
+        this.sparseCount = 0;
+    }
+
+    /**
+     * @param epochMillis time of the record
+     * @param length      number of bytes of the record
+     */
+    void add(long epochMillis, int length) {
+        if (recordCount == 0) {
+            firstMillis = epochMillis;
+        }
+        if (recordCount % sparseInterval == 0) {
+            if (sparseCount == sparseMillis.length) {
+                sparseMillis = Arrays.copyOf(sparseMillis, sparseCount * 2);
+                sparseOffsets = Arrays.copyOf(sparseOffsets, sparseCount * 2);
+            }
+            sparseMillis[sparseCount] = epochMillis;
+            sparseOffsets[sparseCount] = endOffset;
+            sparseCount++;
+        }
+        lastMillis = epochMillis;
+        endOffset += length;
+        recordCount++;
+    }
+
+    boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    TickSegment build() {
+        return new TickSegment(hourStartMillis, firstMillis, lastMillis, recordCount, startOffset, endOffset,
+                sparseInterval, Arrays.copyOf(sparseMillis, sparseCount), Arrays.copyOf(sparseOffsets, sparseCount));
+    }
+}
@@ -0,0 +1,16 @@
+package org.omarket.quotes.ticks;
+
+import org.omarket.quotes.Quote;
+
+/**
+ * Processes the ticks of a {@link TickPipeline} stage, knowing when the producer received them.
+ */
+@FunctionalInterface
+public interface TimedTickHandler {
+
+    /**
+     * @param producedNanos {@link System#nanoTime()} given by the producer when publishing the tick
+     * @see TickHandler#onTick(int, Quote, boolean)
+     */
+    void onTick(int instrumentId, Quote quote, long producedNanos, boolean endOfBatch) throws Exception;
+}
@@ -0,0 +1,23 @@
+package org.omarket.quotes.ticks;
+
+/**
+ * How the stages of a {@link TickPipeline} wait for new ticks.
+ */
+public enum WaitStrategy {
+    /**
+     * Spins on the producer sequence: lowest latency, burns a core per stage.
+     */
+    BUSY_SPIN,
+    /**
+     * Spins a little, then yields the core to other threads.
+     */
+    YIELDING,
+    /**
+     * Spins, yields, then parks for short periods: low CPU usage, latency in the order of the park period.
+     */
+    SLEEPING,
+    /**
+     * Waits on a condition signalled by the producer: no CPU usage when idle, the producer pays for the signal.
+     */
+    BLOCKING
+}
@@ -0,0 +1,153 @@
+package org.omarket.quotes.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive longs to primitive ints.
+ * <p>
+ * Same layout as {@link ObjectIntHashMap}: parallel arrays, linear probing and backward shift removal, so that
+ * no key is ever boxed.
+ */
+public final class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int resizeThreshold;
+    private int size = 0;
+
+    /**
+     * @param initialCapacity expected number of entries
+     * @param missingValue    value returned for keys that are not in the map
+     */
+    public LongIntHashMap(int initialCapacity, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(capacityFor(initialCapacity));
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (entries / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int get(long key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : missingValue;
+    }
+
+    /**
+     * @return previous value, or the missing value if the key was not in the map
+     */
+    public int put(long key, int value) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return removed value, or the missing value if the key was not in the map
+     */
+    public int remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return missingValue;
+        }
+        int removed = values[index];
+        used[index] = false;
+        size--;
+        int next = (index + 1) & mask;
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+            if (movable) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                used[index] = true;
+                used[next] = false;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int index = 0; index < oldKeys.length; index++) {
+            if (oldUsed[index]) {
+                int target = hash(oldKeys[index]) & mask;
+                while (used[target]) {
+                    target = (target + 1) & mask;
+                }
+                keys[target] = oldKeys[index];
+                values[target] = oldValues[index];
+                used[target] = true;
+            }
+        }
+    }
+}
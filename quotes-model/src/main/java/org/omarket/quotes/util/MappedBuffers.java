@@ -0,0 +1,81 @@
+package org.omarket.quotes.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases file mappings without waiting for the garbage collector.
+ * <p>
+ * The JDK only unmaps a {@link MappedByteBuffer} once it is collected, which keeps files mapped, and on some
+ * platforms locked, long after they have been read. The cleaner of the buffer is invoked instead, through
+ * {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later, or {@code sun.nio.ch.DirectBuffer.cleaner()} on
+ * Java 8. When neither is accessible, buffers are left to the collector.
+ */
+@Slf4j
+public final class MappedBuffers {
+
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private MappedBuffers() {
+    }
+
+    private interface Unmapper {
+        void unmap(MappedByteBuffer buffer) throws Exception;
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (Exception e) {
+            log.debug("Unsafe.invokeCleaner not available", e);
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object bufferCleaner = cleaner.invoke(buffer);
+                if (bufferCleaner != null) {
+                    clean.invoke(bufferCleaner);
+                }
+            };
+        } catch (Exception e) {
+            log.debug("DirectBuffer.cleaner not available", e);
+        }
+        log.warn("unmapping not supported: mapped files are released by the garbage collector");
+        return null;
+    }
+
+    /**
+     * @return true if deterministic unmapping is available
+     */
+    public static boolean isSupported() {
+        return UNMAPPER != null;
+    }
+
+    /**
+     * Unmaps the buffer: the buffer, and any buffer sharing its content, must not be accessed afterwards.
+     *
+     * @return false if the mapping is left to the garbage collector
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER == null) {
+            return false;
+        }
+        try {
+            UNMAPPER.unmap(buffer);
+            return true;
+        } catch (Exception e) {
+            log.warn("failed to unmap buffer", e);
+            return false;
+        }
+    }
+}
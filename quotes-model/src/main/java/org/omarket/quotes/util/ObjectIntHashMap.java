@@ -0,0 +1,150 @@
+package org.omarket.quotes.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from objects to primitive ints.
+ * <p>
+ * Entries are stored in parallel arrays with linear probing, so that put, get and remove do not allocate
+ * (apart from resizing). Removal uses backward shifting instead of tombstones.
+ *
+ * @param <K> type of the keys
+ */
+public final class ObjectIntHashMap<K> {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final int missingValue;
+    private Object[] keys;
+    private int[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size = 0;
+
+    /**
+     * @param initialCapacity expected number of entries
+     * @param missingValue    value returned for keys that are not in the map
+     */
+    public ObjectIntHashMap(int initialCapacity, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(capacityFor(initialCapacity));
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (entries / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(capacity, 4);
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int get(K key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : missingValue;
+    }
+
+    /**
+     * @return previous value, or the missing value if the key was not in the map
+     */
+    public int put(K key, int value) {
+        int index = hash(key) & mask;
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return removed value, or the missing value if the key was not in the map
+     */
+    public int remove(K key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return missingValue;
+        }
+        int removed = values[index];
+        keys[index] = null;
+        size--;
+        int next = (index + 1) & mask;
+        while (keys[next] != null) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = index <= next ? (home <= index || home > next) : (home <= index && home > next);
+            if (movable) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                keys[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private int indexOf(Object key) {
+        int index = hash(key) & mask;
+        while (keys[index] != null) {
+            if (keys[index].equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int index = 0; index < oldKeys.length; index++) {
+            Object key = oldKeys[index];
+            if (key != null) {
+                int target = hash(key) & mask;
+                while (keys[target] != null) {
+                    target = (target + 1) & mask;
+                }
+                keys[target] = key;
+                values[target] = oldValues[index];
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EpochSamplerTest {
+
+    @Test
+    public void subSecondBuckets() throws Exception {
+        EpochSampler sampler = EpochSampler.ofMillis(250);
+        assertEquals(0, sampler.bucketOfMillis(0));
+        assertEquals(0, sampler.bucketOfMillis(249));
+        assertEquals(1, sampler.bucketOfMillis(250));
+        assertEquals(40, sampler.bucketOfMillis(10_100));
+        assertEquals(40, sampler.bucketOfMillis(10_000));
+        assertEquals(-1, sampler.bucketOfMillis(-1));
+        assertEquals(40, sampler.bucketOfMillis(10_249));
+        assertEquals(10_250_000_000L, sampler.bucketEnd(40));
+        assertEquals(10_250_000_000L, sampler.toSampledTime(10_100_000_000L));
+        assertEquals(10_000_000_000L, sampler.toSampledTime(10_000_000_000L));
+    }
+
+    @Test
+    public void sameAsChronoUnitSampling() throws Exception {
+        QuoteFactory factory = new QuoteFactory();
+        EpochSampler sampler = new EpochSampler(Duration.ofSeconds(1));
+        ZonedDateTime time = ZonedDateTime.of(2017, 1, 3, 10, 15, 30, 0, ZoneOffset.UTC);
+        for (int millis = 0; millis < 3000; millis += 7) {
+            ZonedDateTime tickTime = time.plus(millis, ChronoUnit.MILLIS);
+            long epochNanos = tickTime.toEpochSecond() * 1_000_000_000L + tickTime.getNano();
+            assertEquals(factory.toSampledTime(tickTime, ChronoUnit.SECONDS),
+                    EpochSampler.toDateTime(sampler.toSampledTime(epochNanos)));
+        }
+    }
+
+    @Test
+    public void quotes() throws Exception {
+        QuoteFactory factory = new QuoteFactory();
+        EpochSampler sampler = EpochSampler.ofMillis(500);
+        ZonedDateTime time = ZonedDateTime.of(2017, 1, 3, 10, 15, 30, 100_000_000, ZoneOffset.UTC);
+        Quote quote = factory.create(time, 1, BigDecimal.ONE, BigDecimal.TEN, 2, "A");
+        Quote later = factory.create(time.plus(500, ChronoUnit.MILLIS), 1, BigDecimal.ONE, BigDecimal.TEN, 2, "A");
+        FixedPointQuoteImpl fixedPoint = factory.createFixedPoint(quote, 0, 2);
+        assertTrue(quote.sameSampledTime(fixedPoint, sampler));
+        assertFalse(quote.sameSampledTime(later, sampler));
+
+        long bucket = sampler.bucketOf(quote);
+        Quote sample = factory.createSample(quote, sampler, bucket);
+        assertEquals(time.plus(400, ChronoUnit.MILLIS), sample.getLastModified());
+        assertEquals(bucket + 1, sampler.bucketOf(sample));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyBucket() throws Exception {
+        new EpochSampler(Duration.ZERO);
+    }
+}
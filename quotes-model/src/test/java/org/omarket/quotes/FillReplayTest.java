@@ -0,0 +1,55 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FillReplayTest {
+
+    @Test
+    public void columns() throws Exception {
+        FillReplay replay = new FillReplay(new int[]{100, -60, -60, 20}, new double[]{5., 6., 4., 3.}).replay();
+        assertArrayEquals(new int[]{100, 40, -20, 0}, replay.getPositions());
+        assertArrayEquals(new double[]{0., 60., -40., 20.}, replay.getRealizedPnls(), 1E-9);
+        assertArrayEquals(new double[]{500., 200., -80., 0.}, replay.getAcquisitionCosts(), 1E-9);
+        assertEquals(40., replay.getRealizedPnl(), 1E-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedColumns() throws Exception {
+        new FillReplay(new int[]{1, 2}, new double[]{1.});
+    }
+
+    @Test
+    public void parallelInstruments() throws Exception {
+        Random random = new Random(11);
+        List<FillReplay> replays = new ArrayList<>();
+        List<ProfitAndLossTracker> trackers = new ArrayList<>();
+        for (int instrument = 0; instrument < 8; instrument++) {
+            int[] quantities = new int[500];
+            double[] prices = new double[500];
+            ProfitAndLossTracker tracker = new ProfitAndLossTracker();
+            for (int fill = 0; fill < quantities.length; fill++) {
+                quantities[fill] = random.nextInt(21) - 10;
+                BigDecimal price = BigDecimal.valueOf(900 + random.nextInt(200), 2);
+                prices[fill] = price.doubleValue();
+                tracker.addFill(quantities[fill], price);
+            }
+            replays.add(new FillReplay(quantities, prices));
+            trackers.add(tracker);
+        }
+        FillReplay.replayAll(replays);
+        for (int instrument = 0; instrument < replays.size(); instrument++) {
+            FillReplay replay = replays.get(instrument);
+            ProfitAndLossTracker tracker = trackers.get(instrument);
+            assertEquals(tracker.getQuantity().intValue(), replay.getPositions()[replay.getFillsCount() - 1]);
+            assertEquals(tracker.getRealizedPnl(), replay.getRealizedPnl(), 1E-1);
+        }
+    }
+}
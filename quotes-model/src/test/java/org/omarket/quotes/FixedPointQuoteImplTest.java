@@ -0,0 +1,81 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing fixed-point quotes and their legacy view.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ContextConfiguration(classes = {FixedPointQuoteImplTest.FixedPointQuoteConfig.class})
+public class FixedPointQuoteImplTest {
+
+    @Autowired
+    private QuoteFactory quoteFactory;
+
+    @Configuration
+    @ComponentScan(basePackages = {"org.omarket.quotes"})
+    protected static class FixedPointQuoteConfig {
+    }
+
+    @Test
+    public void legacyView() throws Exception {
+        FixedPointQuoteImpl quote = quoteFactory.createFixedPoint(12087792, "12087792", 4);
+        assertFalse(quote.isValid());
+        assertNull(quote.getBestBidPrice());
+        assertNull(quote.getBestAskSize());
+
+        long epochNanos = ZonedDateTime.of(2017, 1, 3, 14, 30, 1, 123456789, ZoneOffset.UTC).toEpochSecond() * 1000000000L + 123456789;
+        assertSame(quote, quote.set(epochNanos, 100, 10812, 10813, 200));
+        assertTrue(quote.isValid());
+        assertEquals(new BigDecimal("1.0812"), quote.getBestBidPrice());
+        assertEquals(new BigDecimal("1.0813"), quote.getBestAskPrice());
+        assertEquals(Integer.valueOf(200), quote.getBestAskSize());
+        assertEquals(ZonedDateTime.of(2017, 1, 3, 14, 30, 1, 123456789, ZoneOffset.UTC), quote.getLastModified());
+        assertEquals("< 100 1.0812 / 1.0813 200 >", quote.toString().substring(0, 27));
+    }
+
+    @Test
+    public void conversions() throws Exception {
+        ZonedDateTime time = ZonedDateTime.of(2017, 1, 3, 14, 30, 1, 500000000, ZoneOffset.UTC);
+        Quote legacy = quoteFactory.create(time, 5, new BigDecimal("99.5"), new BigDecimal("99.75"), 7, "test");
+        FixedPointQuoteImpl quote = quoteFactory.createFixedPoint(legacy, 1, 2);
+        assertEquals(9950, quote.getBestBidMantissa());
+        assertEquals(9975, quote.getBestAskMantissa());
+        assertEquals(5, quote.getBidSize());
+        assertEquals(time, quote.getLastModified());
+
+        FixedPointQuoteImpl later = quoteFactory.createFixedPoint(1, "test", 2).copyFrom(quote);
+        later.setEpochNanos(quote.getEpochNanos() + 400000000L);
+        assertTrue(quote.sameSampledTime(later, ChronoUnit.SECONDS));
+        assertFalse(quote.sameSampledTime(later, ChronoUnit.MILLIS));
+        assertTrue(quote.sameSampledTime(legacy, ChronoUnit.MINUTES));
+
+        Quote copy = quoteFactory.createFrom(later);
+        assertEquals(new BigDecimal("99.75"), copy.getBestAskPrice());
+        assertEquals(time.plusNanos(400000000L), copy.getLastModified());
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void priceBeyondScale() throws Exception {
+        quoteFactory.createFixedPoint(1, "test", 2).toMantissa(new BigDecimal("1.005"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.omarket.quotes;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MarketDepthRowsTest {
+
+    private static BigDecimal price(String value) {
+        return new BigDecimal(value);
+    }
+
+    private static void assertLevel(String price, int quantity, Pair<BigDecimal, Integer> level) {
+        assertEquals(0, price(price).compareTo(level.getLeft()));
+        assertEquals(quantity, (int) level.getRight());
+    }
+
+    @Test
+    public void rowsFollowPositions() {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(price("0.01"));
+        orderBook.setIgnoreInconsistentBidAsk(true);
+        MarketDepthRows rows = new MarketDepthRows();
+        assertTrue(rows.apply(orderBook, 0, MarketDepthRows.INSERT, MarketDepthRows.SIDE_BID, price("10.00"), 5));
+        assertTrue(rows.apply(orderBook, 1, MarketDepthRows.INSERT, MarketDepthRows.SIDE_BID, price("9.99"), 7));
+        assertTrue(rows.apply(orderBook, 0, MarketDepthRows.INSERT, MarketDepthRows.SIDE_ASK, price("10.02"), 3));
+        // better bid inserted on top shifts the others
+        assertTrue(rows.apply(orderBook, 0, MarketDepthRows.INSERT, MarketDepthRows.SIDE_BID, price("10.01"), 1));
+        assertEquals(3, rows.getBidRowsCount());
+        assertLevel("10.01", 1, orderBook.getBidLevel(0));
+        assertLevel("9.99", 7, orderBook.getBidLevel(2));
+
+        assertTrue(rows.apply(orderBook, 1, MarketDepthRows.UPDATE, MarketDepthRows.SIDE_BID, price("10.00"), 8));
+        assertLevel("10.00", 8, orderBook.getBidLevel(1));
+        assertTrue(rows.apply(orderBook, 2, MarketDepthRows.UPDATE, MarketDepthRows.SIDE_BID, price("9.98"), 2));
+        assertLevel("9.98", 2, orderBook.getBidLevel(2));
+        assertEquals(3, orderBook.getBidLevelsCount());
+
+        assertTrue(rows.apply(orderBook, 0, MarketDepthRows.DELETE, MarketDepthRows.SIDE_BID, price("10.01"), 0));
+        assertLevel("10.00", 8, orderBook.getBidLevel(0));
+        assertFalse(rows.apply(orderBook, 5, MarketDepthRows.DELETE, MarketDepthRows.SIDE_BID, price("1"), 0));
+        assertFalse(rows.apply(orderBook, 3, MarketDepthRows.INSERT, MarketDepthRows.SIDE_ASK, price("10.05"), 1));
+    }
+
+    @Test
+    public void refusedOrdersKeepTheirRow() {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(price("0.01"));
+        orderBook.setIgnoreInconsistentBidAsk(true);
+        MarketDepthRows rows = new MarketDepthRows();
+        rows.apply(orderBook, 0, MarketDepthRows.INSERT, MarketDepthRows.SIDE_ASK, price("10.00"), 3);
+        // crosses the ask until the ask row is updated
+        rows.apply(orderBook, 0, MarketDepthRows.INSERT, MarketDepthRows.SIDE_BID, price("10.00"), 4);
+        assertNull(orderBook.getBestBid());
+        rows.apply(orderBook, 1, MarketDepthRows.INSERT, MarketDepthRows.SIDE_BID, price("9.99"), 2);
+        rows.apply(orderBook, 0, MarketDepthRows.UPDATE, MarketDepthRows.SIDE_ASK, price("10.01"), 3);
+        rows.apply(orderBook, 0, MarketDepthRows.UPDATE, MarketDepthRows.SIDE_BID, price("10.00"), 4);
+        assertLevel("10.00", 4, orderBook.getBidLevel(0));
+        assertLevel("9.99", 2, orderBook.getBidLevel(1));
+        rows.apply(orderBook, 0, MarketDepthRows.UPDATE, MarketDepthRows.SIDE_BID, price("10.00"), 0);
+        assertLevel("9.99", 2, orderBook.getBidLevel(0));
+        assertEquals(2, rows.getBidRowsCount());
+    }
+}
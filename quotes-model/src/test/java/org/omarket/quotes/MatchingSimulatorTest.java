@@ -0,0 +1,84 @@
+package org.omarket.quotes;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MatchingSimulatorTest {
+
+    private TickOrderBookImpl orderBook;
+    private ProfitAndLossTracker profitAndLossTracker;
+    private MatchingSimulator simulator;
+
+    @Before
+    public void setUp() throws Exception {
+        orderBook = new TickOrderBookImpl(new BigDecimal("0.5"));
+        orderBook.newBid(new BigDecimal("99.5"), 10, "B1");
+        orderBook.newBid(new BigDecimal("99"), 20, "B2");
+        orderBook.newAsk(new BigDecimal("100"), 5, "A1");
+        orderBook.newAsk(new BigDecimal("100"), 5, "A2");
+        orderBook.newAsk(new BigDecimal("100.5"), 10, "A3");
+        orderBook.newAsk(new BigDecimal("101"), 10, "A4");
+        profitAndLossTracker = new ProfitAndLossTracker();
+        simulator = new MatchingSimulator(orderBook, profitAndLossTracker);
+    }
+
+    @Test
+    public void marketOrderSweepsLevels() throws Exception {
+        ExecutionReport report = simulator.buy(OrderType.MARKET, 17, TickOrderBookImpl.NO_PRICE);
+        assertTrue(report.isFilled());
+        assertEquals(2, report.getLevelsCount());
+        assertEquals((10 * 100. + 7 * 100.5) / 17, report.getAveragePrice(), 1E-9);
+        assertEquals(new ImmutablePair<>(new BigDecimal("100.5"), 3), orderBook.getAskLevel(0));
+        assertEquals(-1, orderBook.getQuantityAhead("A1"));
+        assertEquals(0, orderBook.getQuantityAhead("A3"));
+        assertEquals(17, profitAndLossTracker.getQuantity().intValue());
+        assertEquals(10 * 100. + 7 * 100.5, profitAndLossTracker.getAcquisitionCost(), 1E-3);
+
+        report = simulator.sell(OrderType.MARKET, 50, TickOrderBookImpl.NO_PRICE);
+        assertEquals(30, report.getFilledQuantity());
+        assertEquals(20, report.getCancelledQuantity());
+        assertNull(orderBook.getBestBid());
+        assertEquals(-13, profitAndLossTracker.getQuantity().intValue());
+    }
+
+    @Test
+    public void limitOrderRestsRemainder() throws Exception {
+        ExecutionReport report = simulator.buy(OrderType.LIMIT, 15, orderBook.toTicks(new BigDecimal("100")));
+        assertEquals(10, report.getFilledQuantity());
+        assertFalse(report.isFilled());
+        assertEquals(0, report.getCancelledQuantity());
+        assertEquals(new BigDecimal("100"), orderBook.getBestBid());
+        assertEquals(5, orderBook.getBestBidQuantity());
+        assertEquals(0, orderBook.getQuantityAhead(report.getRestingOrderId()));
+        assertEquals(new BigDecimal("100.5"), orderBook.getBestAsk());
+    }
+
+    @Test
+    public void immediateOrCancel() throws Exception {
+        ExecutionReport report = simulator.sell(OrderType.IOC, 25, orderBook.toTicks(new BigDecimal("99.5")));
+        assertEquals(10, report.getFilledQuantity());
+        assertEquals(15, report.getCancelledQuantity());
+        assertEquals(TickOrderBookImpl.NO_ORDER_ID, report.getRestingOrderId());
+        assertEquals(new BigDecimal("99"), orderBook.getBestBid());
+        assertEquals(new BigDecimal("100"), orderBook.getBestAsk());
+
+        report = simulator.buy(OrderType.IOC, 3, orderBook.toTicks(new BigDecimal("99.5")));
+        assertEquals(0, report.getFilledQuantity());
+        assertTrue(Double.isNaN(report.getAveragePrice()));
+
+        report = simulator.buy(OrderType.IOC, 7, orderBook.toTicks(new BigDecimal("100")));
+        assertEquals(100., report.getAveragePrice(), 1E-9);
+        assertEquals(3, orderBook.getBestAskQuantity());
+        assertEquals(0, orderBook.getQuantityAhead("A2"));
+        assertEquals(-3, profitAndLossTracker.getQuantity().intValue());
+        assertEquals(-7 * 0.5, profitAndLossTracker.getRealizedPnl(), 1E-3);
+    }
+}
@@ -11,7 +11,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Christophe on 04/11/2016.
@@ -56,4 +63,25 @@ public class MutableQuoteImplTest {
         orderBook.updateBestAskPrice(10.139);
         assertEquals("unexpected order book", "< null 10 / 10 null >", orderBook.toString().substring(0, 21));
     }
+
+    @Test
+    public void virtualClock() throws Exception {
+        long start = ZonedDateTime.of(2017, 2, 1, 15, 0, 0, 0, ZoneOffset.UTC).toEpochSecond() * 1000000000L;
+        VirtualClock clock = new VirtualClock(start);
+        MutableQuote orderBook = quoteFactory.createMutable(new BigDecimal("0.25"), "test000", clock);
+        assertNull(orderBook.getLastModified());
+        assertTrue(orderBook.updateBestBidPrice(99.8));
+        assertTrue(orderBook.updateBestBidSize(3));
+        assertTrue(orderBook.updateBestAskPrice(100.));
+        clock.advanceTo(start + 1500000L);
+        assertFalse(orderBook.isValid());
+        assertTrue(orderBook.updateBestAskSize(5));
+        assertTrue(orderBook.isValid());
+
+        assertFalse(orderBook.updateBestBidPrice(99.9));
+        assertFalse(orderBook.updateBestAskSize(5));
+        assertEquals(new BigDecimal("99.75"), orderBook.getBestBidPrice());
+        assertEquals(Integer.valueOf(5), orderBook.getBestAskSize());
+        assertEquals(ZonedDateTime.of(2017, 2, 1, 15, 0, 0, 1500000, ZoneOffset.UTC), orderBook.getLastModified());
+    }
 }
@@ -0,0 +1,80 @@
+package org.omarket.quotes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookManagerTest {
+
+    private OrderBookManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        manager = new OrderBookManager(3, 16, 2, instrumentId -> new TickOrderBookImpl(new BigDecimal("0.01")));
+        manager.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.close();
+    }
+
+    private void awaitProcessed(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            long processed = 0;
+            for (ShardMetrics metrics : manager.getMetrics()) {
+                processed += metrics.getProcessedUpdates();
+            }
+            if (processed == expected) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("updates not processed in time");
+    }
+
+    @Test
+    public void updatesRoutedToShards() throws Exception {
+        int updates = 0;
+        for (int instrumentId = 1; instrumentId <= 10; instrumentId++) {
+            int ticks = 1000 * instrumentId;
+            for (int level = 0; level < 3; level++) {
+                int offset = level;
+                manager.submit(instrumentId, book -> book.newBid(BigDecimal.valueOf(ticks - offset, 2), 10 + offset));
+                manager.submit(instrumentId, book -> book.newAsk(BigDecimal.valueOf(ticks + 1 + offset, 2), 20 + offset));
+                updates += 2;
+            }
+        }
+        manager.submit(4, book -> {
+            throw new IllegalStateException("failing update");
+        });
+        updates++;
+        awaitProcessed(updates);
+
+        assertNull(manager.getSnapshot(11));
+        DepthSnapshot snapshot = manager.getSnapshot(4);
+        assertNotNull(snapshot);
+        assertEquals(2, snapshot.getBidLevels());
+        assertEquals(40., snapshot.getBidPrice(0), 1E-9);
+        assertEquals(39.99, snapshot.getBidPrice(1), 1E-9);
+        assertEquals(11, snapshot.getBidQuantity(1));
+        assertEquals(40.01, snapshot.getAskPrice(0), 1E-9);
+        assertEquals(20, snapshot.getAskQuantity(0));
+
+        long failed = 0;
+        for (ShardMetrics metrics : manager.getMetrics()) {
+            failed += metrics.getFailedUpdates();
+            assertTrue(metrics.getMaxQueueDepth() <= 16);
+        }
+        assertEquals(1, failed);
+        assertEquals(manager.shardOf(4), manager.shardOf(4));
+    }
+}
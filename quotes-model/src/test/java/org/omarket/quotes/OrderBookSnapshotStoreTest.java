@@ -0,0 +1,67 @@
+package org.omarket.quotes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookSnapshotStoreTest {
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("snapshots");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void nearestSnapshot() throws Exception {
+        OrderBookSnapshotStore store = new OrderBookSnapshotStore(storage, Duration.ofMinutes(30));
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.01"));
+        ZonedDateTime morning = ZonedDateTime.of(2017, 3, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+
+        orderBook.newBid(new BigDecimal("10.00"), 1, "A");
+        assertTrue(store.snapshotIfDue(orderBook, morning));
+        orderBook.newBid(new BigDecimal("10.01"), 2, "B");
+        assertFalse(store.snapshotIfDue(orderBook, morning.plusMinutes(10)));
+        assertTrue(store.snapshotIfDue(orderBook, morning.plusMinutes(30)));
+        orderBook.newAsk(new BigDecimal("10.05"), 3, "C");
+        assertTrue(store.snapshotIfDue(orderBook, morning.plusHours(5)));
+
+        assertNull(store.findNearest(morning.minusSeconds(1)));
+        assertEquals(morning.plusMinutes(30), store.findNearestTime(morning.plusHours(1)));
+        assertEquals(morning.plusHours(5), store.findNearestTime(morning.plusDays(1)));
+
+        TickOrderBookImpl restored = OrderBookSnapshotStore.read(store.findNearest(morning.plusHours(1)));
+        assertEquals(new BigDecimal("10.01"), restored.getBestBid());
+        assertNull(restored.getBestAsk());
+        assertEquals(2, restored.getBidLevelsCount());
+    }
+}
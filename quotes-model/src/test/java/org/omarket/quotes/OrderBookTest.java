@@ -12,11 +12,16 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by christophe on 23.09.16.
@@ -31,6 +36,10 @@ public class OrderBookTest {
     protected static class OrderBookTestConfig {
     }
 
+    protected OrderBook createOrderBook() {
+        return new OrderBookImpl();
+    }
+
     @Before
     public void setUp() throws Exception {
 
@@ -43,7 +52,7 @@ public class OrderBookTest {
 
     @Test
     public void basicOrderBookUsage() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
 
         orderBook.newBid(new BigDecimal("99"), 12);
         orderBook.newBid(new BigDecimal("98"), 10);
@@ -71,7 +80,7 @@ public class OrderBookTest {
 
     @Test(expected = java.lang.AssertionError.class)
     public void wrongBidEqualsAsk() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
 
         orderBook.newBid(new BigDecimal("99"), 12);
         orderBook.newBid(new BigDecimal("98"), 10);
@@ -84,7 +93,7 @@ public class OrderBookTest {
 
     @Test(expected = java.lang.AssertionError.class)
     public void wrongBidHigherThanAsk() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
 
         orderBook.newBid(new BigDecimal("99"), 12);
         orderBook.newBid(new BigDecimal("98"), 10);
@@ -97,7 +106,7 @@ public class OrderBookTest {
 
     @Test
     public void ignoreWrongBidHigherThanAsk() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
         orderBook.setIgnoreInconsistentBidAsk(true);
         orderBook.newBid(new BigDecimal("99"), 12);
         orderBook.newBid(new BigDecimal("98"), 10);
@@ -116,7 +125,7 @@ public class OrderBookTest {
 
     @Test
     public void deleteOrder() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
 
         String orderId1 = orderBook.newBid(new BigDecimal("99"), 12);
         String orderId2 = orderBook.newBid(new BigDecimal("98"), 10);
@@ -155,16 +164,126 @@ public class OrderBookTest {
         assertNull(orderBook.getAskLevel(0));
     }
 
+    @Test
+    public void depthSnapshot() throws Exception {
+        OrderBook orderBook = createOrderBook();
+
+        String orderId1 = orderBook.newBid(new BigDecimal("99"), 12);
+        orderBook.newBid(new BigDecimal("98"), 10);
+        orderBook.newBid(new BigDecimal("99"), 3);
+        orderBook.newBid(new BigDecimal("97"), 5);
+        orderBook.newAsk(new BigDecimal("101"), 21);
+        orderBook.newAsk(new BigDecimal("102.5"), 9);
+        orderBook.updateOrder(orderId1, 2);
+
+        double[] prices = new double[2];
+        long[] quantities = new long[2];
+        int[] orderCounts = new int[2];
+        assertEquals(3, orderBook.getBidLevelsCount());
+        assertEquals(2, orderBook.getBidDepth(prices, quantities, orderCounts));
+        assertArrayEquals(new double[]{99., 98.}, prices, 1E-9);
+        assertArrayEquals(new long[]{5, 10}, quantities);
+        assertArrayEquals(new int[]{2, 1}, orderCounts);
+
+        prices = new double[5];
+        quantities = new long[5];
+        orderCounts = new int[5];
+        assertEquals(2, orderBook.getAskLevelsCount());
+        assertEquals(2, orderBook.getAskDepth(prices, quantities, orderCounts));
+        assertEquals(102.5, prices[1], 1E-9);
+        assertEquals(9, quantities[1]);
+
+        orderBook.deleteOrder(orderId1);
+        assertEquals(new ImmutablePair<>(new BigDecimal(99), 3), orderBook.getBidLevel(0));
+        assertEquals(new ImmutablePair<>(new BigDecimal(97), 5), orderBook.getBidLevel(2));
+        assertNull(orderBook.getBidLevel(3));
+    }
+
+    @Test
+    public void queuePosition() throws Exception {
+        OrderBook orderBook = createOrderBook();
+
+        orderBook.newBid(new BigDecimal("50"), 10, "A");
+        orderBook.newBid(new BigDecimal("50"), 5, "B");
+        orderBook.newBid(new BigDecimal("50"), 7, "C");
+        orderBook.newBid(new BigDecimal("49"), 8, "D");
+        assertEquals(0, orderBook.getQuantityAhead("A"));
+        assertEquals(10, orderBook.getQuantityAhead("B"));
+        assertEquals(15, orderBook.getQuantityAhead("C"));
+        assertEquals(0, orderBook.getQuantityAhead("D"));
+        assertEquals(-1, orderBook.getQuantityAhead("unknown"));
+
+        orderBook.updateOrder("A", 4);
+        assertEquals(9, orderBook.getQuantityAhead("C"));
+        orderBook.updateOrder("B", 6);
+        assertEquals(4, orderBook.getQuantityAhead("C"));
+        assertEquals(11, orderBook.getQuantityAhead("B"));
+        orderBook.deleteOrder("A");
+        assertEquals(0, orderBook.getQuantityAhead("C"));
+        assertEquals(7, orderBook.getQuantityAhead("B"));
+        assertEquals(-1, orderBook.getQuantityAhead("A"));
+    }
+
+    @Test
+    public void depthEvents() throws Exception {
+        OrderBook orderBook = createOrderBook();
+        List<String> events = new ArrayList<>();
+        orderBook.addListener(new OrderBookListener() {
+            @Override
+            public void onLevelAdded(OrderBook orderBook, Side side, double price, long quantity, int orderCount) {
+                events.add("added " + side + " " + price + " " + quantity + " " + orderCount);
+            }
+
+            @Override
+            public void onLevelChanged(OrderBook orderBook, Side side, double price, long quantity, int orderCount) {
+                events.add("changed " + side + " " + price + " " + quantity + " " + orderCount);
+            }
+
+            @Override
+            public void onLevelRemoved(OrderBook orderBook, Side side, double price) {
+                events.add("removed " + side + " " + price);
+            }
+
+            @Override
+            public void onTopOfBookChanged(OrderBook orderBook) {
+                events.add("top " + orderBook.getBestBid() + " " + orderBook.getBestAsk());
+            }
+        });
+        assertTrue(events.isEmpty());
+
+        String orderId = orderBook.newBid(new BigDecimal("10"), 5);
+        orderBook.newBid(new BigDecimal("9"), 3);
+        orderBook.updateOrder(orderId, 4);
+        orderBook.deleteOrder(orderId);
+        assertEquals(Arrays.asList(
+                "added BID 10.0 5 1", "top 10 null",
+                "added BID 9.0 3 1",
+                "changed BID 10.0 4 1", "top 10 null",
+                "removed BID 10.0", "top 9 null"), events);
+
+        events.clear();
+        orderBook.applyBatch(book -> {
+            book.newAsk(new BigDecimal("12"), 1);
+            book.newAsk(new BigDecimal("11"), 2);
+            book.newBid(new BigDecimal("9"), 1);
+        });
+        assertEquals(Arrays.asList(
+                "added ASK 12.0 1 1",
+                "added ASK 11.0 2 1",
+                "changed BID 9.0 4 2",
+                "top 9 11"), events);
+    }
+
     @Test
     public void emptyBook() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
         assertNull(orderBook.getBidLevel(0));
         assertNull(orderBook.getAskLevel(0));
     }
 
     @Test
     public void orderBookUpdate() throws Exception {
-        OrderBook orderBook = new OrderBook();
+        OrderBook orderBook = createOrderBook();
         Date lastUpdate0 = orderBook.getLastUpdate();
         assertNull(lastUpdate0);
         orderBook.newBid(new BigDecimal("99"), 12, "myId1");
@@ -200,4 +319,27 @@ public class OrderBookTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void anonymousIdsNeverClashWithGivenIds() throws Exception {
+        OrderBook orderBook = createOrderBook();
+        orderBook.newBid(new BigDecimal("99"), 5, "1");
+        orderBook.newBid(new BigDecimal("99"), 5, "2");
+        String anonymous = orderBook.newBid(new BigDecimal("98"), 3);
+        String other = orderBook.newBid(new BigDecimal("98"), 4);
+        assertTrue(anonymous.startsWith(Order.ANONYMOUS_ID_PREFIX));
+        assertTrue(!anonymous.equals(other));
+        assertEquals(new ImmutablePair<>(new BigDecimal(99), 10), orderBook.getBidLevel(0));
+        assertEquals(new ImmutablePair<>(new BigDecimal(98), 7), orderBook.getBidLevel(1));
+        orderBook.deleteOrder("1");
+        orderBook.deleteOrder(anonymous);
+        assertEquals(new ImmutablePair<>(new BigDecimal(99), 5), orderBook.getBidLevel(0));
+        assertEquals(new ImmutablePair<>(new BigDecimal(98), 4), orderBook.getBidLevel(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateIdRejected() throws Exception {
+        OrderBook orderBook = createOrderBook();
+        orderBook.newBid(new BigDecimal("99"), 5, "A");
+        orderBook.newAsk(new BigDecimal("101"), 5, "A");
+    }
+}
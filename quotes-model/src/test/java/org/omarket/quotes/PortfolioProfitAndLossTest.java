@@ -0,0 +1,64 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PortfolioProfitAndLossTest {
+
+    @Test
+    public void incrementalNav() throws Exception {
+        PortfolioProfitAndLoss portfolio = new PortfolioProfitAndLoss(2, 1000.);
+        portfolio.addFill(0, 100, 5.);
+        portfolio.addFill(3, -10, 20.);
+        assertEquals(1000., portfolio.getNav(), 1E-9);
+
+        portfolio.mark(0, 5.5);
+        portfolio.mark(3, 19.);
+        assertEquals(50., portfolio.getUnrealizedPnl(0), 1E-9);
+        assertEquals(10., portfolio.getUnrealizedPnl(3), 1E-9);
+        assertEquals(1060., portfolio.getNav(), 1E-9);
+
+        portfolio.addFill(0, -60, 6.);
+        assertEquals(60., portfolio.getRealizedPnl(0), 1E-9);
+        assertEquals(40, portfolio.getQuantity(0));
+        assertEquals(5., portfolio.getUnitAcquisitionCost(0), 1E-9);
+        assertEquals(20., portfolio.getUnrealizedPnl(0), 1E-9);
+
+        portfolio.markAll(new double[]{6., Double.NaN, Double.NaN, 21.});
+        assertEquals(40., portfolio.getUnrealizedPnl(0), 1E-9);
+        assertEquals(-10., portfolio.getUnrealizedPnl(3), 1E-9);
+        assertEquals(1090., portfolio.getNav(), 1E-9);
+
+        portfolio.addFill(3, 15, 21.);
+        assertEquals(5, portfolio.getQuantity(3));
+        assertEquals(-10., portfolio.getRealizedPnl(3), 1E-9);
+        assertEquals(105., portfolio.getAcquisitionCost(3), 1E-9);
+        assertEquals(50., portfolio.getRealizedPnl(), 1E-9);
+        assertEquals(1090., portfolio.getNav(), 1E-9);
+    }
+
+    @Test
+    public void sameResultsAsSingleTracker() throws Exception {
+        Random random = new Random(7);
+        PortfolioProfitAndLoss portfolio = new PortfolioProfitAndLoss(4, 0.);
+        ProfitAndLossTracker tracker = new ProfitAndLossTracker();
+        for (int fill = 0; fill < 200; fill++) {
+            int quantity = random.nextInt(21) - 10;
+            BigDecimal price = BigDecimal.valueOf(900 + random.nextInt(200), 2);
+            tracker.addFill(quantity, price);
+            portfolio.addFill(2, quantity, price.doubleValue());
+        }
+        portfolio.mark(2, 10.);
+        assertEquals(tracker.getQuantity().longValue(), portfolio.getQuantity(2));
+        assertEquals(tracker.getRealizedPnl(), portfolio.getRealizedPnl(), 1E-1);
+        assertEquals(tracker.getTotalPnl(BigDecimal.TEN), portfolio.getTotalPnl(), 1E-1);
+
+        double nav = portfolio.getNav();
+        portfolio.resynchronize();
+        assertEquals(nav, portfolio.getNav(), 1E-9);
+    }
+}
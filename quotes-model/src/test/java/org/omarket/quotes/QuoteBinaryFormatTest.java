@@ -0,0 +1,68 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QuoteBinaryFormatTest {
+
+    private final QuoteFactory factory = new QuoteFactory();
+
+    @Test
+    public void roundTrip() throws Exception {
+        ZonedDateTime time = ZonedDateTime.of(2017, 3, 14, 15, 9, 26, 535897000, ZoneOffset.UTC);
+        Quote quote = factory.create(time, 12, new BigDecimal("1.0825"), new BigDecimal("1.08275"), 7, "12087817");
+        byte[] encoded = QuoteBinaryFormat.encode(quote);
+        assertEquals(QuoteBinaryFormat.FIXED_LENGTH + 8, encoded.length);
+
+        Quote decoded = QuoteBinaryFormat.decode(ByteBuffer.wrap(encoded));
+        assertEquals(time, decoded.getLastModified());
+        assertEquals(Integer.valueOf(12), decoded.getBestBidSize());
+        assertEquals(new BigDecimal("1.0825"), decoded.getBestBidPrice());
+        assertEquals(new BigDecimal("1.08275"), decoded.getBestAskPrice());
+        assertEquals(Integer.valueOf(7), decoded.getBestAskSize());
+        assertEquals("12087817", decoded.getProductCode());
+    }
+
+    @Test
+    public void missingValues() throws Exception {
+        Quote quote = factory.create(null, null, null, new BigDecimal("10.5"), 3, null);
+        Quote decoded = QuoteBinaryFormat.decode(ByteBuffer.wrap(QuoteBinaryFormat.encode(quote)));
+        assertNull(decoded.getLastModified());
+        assertNull(decoded.getBestBidSize());
+        assertNull(decoded.getBestBidPrice());
+        assertEquals(new BigDecimal("10.5"), decoded.getBestAskPrice());
+        assertNull(decoded.getProductCode());
+    }
+
+    @Test
+    public void fixedPoint() throws Exception {
+        FixedPointQuoteImpl quote = factory.createFixedPoint(4, "AAPL", 2);
+        quote.set(1489504166000000123L, 100, 13925, 13927, 200);
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.put(QuoteBinaryFormat.encode(quote));
+        buffer.put(QuoteBinaryFormat.encode(quote));
+        buffer.flip();
+        for (int index = 0; index < 2; index++) {
+            Quote decoded = QuoteBinaryFormat.decode(buffer);
+            assertEquals(new BigDecimal("139.25"), decoded.getBestBidPrice());
+            assertEquals(new BigDecimal("139.27"), decoded.getBestAskPrice());
+            assertEquals(Integer.valueOf(200), decoded.getBestAskSize());
+            assertEquals(123, decoded.getLastModified().getNano());
+            assertEquals("AAPL", decoded.getProductCode());
+        }
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated() throws Exception {
+        byte[] encoded = QuoteBinaryFormat.encode(factory.create(null, 1, BigDecimal.ONE, BigDecimal.TEN, 1, "X"));
+        QuoteBinaryFormat.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 1));
+    }
+}
@@ -0,0 +1,109 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SampledQuoteSeriesTest {
+
+    private final QuoteFactory factory = new QuoteFactory();
+
+    private Quote quote(int bid) {
+        return factory.create(null, 10, BigDecimal.valueOf(bid), BigDecimal.valueOf(bid + 1), 10, "A");
+    }
+
+    @Test
+    public void runs() throws Exception {
+        EpochSampler sampler = EpochSampler.ofMillis(250);
+        SampledQuoteSeries series = new SampledQuoteSeries(10, sampler);
+        Quote first = quote(100);
+        series.add(40, first);
+        series.add(41, quote(100));
+        series.fillTo(45);
+        assertEquals(6, series.size());
+        assertEquals(1, series.getRunsCount());
+        series.add(47, quote(101));
+        assertEquals(8, series.size());
+        assertEquals(2, series.getRunsCount());
+        assertSame(first, series.getValue(6));
+        assertEquals(BigDecimal.valueOf(101), series.getValue(7).getBestBidPrice());
+
+        Quote sample = series.get(2);
+        assertEquals(sampler.sampleTime(42), sample.getLastModified());
+        assertEquals(BigDecimal.valueOf(100), sample.getBestBidPrice());
+
+        series.fillTo(50);
+        assertEquals(10, series.size());
+        assertEquals(41, series.getFirstBucket());
+        assertEquals(50, series.getLastBucket());
+        series.fillTo(100);
+        assertEquals(10, series.size());
+        assertEquals(1, series.getRunsCount());
+        assertEquals(91, series.getFirstBucket());
+        assertEquals(BigDecimal.valueOf(101), series.getLast().getBestBidPrice());
+    }
+
+    @Test
+    public void runsAfterTrim() throws Exception {
+        SampledQuoteSeries series = new SampledQuoteSeries(5, EpochSampler.ofMillis(250));
+        Quote first = quote(100);
+        Quote second = quote(101);
+        series.add(10, first);
+        series.fillTo(12);
+        series.add(13, second);
+        series.fillTo(15);
+        assertEquals(2, series.getRunsCount());
+        assertSame(first, series.getRunValue(0));
+        assertEquals(11, series.getRunFirstBucket(0));
+        assertEquals(2, series.getRunLength(0));
+        assertSame(second, series.getRunValue(1));
+        assertEquals(13, series.getRunFirstBucket(1));
+        assertEquals(3, series.getRunLength(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bucketsInOrder() throws Exception {
+        SampledQuoteSeries series = new SampledQuoteSeries(10, EpochSampler.ofMillis(250));
+        series.add(4, quote(1));
+        series.add(4, quote(2));
+    }
+
+    @Test
+    public void sameAsDenseSeries() throws Exception {
+        Random random = new Random(3);
+        int capacity = 50;
+        SampledQuoteSeries series = new SampledQuoteSeries(capacity, EpochSampler.ofMillis(100));
+        List<Integer> dense = new ArrayList<>();
+        long bucket = 1000;
+        for (int step = 0; step < 2000; step++) {
+            int gap = random.nextInt(10) == 0 ? random.nextInt(80) : random.nextInt(3);
+            int bid = 100 + random.nextInt(3);
+            for (int fill = 0; fill < gap && !dense.isEmpty(); fill++) {
+                dense.add(dense.get(dense.size() - 1));
+            }
+            bucket += gap + 1;
+            if (random.nextBoolean()) {
+                series.add(bucket, quote(bid));
+                dense.add(bid);
+            } else if (!dense.isEmpty()) {
+                series.fillTo(bucket);
+                dense.add(dense.get(dense.size() - 1));
+            } else {
+                bucket -= gap + 1;
+                continue;
+            }
+            List<Integer> window = dense.subList(Math.max(0, dense.size() - capacity), dense.size());
+            assertEquals(window.size(), series.size());
+            assertEquals(bucket, series.getLastBucket());
+            for (int index = 0; index < window.size(); index++) {
+                assertEquals(window.get(index).intValue(), series.getValue(index).getBestBidPrice().intValue());
+            }
+        }
+    }
+}
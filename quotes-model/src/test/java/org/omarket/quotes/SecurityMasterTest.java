@@ -0,0 +1,47 @@
+package org.omarket.quotes;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SecurityMasterTest {
+
+    @Test
+    public void lookups() throws Exception {
+        Security eurChf = new Security("12087817", "EUR.CHF", "CHF", null, new String("IDEALPRO"), "CASH", 0.00005, "1", "European Monetary Union Euro");
+        Security usdChf = new Security("12087820", "USD.CHF", "CHF", null, new String("IDEALPRO"), "CASH", 0.00005, "1", "US Dollar");
+        Security gold = new Security("188989072", "GCG7", "USD", "NYMEX", "NYMEX", "FUT", 0.1, "100", "Gold");
+        SecurityMaster master = SecurityMaster.of(Arrays.asList(eurChf, usdChf, gold), 3L);
+
+        assertEquals(3, master.size());
+        assertEquals(3L, master.getVersion());
+        assertSame(gold, master.get(188989072));
+        assertSame(eurChf, master.get("12087817"));
+        assertNull(master.get(1));
+        assertNull(master.get("not a contract"));
+
+        int index = master.indexOf(188989072);
+        assertEquals(188989072, master.getConIdAt(index));
+        assertEquals(new BigDecimal("0.1"), master.getMinTickAt(index));
+        assertEquals(0.1, master.getMinTickValueAt(index), 1E-12);
+        assertEquals(1, master.getTickScaleAt(index));
+        assertEquals(100, master.getPriceMagnifierAt(index));
+        assertEquals(5, master.getTickScaleAt(master.indexOf(12087817)));
+        assertSame(master.getExchangeAt(master.indexOf(12087817)), master.getExchangeAt(master.indexOf(12087820)));
+        assertSame(eurChf.getMinTick(), eurChf.getMinTick());
+        assertTrue(SecurityMaster.EMPTY.isEmpty());
+        assertEquals(-1, SecurityMaster.EMPTY.indexOf(12087817));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateContract() throws Exception {
+        Security security = new Security("42", "A", "USD", "ARCA", "SMART", "STK", 0.01, "1", "A");
+        SecurityMaster.of(Arrays.asList(security, security), 1L);
+    }
+}
@@ -0,0 +1,223 @@
+package org.omarket.quotes;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs the order book scenarios against the tick ladder implementation.
+ */
+public class TickOrderBookImplTest extends OrderBookTest {
+
+    @Override
+    protected OrderBook createOrderBook() {
+        return new TickOrderBookImpl(new BigDecimal("0.01"), 4, 2);
+    }
+
+    @Test
+    public void topOfBookInTicks() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.05"));
+        assertEquals(TickOrderBookImpl.NO_PRICE, orderBook.getBestBidTicks());
+        assertEquals(TickOrderBookImpl.NO_PRICE, orderBook.getBestAskTicks());
+
+        orderBook.newBid(new BigDecimal("10.05"), 7);
+        orderBook.newBid(new BigDecimal("10.10"), 3);
+        orderBook.newAsk(new BigDecimal("10.20"), 4);
+        orderBook.newAskTicks(205, 6, "ask-1");
+
+        assertEquals(202, orderBook.getBestBidTicks());
+        assertEquals(3, orderBook.getBestBidQuantity());
+        assertEquals(204, orderBook.getBestAskTicks());
+        assertEquals(4, orderBook.getBestAskQuantity());
+        assertEquals(new BigDecimal("10.1"), orderBook.getBestBid());
+        assertEquals(new ImmutablePair<>(new BigDecimal("10.25"), 6), orderBook.getAskLevel(1));
+    }
+
+    @Test
+    public void ladderGrowsAroundExistingLevels() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(BigDecimal.ONE, 4, 2);
+        String bidId = orderBook.newBid(new BigDecimal("100"), 1);
+        orderBook.newAsk(new BigDecimal("101"), 2);
+        orderBook.newBid(new BigDecimal("20"), 3);
+        orderBook.newAsk(new BigDecimal("500"), 4);
+
+        assertEquals(new ImmutablePair<>(new BigDecimal(20), 3), orderBook.getBidLevel(1));
+        assertEquals(new ImmutablePair<>(new BigDecimal(500), 4), orderBook.getAskLevel(1));
+
+        orderBook.deleteOrder(bidId);
+        assertEquals(new BigDecimal(20), orderBook.getBestBid());
+        assertNull(orderBook.getBidLevel(1));
+        assertEquals(2, orderBook.getAskOrderLevels().size());
+    }
+
+    @Test
+    public void trackedQueuePosition() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.01"), 4, 2);
+        orderBook.newAsk(new BigDecimal("20.00"), 10, "A");
+        orderBook.newAsk(new BigDecimal("20.00"), 5, "B");
+        orderBook.newAsk(new BigDecimal("20.00"), 7, "C");
+        orderBook.newAsk(new BigDecimal("20.00"), 2, "D");
+        assertEquals(15, orderBook.trackQueuePosition("C"));
+        assertEquals(22, orderBook.trackQueuePosition("D"));
+        assertEquals(-1, orderBook.trackQueuePosition("unknown"));
+
+        orderBook.updateOrder("A", 3);
+        assertEquals(8, orderBook.getQuantityAhead("C"));
+        assertEquals(15, orderBook.getQuantityAhead("D"));
+        orderBook.deleteOrder("B");
+        assertEquals(3, orderBook.getQuantityAhead("C"));
+        orderBook.updateOrder("C", 9);
+        assertEquals(3, orderBook.getQuantityAhead("D"));
+        assertEquals(5, orderBook.getQuantityAhead("C"));
+        orderBook.newAsk(new BigDecimal("19.50"), 1, "E");
+        orderBook.newAsk(new BigDecimal("20.50"), 1, "F");
+        orderBook.deleteOrder("A");
+        assertEquals(0, orderBook.getQuantityAhead("D"));
+        assertEquals(2, orderBook.getQuantityAhead("C"));
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.25"), 4, 2);
+        orderBook.newBid(new BigDecimal("99.75"), 10, "A");
+        orderBook.newBid(new BigDecimal("99.75"), 5, "B");
+        orderBook.newBid(new BigDecimal("97"), 8, "C");
+        orderBook.newAsk(new BigDecimal("100.5"), 4, "D");
+        orderBook.newBid(new BigDecimal("99.75"), 7, "E");
+        orderBook.updateOrder("A", 12);
+        orderBook.deleteOrder("B");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        orderBook.writeSnapshot(new DataOutputStream(bytes));
+        TickOrderBookImpl restored = TickOrderBookImpl.readSnapshot(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(orderBook.getMinTick(), restored.getMinTick());
+        assertEquals(orderBook.getLastUpdate(), restored.getLastUpdate());
+        assertEquals(orderBook.getBidOrderLevels(), restored.getBidOrderLevels());
+        assertEquals(orderBook.getAskOrderLevels(), restored.getAskOrderLevels());
+        assertEquals(new ImmutablePair<>(new BigDecimal(97), 8), restored.getBidLevel(1));
+        assertEquals(0, restored.getQuantityAhead("E"));
+        assertEquals(7, restored.getQuantityAhead("A"));
+
+        restored.deleteOrder("E");
+        restored.newAsk(new BigDecimal("100.25"), 1, "F");
+        assertEquals(new BigDecimal("100.25"), restored.getBestAsk());
+        assertEquals(2, restored.getAskLevelsCount());
+        assertEquals(12, restored.getBestBidQuantity());
+    }
+
+    @Test
+    public void restoredBookNumbersNewOrdersAfterRestoredOnes() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.01"), 4, 2);
+        assertEquals("#1", orderBook.newBid(new BigDecimal("10"), 5));
+        assertEquals(2, orderBook.newBidTicks(999, 3));
+        orderBook.newBid(new BigDecimal("9.98"), 1, "A");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        orderBook.writeSnapshot(new DataOutputStream(bytes));
+        TickOrderBookImpl restored = TickOrderBookImpl.readSnapshot(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals("#3", restored.newBid(new BigDecimal("10"), 4));
+        assertEquals(4, restored.newBidTicks(999, 2));
+        assertEquals(9, restored.getBestBidQuantity());
+        assertEquals(5, restored.getQuantityAhead("#3"));
+        assertEquals(3, restored.getQuantityAhead(4L));
+    }
+
+    @Test
+    public void emptySnapshot() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new TickOrderBookImpl(BigDecimal.ONE).writeSnapshot(new DataOutputStream(bytes));
+        TickOrderBookImpl restored = TickOrderBookImpl.readSnapshot(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertNull(restored.getBestBid());
+        assertNull(restored.getLastUpdate());
+        restored.newBid(new BigDecimal("5"), 1);
+        assertEquals(new BigDecimal("5"), restored.getBestBid());
+    }
+
+    @Test
+    public void trackedOrdersOnlyMoveForOrdersInFront() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.01"), 4, 2);
+        for (int order = 0; order < 100; order++) {
+            orderBook.newBid(new BigDecimal("10.00"), 1, "O" + order);
+        }
+        assertEquals(10, orderBook.trackQueuePosition("O10"));
+        assertEquals(50, orderBook.trackQueuePosition("O50"));
+        orderBook.deleteOrder("O70");
+        orderBook.updateOrder("O60", 1);
+        assertEquals(10, orderBook.getQuantityAhead("O10"));
+        assertEquals(50, orderBook.getQuantityAhead("O50"));
+        orderBook.deleteOrder("O20");
+        assertEquals(10, orderBook.getQuantityAhead("O10"));
+        assertEquals(49, orderBook.getQuantityAhead("O50"));
+        // back of the queue when increased: O50 moves forward, O10 does not
+        orderBook.updateOrder("O10", 2);
+        assertEquals(97, orderBook.getQuantityAhead("O10"));
+        assertEquals(48, orderBook.getQuantityAhead("O50"));
+        orderBook.deleteOrder("O50");
+        orderBook.deleteOrder("O0");
+        assertEquals(95, orderBook.getQuantityAhead("O10"));
+        // freed slots are reused by untracked orders
+        orderBook.newBid(new BigDecimal("10.00"), 3, "N");
+        orderBook.deleteOrder("O1");
+        assertEquals(94, orderBook.getQuantityAhead("O10"));
+        assertEquals(96, orderBook.getQuantityAhead("N"));
+    }
+
+    @Test
+    public void numericOrderIds() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.01"), 4, 2, new SequenceOrderIdGenerator(100));
+        long first = orderBook.newBidTicks(1000, 5);
+        long second = orderBook.newBidTicks(1000, 3);
+        orderBook.newAskTicks(1002, 4, 7L);
+        orderBook.newAsk(new BigDecimal("10.02"), 1, "7");
+        assertEquals(100, first);
+        assertEquals(101, second);
+        assertEquals("#102", orderBook.newBid(new BigDecimal("9.99"), 2));
+        assertEquals(5, orderBook.getQuantityAhead(second));
+        assertEquals(4, orderBook.getQuantityAhead("7"));
+
+        orderBook.updateOrder(first, 2);
+        assertEquals(2, orderBook.trackQueuePosition(second));
+        orderBook.deleteOrder(7L);
+        assertEquals(0, orderBook.getQuantityAhead("7"));
+        assertEquals(-1, orderBook.getQuantityAhead(7L));
+        orderBook.deleteOrder(first);
+        assertEquals(0, orderBook.getQuantityAhead(second));
+        assertEquals(new ImmutablePair<>(new BigDecimal("10"), 3), orderBook.getBidLevel(0));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        orderBook.writeSnapshot(new DataOutputStream(bytes));
+        TickOrderBookImpl restored = TickOrderBookImpl.readSnapshot(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        restored.updateOrder(second, 1);
+        restored.deleteOrder("#102");
+        assertEquals(1, restored.getBestBidQuantity());
+        assertEquals(1, restored.getBidLevelsCount());
+        assertEquals(1, restored.getBestAskQuantity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateNumericOrderId() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(BigDecimal.ONE);
+        orderBook.newBidTicks(10, 1, 1L);
+        orderBook.newBidTicks(9, 1, 1L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void priceOffTickGrid() throws Exception {
+        TickOrderBookImpl orderBook = new TickOrderBookImpl(new BigDecimal("0.05"));
+        orderBook.newBid(new BigDecimal("10.02"), 1);
+    }
+}
@@ -0,0 +1,89 @@
+package org.omarket.quotes.ticks;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of {@link CsvTickParser} with the per-row parsing of the historical replay: splitting
+ * the line, prepending the hour to the time, then {@code LocalDateTime.parse}, {@code Integer.valueOf} and
+ * {@code new BigDecimal}. Run with {@code java -cp <test classpath> org.omarket.quotes.ticks.CsvTickParserBenchmark}.
+ */
+public class CsvTickParserBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    private static final int LINES = 200000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        byte[] file = createFile();
+        long hourStart = LocalDateTime.of(2018, 5, 2, 13, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long checksum = parseBytes(file, hourStart);
+            long bytesNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            checksum -= parseStrings(file);
+            long stringsNanos = System.nanoTime() - start;
+            if (checksum != 0) {
+                throw new IllegalStateException("parsers disagree");
+            }
+            System.out.println(String.format("round %d: bytes %.1f Mlines/s, strings %.1f Mlines/s", round,
+                    linesPerMicro(bytesNanos), linesPerMicro(stringsNanos)));
+        }
+    }
+
+    private static double linesPerMicro(long nanos) {
+        return LINES / (nanos / 1000.);
+    }
+
+    private static byte[] createFile() {
+        Random random = new Random(5);
+        StringBuilder builder = new StringBuilder();
+        long bid = 10125;
+        for (int line = 0; line < LINES; line++) {
+            long millis = TimeUnit.HOURS.toMillis(1) * line / LINES;
+            bid += random.nextInt(3) - 1;
+            builder.append(String.format("%02d:%02d.%03d", millis / 60000, millis / 1000 % 60, millis % 1000))
+                    .append(',').append(random.nextInt(1000))
+                    .append(',').append(BigDecimal.valueOf(bid, 2))
+                    .append(',').append(BigDecimal.valueOf(bid + 1, 2))
+                    .append(',').append(random.nextInt(1000)).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long parseBytes(byte[] file, long hourStart) {
+        ByteBuffer content = ByteBuffer.wrap(file);
+        CsvTickParser parser = new CsvTickParser(content, hourStart, CsvTickParser.scanScale(content));
+        long checksum = 0;
+        while (parser.next()) {
+            checksum += parser.getEpochMillis() + parser.getBidSize() + parser.getBidMantissa()
+                    + parser.getAskMantissa() + parser.getAskSize();
+        }
+        return checksum;
+    }
+
+    private static long parseStrings(byte[] file) {
+        String[] lines = new String(file, StandardCharsets.US_ASCII).split("\n");
+        long checksum = 0;
+        for (String line : lines) {
+            String[] fields = line.split(",");
+            fields[0] = "20180502 13" + ":" + fields[0];
+            ZonedDateTime time = ZonedDateTime.of(LocalDateTime.parse(fields[0], DATE_FORMAT), ZoneOffset.UTC);
+            Integer bidSize = Integer.valueOf(fields[1]);
+            BigDecimal bid = new BigDecimal(fields[2]);
+            BigDecimal ask = new BigDecimal(fields[3]);
+            Integer askSize = Integer.valueOf(fields[4]);
+            checksum += time.toInstant().toEpochMilli() + bidSize + bid.unscaledValue().longValue()
+                    + ask.unscaledValue().longValue() + askSize;
+        }
+        return checksum;
+    }
+}
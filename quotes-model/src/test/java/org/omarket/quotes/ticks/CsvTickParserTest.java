@@ -0,0 +1,96 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CsvTickParserTest {
+
+    private static final long HOUR = ZonedDateTime.of(2018, 5, 2, 13, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    private static ByteBuffer content(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void lines() throws Exception {
+        ByteBuffer content = content("00:01.250,100,101.25,101.3,200\r\n\n59:59.999,5,101,101.375,7");
+        assertEquals(3, CsvTickParser.scanScale(content));
+        CsvTickParser parser = new CsvTickParser(content, HOUR, 3);
+        assertTrue(parser.next());
+        assertEquals(HOUR + 1250, parser.getEpochMillis());
+        assertEquals(100, parser.getBidSize());
+        assertEquals(101250L, parser.getBidMantissa());
+        assertEquals(101300L, parser.getAskMantissa());
+        assertEquals(200, parser.getAskSize());
+        assertTrue(parser.next());
+        assertEquals(3, parser.getLineNumber());
+        assertEquals(HOUR + 3599999, parser.getEpochMillis());
+        assertEquals(101000L, parser.getBidMantissa());
+        assertEquals(101375L, parser.getAskMantissa());
+        assertEquals(7, parser.getAskSize());
+        assertFalse(parser.next());
+        assertEquals(0, content.position());
+    }
+
+    @Test
+    public void exponents() throws Exception {
+        ByteBuffer content = content("00:01.250,100,1E+1,1.234E+4,200\n00:02.000,1,1.0E-7,12.5e0,3");
+        assertEquals(8, CsvTickParser.scanScale(content));
+        CsvTickParser parser = new CsvTickParser(content, HOUR, 8);
+        assertTrue(parser.next());
+        assertEquals(1000000000L, parser.getBidMantissa());
+        assertEquals(1234000000000L, parser.getAskMantissa());
+        assertEquals(200, parser.getAskSize());
+        assertTrue(parser.next());
+        assertEquals(10L, parser.getBidMantissa());
+        assertEquals(1250000000L, parser.getAskMantissa());
+        assertFalse(parser.next());
+    }
+
+    @Test
+    public void exponentsWithoutDecimals() throws Exception {
+        ByteBuffer content = content("00:01.250,100,5E+2,5.01E+2,200");
+        assertEquals(0, CsvTickParser.scanScale(content));
+        CsvTickParser parser = new CsvTickParser(content, HOUR, 0);
+        assertTrue(parser.next());
+        assertEquals(500L, parser.getBidMantissa());
+        assertEquals(501L, parser.getAskMantissa());
+    }
+
+    @Test
+    public void hourFromPath() throws Exception {
+        assertEquals(HOUR, CsvTickParser.hourStartMillis(Paths.get("data", "ticks", "channel.1", "20180502", "13")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notAnHour() throws Exception {
+        CsvTickParser.hourStartMillis(Paths.get("data", "ticks", "channel.1", "13"));
+    }
+
+    @Test
+    public void malformed() throws Exception {
+        String[] lines = {"00:01.250,100,101.25,101.3", "0:01.250,100,101.25,101.3,200", "00:01.250,null,101.25,101.3,200",
+                "00:01.250,100,101.255,101.3,200", "00:01.250,100,101.25,101.3,200x", "00:01.250,100,,101.3,200",
+                "00:01.250,100,1E,101.3,200", "00:01.250,100,1E+,101.3,200", "00:01.250,100,1E-3,101.3,200"};
+        for (String line : lines) {
+            CsvTickParser parser = new CsvTickParser(content("00:00.000,1,1,1,1\n" + line), HOUR, 2);
+            assertTrue(parser.next());
+            try {
+                parser.next();
+                fail("accepted " + line);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+            }
+        }
+    }
+}
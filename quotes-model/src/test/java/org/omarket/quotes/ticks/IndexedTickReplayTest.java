@@ -0,0 +1,158 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedTickReplayTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long H13 = ZonedDateTime.of(2018, 5, 2, 13, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("indexed");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    private static String line(long epochMillis) {
+        long inHour = epochMillis % HOUR;
+        return String.format("%02d:%02d.%03d,1,%d.25,%d.5,2", inHour / 60000, inHour / 1000 % 60, inHour % 1000,
+                epochMillis / 1000 % 1000, epochMillis / 1000 % 1000);
+    }
+
+    /**
+     * Records one tick per second over [from, to[.
+     */
+    private void record(RollingTickWriter writer, long from, long to) throws IOException {
+        for (long time = from; time < to; time += 1000) {
+            writer.write(TimeUnit.MILLISECONDS.toNanos(time), line(time));
+        }
+    }
+
+    private static int count(IndexedTickReplay replay, long from, long to) throws IOException {
+        int count = 0;
+        long previous = Long.MIN_VALUE;
+        while (replay.next()) {
+            assertTrue(replay.getEpochMillis() >= from && replay.getEpochMillis() < to);
+            assertTrue(replay.getEpochMillis() > previous);
+            assertEquals(replay.getEpochMillis() / 1000 % 1000 * 100 + 25, replay.getBidMantissa());
+            previous = replay.getEpochMillis();
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void indexWrittenByRecorder() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0, 100)) {
+            record(writer, H13, H13 + 3 * HOUR);
+        }
+        TickArchiveIndex index = TickArchiveIndex.load(storage);
+        assertEquals(3, index.find(H13, H13 + 3 * HOUR).size());
+        TickSegment segment = index.getSegments(H13).get(0);
+        assertEquals(3600, segment.getRecordCount());
+        assertEquals(H13, segment.getFirstMillis());
+        assertEquals(H13 + HOUR - 1000, segment.getLastMillis());
+        assertEquals(0L, segment.getStartOffset());
+        assertEquals(Files.size(TickArchiveIndex.hourPath(storage, H13)), segment.getEndOffset());
+        assertEquals(1, index.find(H13 + HOUR - 1000, H13 + HOUR).size());
+        assertEquals(Long.valueOf(H13 + 2 * HOUR), index.getLastHour());
+    }
+
+    @Test
+    public void windowSeeksToSparseOffset() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0, 100)) {
+            record(writer, H13, H13 + 3 * HOUR);
+        }
+        long from = H13 + HOUR / 2 + 50;
+        long to = H13 + HOUR + HOUR / 4;
+        IndexedTickReplay replay = new IndexedTickReplay(storage, from, to, H13 + 4 * HOUR);
+        assertEquals(1799 + 900, count(replay, from, to));
+        assertTrue(replay.getSkippedRecords() <= 200);
+        long hourSize = Files.size(TickArchiveIndex.hourPath(storage, H13));
+        assertTrue(replay.getParsedBytes() < hourSize);
+    }
+
+    @Test
+    public void unindexedBytesAreReplayed() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0, 100)) {
+            record(writer, H13, H13 + HOUR / 2);
+        }
+        // legacy hour, recorded before the index
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0)) {
+            record(writer, H13 - HOUR, H13);
+        }
+        // session still recording, with a partially written line
+        RollingTickWriter recording = new RollingTickWriter(storage, 0, 0, 100);
+        record(recording, H13 + HOUR / 2, H13 + HOUR / 2 + 600000);
+        recording.flush();
+        Files.write(TickArchiveIndex.hourPath(storage, H13), "40:00.000,1,2".getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.APPEND);
+        IndexedTickReplay replay = new IndexedTickReplay(storage, H13 - HOUR, H13 + HOUR, H13 + HOUR / 2 + 700000);
+        assertEquals(3600 + 1800 + 600, count(replay, H13 - HOUR, H13 + HOUR));
+    }
+
+    @Test
+    public void bytesOfUnclosedSessionAreReplayed() throws Exception {
+        // session stopped without closing its file, hence without indexing its segment
+        RollingTickWriter crashed = new RollingTickWriter(storage, 0, 0, 100);
+        record(crashed, H13, H13 + 2000);
+        crashed.flush();
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0, 100)) {
+            record(writer, H13 + 2000, H13 + 3000);
+        }
+        TickArchiveIndex index = TickArchiveIndex.load(storage);
+        assertEquals(1, index.getSegments(H13).size());
+        assertTrue(index.getSegments(H13).get(0).getStartOffset() > 0);
+        IndexedTickReplay replay = new IndexedTickReplay(storage, H13, H13 + HOUR, H13 + 2 * HOUR);
+        assertEquals(3, count(replay, H13, H13 + HOUR));
+    }
+
+    @Test
+    public void truncatedIndexEntryIgnored() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 0, 0, 100)) {
+            record(writer, H13, H13 + 2 * HOUR);
+        }
+        Path indexPath = storage.resolve(TickArchiveIndex.FILE_NAME);
+        byte[] content = Files.readAllBytes(indexPath);
+        Files.write(indexPath, Arrays.copyOf(content, content.length - 5));
+        TickArchiveIndex index = TickArchiveIndex.load(storage);
+        List<TickSegment> segments = index.find(H13, H13 + 2 * HOUR);
+        assertEquals(1, segments.size());
+        assertFalse(index.getSegments(H13).isEmpty());
+        IndexedTickReplay replay = new IndexedTickReplay(storage, H13, H13 + 2 * HOUR, H13 + 3 * HOUR);
+        assertEquals(7200, count(replay, H13, H13 + 2 * HOUR));
+    }
+}
@@ -0,0 +1,40 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverAllLatencies() {
+        long previousUpper = -1;
+        for (int bucket = 0; bucket < 248; bucket++) {
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(upper > previousUpper);
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousUpper + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+            previousUpper = upper;
+        }
+        assertEquals(Long.MAX_VALUE, previousUpper);
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(50));
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500., histogram.getMeanNanos(), 1e-6);
+        long median = histogram.getPercentileNanos(50);
+        assertTrue(median >= 500000 && median < 500000 * 1.25);
+        long p99 = histogram.getPercentileNanos(99);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+    }
+}
@@ -0,0 +1,112 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omarket.quotes.FixedPointQuote;
+import org.omarket.quotes.util.MappedBuffers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MappedTickSourceTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long BASE = 1525266000000L;
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("mapped");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    private Path write(String name, int instrumentId, int tickScale, long base, int count) throws IOException {
+        Path file = storage.resolve(name);
+        try (TickFileWriter writer = new TickFileWriter(file, instrumentId, tickScale, base)) {
+            for (int index = 0; index < count; index++) {
+                writer.append(base + index * 10L, 1000 + index, index, 1001 + index, 2 * index);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void replaysFilesInOrder() throws Exception {
+        Path first = write("13.tick", 7, 2, BASE, 1000);
+        Path empty = write("14.tick", 7, 2, BASE + HOUR, 0);
+        Path third = write("15.tick", 7, 3, BASE + 2 * HOUR, 500);
+        try (MappedTickSource source = new MappedTickSource(Arrays.asList(first, empty, third), 7, "7", true)) {
+            FixedPointQuote previous = null;
+            for (int index = 0; index < 1000; index++) {
+                FixedPointQuote quote = source.next();
+                if (previous != null) {
+                    assertSame(previous, quote);
+                }
+                previous = quote;
+                assertEquals(TimeUnit.MILLISECONDS.toNanos(BASE + index * 10L), quote.getEpochNanos());
+                assertEquals(1000 + index, quote.getBestBidMantissa());
+                assertEquals(1001 + index, quote.getBestAskMantissa());
+                assertEquals(index, quote.getBidSize());
+                assertEquals(2 * index, quote.getAskSize());
+                assertEquals(7, quote.getInstrumentId());
+            }
+            FixedPointQuote quote = source.next();
+            assertEquals(3, quote.getScale());
+            assertEquals(new BigDecimal("1.000"), quote.getBestBidPrice());
+            for (int index = 1; index < 500; index++) {
+                assertEquals(TimeUnit.MILLISECONDS.toNanos(BASE + 2 * HOUR + index * 10L), source.next().getEpochNanos());
+            }
+            assertNull(source.next());
+            assertNull(source.next());
+            assertEquals(Files.size(first) + Files.size(empty) + Files.size(third), source.getMappedBytes());
+        }
+        // files can be replaced once unmapped, which some platforms refuse while a mapping is alive
+        if (MappedBuffers.isSupported()) {
+            Files.delete(first);
+            write("13.tick", 7, 2, BASE, 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherInstrument() throws Exception {
+        Path file = write("13.tick", 8, 2, BASE, 10);
+        try (MappedTickSource source = new MappedTickSource(Collections.singletonList(file), 7, "7", false)) {
+            source.next();
+        }
+    }
+
+    @Test
+    public void closedMidFile() throws Exception {
+        Path file = write("13.tick", 7, 2, BASE, 10);
+        MappedTickSource source = new MappedTickSource(Collections.singletonList(file), 7, "7", false);
+        assertTrue(source.next() != null);
+        source.close();
+        assertNull(source.next());
+    }
+}
@@ -0,0 +1,37 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RecorderMetricsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void ratesPerInstrument() {
+        RecorderMetrics metrics = new RecorderMetrics();
+        RecorderMetrics.Instrument first = metrics.getInstrument(1);
+        RecorderMetrics.Instrument second = metrics.getInstrument(2);
+        assertSame(first, metrics.getInstrument(1));
+        for (int tick = 0; tick < 10; tick++) {
+            first.onPublished();
+        }
+        metrics.sample(100 * SECOND);
+        assertEquals(0., first.getTicksPerSecond(), 1e-9);
+        for (int tick = 0; tick < 20; tick++) {
+            first.onPublished();
+        }
+        second.onPublished();
+        metrics.sample(102 * SECOND);
+        assertEquals(10., first.getTicksPerSecond(), 1e-9);
+        assertEquals(.5, second.getTicksPerSecond(), 1e-9);
+        metrics.sample(104 * SECOND);
+        assertEquals(0., first.getTicksPerSecond(), 1e-9);
+        assertEquals(30, first.getPublished());
+        assertEquals(2, metrics.getInstruments().size());
+    }
+}
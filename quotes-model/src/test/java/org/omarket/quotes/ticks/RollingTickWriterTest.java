@@ -0,0 +1,173 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RollingTickWriterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("ticks");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    private static long epochNanos(String time) {
+        Instant instant = Instant.parse(time);
+        return instant.getEpochSecond() * SECOND + instant.getNano();
+    }
+
+    @Test
+    public void hourlyFiles() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 0)) {
+            writer.write(epochNanos("2018-05-02T13:59:59.000Z"), "a");
+            writer.write(epochNanos("2018-05-02T13:59:59.900Z"), "b");
+            assertEquals(storage.resolve("20180502").resolve("13"), writer.getCurrentPath());
+            writer.write(epochNanos("2018-05-02T14:00:00.000Z"), "c");
+            assertEquals(storage.resolve("20180502").resolve("14"), writer.getCurrentPath());
+            writer.write(epochNanos("2018-05-03T00:00:01.000Z"), "d");
+            assertEquals(4L, writer.getTicksCount());
+        }
+        assertEquals(Arrays.asList("a", "b"), lines("20180502", "13"));
+        assertEquals(Collections.singletonList("c"), lines("20180502", "14"));
+        assertEquals(Collections.singletonList("d"), lines("20180503", "00"));
+    }
+
+    @Test
+    public void appendsToExistingFile() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 0)) {
+            writer.write(epochNanos("2018-05-02T13:00:00.000Z"), "a");
+        }
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 0)) {
+            writer.write(epochNanos("2018-05-02T13:30:00.000Z"), "b");
+        }
+        assertEquals(Arrays.asList("a", "b"), lines("20180502", "13"));
+    }
+
+    @Test
+    public void lateTickReopensItsHour() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 0)) {
+            writer.write(epochNanos("2018-05-02T14:00:00.000Z"), "a");
+            writer.write(epochNanos("2018-05-02T13:59:59.999Z"), "b");
+            assertEquals(storage.resolve("20180502").resolve("13"), writer.getCurrentPath());
+        }
+        assertEquals(Collections.singletonList("a"), lines("20180502", "14"));
+        assertEquals(Collections.singletonList("b"), lines("20180502", "13"));
+    }
+
+    @Test
+    public void flushedOnBytesOrInterval() throws Exception {
+        long start = epochNanos("2018-05-02T13:00:00.000Z");
+        try (RollingTickWriter writer = new RollingTickWriter(storage, 10 * SECOND, 8)) {
+            writer.write(start, "abc");
+            assertEquals(Collections.emptyList(), lines("20180502", "13"));
+            writer.write(start + SECOND, "defg");
+            assertEquals(Arrays.asList("abc", "defg"), lines("20180502", "13"));
+            writer.write(start + 2 * SECOND, "h");
+            assertFalse(writer.flushIfDue(start + 5 * SECOND));
+            assertEquals(2, lines("20180502", "13").size());
+            assertTrue(writer.flushIfDue(start + 11 * SECOND));
+            assertEquals(Arrays.asList("abc", "defg", "h"), lines("20180502", "13"));
+            assertFalse(writer.flushIfDue(start + 30 * SECOND));
+            writer.write(start + 40 * SECOND, "i");
+            assertEquals(4, lines("20180502", "13").size());
+        }
+    }
+
+    @Test
+    public void rotationDuringSyncForcesClosedFile() throws Exception {
+        AtomicInteger forces = new AtomicInteger();
+        AtomicBoolean rotating = new AtomicBoolean(true);
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 1 << 20, 0, true) {
+            @Override
+            void force(FileChannel syncing) throws IOException {
+                forces.incrementAndGet();
+                if (rotating.getAndSet(false)) {
+                    write(epochNanos("2018-05-02T14:00:00.000Z"), "b");
+                }
+                super.force(syncing);
+            }
+        }) {
+            writer.write(epochNanos("2018-05-02T13:00:00.000Z"), "a");
+            assertTrue(writer.sync());
+            assertEquals(2, forces.get());
+            assertFalse(writer.isSynced());
+            assertTrue(writer.sync());
+            assertTrue(writer.isSynced());
+            assertFalse(writer.sync());
+            assertEquals(3, forces.get());
+        }
+        assertEquals(Collections.singletonList("a"), lines("20180502", "13"));
+        assertEquals(Collections.singletonList("b"), lines("20180502", "14"));
+    }
+
+    @Test
+    public void concurrentSyncAndRotation() throws Exception {
+        long start = epochNanos("2018-05-02T00:00:00.000Z");
+        long hour = TimeUnit.HOURS.toNanos(1);
+        int ticks = 2400;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (RollingTickWriter writer = new RollingTickWriter(storage, SECOND, 1 << 20, 0, true)) {
+            Thread syncer = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        writer.sync();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            syncer.start();
+            for (int index = 0; index < ticks; index++) {
+                writer.write(start + index * (hour / 100), String.valueOf(index));
+            }
+            writing.set(false);
+            syncer.join();
+            assertEquals(null, failure.get());
+            writer.sync();
+            assertTrue(writer.isSynced());
+        }
+        assertEquals(100, lines("20180502", "13").size());
+    }
+
+    private List<String> lines(String day, String hour) throws IOException {
+        return Files.readAllLines(storage.resolve(day).resolve(hour), StandardCharsets.UTF_8);
+    }
+}
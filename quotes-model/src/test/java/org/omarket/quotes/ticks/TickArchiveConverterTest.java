@@ -0,0 +1,93 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickArchiveConverterTest {
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("archive");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    private Path csv(String day, String hour, String... lines) throws IOException {
+        Path directory = Files.createDirectories(storage.resolve(day));
+        return Files.write(directory.resolve(hour), Arrays.asList(lines), StandardCharsets.US_ASCII);
+    }
+
+    private static long millis(int day, int hour, int minute, int second, int milli) {
+        return ZonedDateTime.of(2018, 5, day, hour, minute, second, milli * 1000000, ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void convertHour() throws Exception {
+        Path csvFile = csv("20180502", "13", "00:01.250,100,101.25,101.3,200", "59:59.999,5,101.2,101.375,7");
+        Path binaryFile = storage.resolve("20180502").resolve("13" + TickFileFormat.EXTENSION);
+        assertEquals(2, TickArchiveConverter.convert(csvFile, binaryFile, 756733, millis(2, 13, 0, 0, 0)));
+        TickFileReader reader = TickFileReader.open(binaryFile);
+        assertEquals(3, reader.getTickScale());
+        assertEquals(2, reader.getRecordCount());
+        assertTrue(reader.next());
+        assertEquals(millis(2, 13, 0, 1, 250), reader.getEpochMillis());
+        assertEquals(100, reader.getBidSize());
+        assertEquals(101250L, reader.getBidTicks());
+        assertEquals(101300L, reader.getAskTicks());
+        assertEquals(200, reader.getAskSize());
+        assertTrue(reader.next());
+        assertEquals(millis(2, 13, 59, 59, 999), reader.getEpochMillis());
+        assertEquals(101200L, reader.getBidTicks());
+        assertEquals(101375L, reader.getAskTicks());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void convertProductSkipsRecentAndConverted() throws Exception {
+        csv("20180502", "13", "00:01.250,100,101.25,101.3,200");
+        csv("20180502", "14", "00:01.250,100,101.25,101.3,200");
+        csv("20180502", "15", "00:01.250,100,101.25,101.3,200");
+        csv("20180502", "16", "malformed");
+        assertEquals(1, TickArchiveConverter.convertProduct(storage, 1, millis(2, 14, 30, 0, 0)));
+        assertTrue(Files.exists(storage.resolve("20180502").resolve("13.tick")));
+        assertFalse(Files.exists(storage.resolve("20180502").resolve("14.tick")));
+        assertEquals(2, TickArchiveConverter.convertProduct(storage, 1, millis(3, 0, 0, 0, 0)));
+        assertFalse(Files.exists(storage.resolve("20180502").resolve("16.tick")));
+        assertFalse(Files.exists(storage.resolve("20180502").resolve("16.tick.tmp")));
+        assertEquals(0, TickArchiveConverter.convertProduct(storage, 1, millis(3, 0, 0, 0, 0)));
+    }
+
+    @Test
+    public void minuteMillis() throws Exception {
+        assertEquals(0L, TickArchiveConverter.parseMinuteMillis("00:00.000"));
+        assertEquals(3599999L, TickArchiveConverter.parseMinuteMillis("59:59.999"));
+    }
+}
@@ -0,0 +1,147 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omarket.quotes.Quote;
+import org.omarket.quotes.QuoteFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickFileTest {
+
+    private static final long BASE = ZonedDateTime.of(2018, 5, 2, 13, 0, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("ticks", TickFileFormat.EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        Random random = new Random(3);
+        int count = 5000;
+        long[] times = new long[count];
+        long[] bids = new long[count];
+        int[] sizes = new int[count];
+        long time = BASE;
+        long bid = 10125;
+        try (TickFileWriter writer = new TickFileWriter(file, 756733, 2, BASE)) {
+            for (int index = 0; index < count; index++) {
+                time += random.nextInt(500);
+                bid += random.nextInt(7) - 3;
+                times[index] = time;
+                bids[index] = bid;
+                sizes[index] = random.nextInt(100000);
+                writer.append(time, bid, sizes[index], bid + 1, sizes[index] + 1);
+            }
+        }
+        assertTrue(Files.size(file) < TickFileFormat.HEADER_LENGTH + 10L * count);
+        TickFileReader reader = TickFileReader.open(file);
+        assertEquals(756733, reader.getInstrumentId());
+        assertEquals(2, reader.getTickScale());
+        assertEquals(BASE, reader.getBaseEpochMillis());
+        assertEquals(count, reader.getRecordCount());
+        for (int index = 0; index < count; index++) {
+            assertTrue(reader.next());
+            assertEquals(times[index], reader.getEpochMillis());
+            assertEquals(bids[index], reader.getBidTicks());
+            assertEquals(bids[index] + 1, reader.getAskTicks());
+            assertEquals(sizes[index], reader.getBidSize());
+            assertEquals(sizes[index] + 1, reader.getAskSize());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void quotes() throws Exception {
+        QuoteFactory factory = new QuoteFactory();
+        ZonedDateTime time = ZonedDateTime.of(2018, 5, 2, 13, 12, 3, 456000000, ZoneOffset.UTC);
+        Quote quote = factory.create(time, 100, new BigDecimal("101.25"), new BigDecimal("101.3"), 200, "756733");
+        try (TickFileWriter writer = new TickFileWriter(file, 756733, 2, BASE)) {
+            writer.append(quote);
+        }
+        TickFileReader reader = TickFileReader.open(file);
+        assertTrue(reader.next());
+        Quote read = reader.toQuote("756733", factory);
+        assertEquals(time, read.getLastModified());
+        assertEquals(new BigDecimal("101.25"), read.getBestBidPrice());
+        assertEquals(new BigDecimal("101.30"), read.getBestAskPrice());
+        assertEquals(100, (int) read.getBestBidSize());
+        assertEquals(200, (int) read.getBestAskSize());
+        assertEquals("756733", read.getProductCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void priceFinerThanTick() throws Exception {
+        QuoteFactory factory = new QuoteFactory();
+        ZonedDateTime time = ZonedDateTime.of(2018, 5, 2, 13, 0, 0, 0, ZoneOffset.UTC);
+        try (TickFileWriter writer = new TickFileWriter(file, 1, 2, BASE)) {
+            writer.append(factory.create(time, 1, new BigDecimal("1.005"), new BigDecimal("1.01"), 1, "1"));
+        }
+    }
+
+    @Test
+    public void extremeDeltas() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        long[] values = {0, 1, -1, 63, -64, 64, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            buffer.clear();
+            TickFileFormat.putVarLong(buffer, value);
+            buffer.flip();
+            assertEquals(value, TickFileFormat.getVarLong(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+        buffer.clear();
+        TickFileFormat.putVarInt(buffer, Integer.MAX_VALUE);
+        buffer.flip();
+        assertEquals(Integer.MAX_VALUE, TickFileFormat.getVarInt(buffer));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncated() throws Exception {
+        try (TickFileWriter writer = new TickFileWriter(file, 1, 0, BASE)) {
+            writer.append(BASE + 1000, 5, 1, 6, 1);
+            writer.append(BASE + 2000, 5, 1, 6, 1);
+        }
+        byte[] content = Files.readAllBytes(file);
+        TickFileReader reader = new TickFileReader(ByteBuffer.wrap(Arrays.copyOf(content, content.length - 3)));
+        while (reader.next()) {
+            assertTrue(reader.getEpochMillis() > BASE);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notATickFile() throws Exception {
+        Files.write(file, "00:01.000,1,2.5,2.6,1".getBytes());
+        TickFileReader.open(file);
+    }
+
+    @Test
+    public void unclosedFileHasNoRecord() throws IOException {
+        TickFileWriter writer = new TickFileWriter(file, 1, 0, BASE);
+        writer.append(BASE, 1, 1, 2, 1);
+        assertEquals(0, TickFileReader.open(file).getRecordCount());
+        writer.close();
+        assertEquals(1, TickFileReader.open(file).getRecordCount());
+    }
+}
@@ -0,0 +1,158 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickPipelineTest {
+
+    private static final int TICKS = 20000;
+
+    private static void checkAllTicksInOrder(WaitStrategy waitStrategy) throws Exception {
+        List<Integer> recorded = new ArrayList<>();
+        List<Integer> published = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline(64, waitStrategy, OverflowPolicy.BLOCK);
+        pipeline.addStage("record", (instrumentId, quote, endOfBatch) -> recorded.add(instrumentId));
+        pipeline.addStage("publish", (instrumentId, quote, endOfBatch) -> published.add(instrumentId));
+        pipeline.start();
+        for (int tick = 0; tick < TICKS; tick++) {
+            assertTrue(pipeline.publish(tick, null));
+        }
+        pipeline.close();
+        assertEquals(TICKS, pipeline.getPublishedTicks());
+        assertEquals(0L, pipeline.getDroppedTicks());
+        assertEquals(TICKS, recorded.size());
+        assertEquals(TICKS, published.size());
+        for (int tick = 0; tick < TICKS; tick++) {
+            assertEquals(tick, (int) recorded.get(tick));
+            assertEquals(tick, (int) published.get(tick));
+        }
+        for (StageMetrics metrics : pipeline.getMetrics()) {
+            assertEquals(TICKS, metrics.getProcessedTicks());
+            assertEquals(0L, metrics.getLag());
+            assertTrue(metrics.getMaxLag() <= 64);
+        }
+    }
+
+    @Test
+    public void busySpin() throws Exception {
+        checkAllTicksInOrder(WaitStrategy.BUSY_SPIN);
+    }
+
+    @Test
+    public void yielding() throws Exception {
+        checkAllTicksInOrder(WaitStrategy.YIELDING);
+    }
+
+    @Test
+    public void sleeping() throws Exception {
+        checkAllTicksInOrder(WaitStrategy.SLEEPING);
+    }
+
+    @Test
+    public void blocking() throws Exception {
+        checkAllTicksInOrder(WaitStrategy.BLOCKING);
+    }
+
+    @Test
+    public void slowStageDropsWithoutStallingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        TickPipeline pipeline = new TickPipeline(8, WaitStrategy.BLOCKING, OverflowPolicy.DROP);
+        pipeline.addStage("slow", (instrumentId, quote, endOfBatch) -> release.await());
+        pipeline.addStage("fast", (instrumentId, quote, endOfBatch) -> {
+            if (instrumentId == 7) {
+                fastDone.countDown();
+            }
+        });
+        pipeline.start();
+        for (int tick = 0; tick < 8; tick++) {
+            assertTrue(pipeline.publish(tick, null));
+        }
+        assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        assertFalse(pipeline.publish(8, null));
+        assertEquals(1L, pipeline.getDroppedTicks());
+        StageMetrics slow = pipeline.getMetrics().get(0);
+        assertEquals("slow", slow.getName());
+        assertEquals(8L, slow.getLag());
+        release.countDown();
+        pipeline.close();
+        assertEquals(8L, pipeline.getMetrics().get(0).getProcessedTicks());
+        assertEquals(0L, pipeline.getMetrics().get(1).getLag());
+    }
+
+    @Test
+    public void failuresAreCounted() throws Exception {
+        List<Integer> handled = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline(16, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK);
+        pipeline.addStage("failing", (instrumentId, quote, endOfBatch) -> {
+            if (instrumentId % 2 == 0) {
+                throw new IllegalStateException("instrument " + instrumentId);
+            }
+            handled.add(instrumentId);
+        });
+        pipeline.start();
+        for (int tick = 0; tick < 10; tick++) {
+            pipeline.publish(tick, null);
+        }
+        pipeline.close();
+        StageMetrics metrics = pipeline.getMetrics().get(0);
+        assertEquals(10L, metrics.getProcessedTicks());
+        assertEquals(5L, metrics.getFailedTicks());
+        assertEquals(5, handled.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityPowerOfTwo() throws Exception {
+        new TickPipeline(12, WaitStrategy.BUSY_SPIN, OverflowPolicy.BLOCK);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noStageAfterStart() throws Exception {
+        TickPipeline pipeline = new TickPipeline(4, WaitStrategy.BUSY_SPIN, OverflowPolicy.BLOCK);
+        pipeline.start();
+        try {
+            pipeline.addStage("late", (instrumentId, quote, endOfBatch) -> {
+            });
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void closedPipelineDrops() throws Exception {
+        List<Integer> handled = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline(16, WaitStrategy.SLEEPING, OverflowPolicy.BLOCK);
+        pipeline.addStage("handled", (instrumentId, quote, endOfBatch) -> handled.add(instrumentId));
+        pipeline.start();
+        assertTrue(pipeline.publish(1, null));
+        pipeline.close();
+        assertFalse(pipeline.publish(2, null));
+        assertEquals(1L, pipeline.getPublishedTicks());
+        assertEquals(1L, pipeline.getDroppedTicks());
+        assertEquals(1, handled.size());
+    }
+
+    @Test
+    public void timedStageGetsProducedTime() throws Exception {
+        List<Long> produced = new ArrayList<>();
+        TickPipeline pipeline = new TickPipeline(16, WaitStrategy.BLOCKING, OverflowPolicy.BLOCK);
+        pipeline.addStage("timed", (instrumentId, quote, producedNanos, endOfBatch) -> produced.add(producedNanos));
+        pipeline.start();
+        for (int tick = 0; tick < 100; tick++) {
+            assertTrue(pipeline.publish(tick, null, 1000L + tick));
+        }
+        pipeline.close();
+        assertEquals(100, produced.size());
+        for (int tick = 0; tick < 100; tick++) {
+            assertEquals(1000L + tick, (long) produced.get(tick));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.omarket.quotes.ticks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omarket.quotes.FixedPointQuoteImpl;
+import org.omarket.quotes.QuoteClock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TickRecorderTest {
+
+    private static final long START_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Instant.parse("2018-05-02T13:00:00.000Z").toEpochMilli());
+
+    private Path storage;
+
+    @Before
+    public void setUp() throws Exception {
+        storage = Files.createTempDirectory("ticks");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(storage)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    private static FixedPointQuoteImpl quote(int instrumentId, int index) {
+        return new FixedPointQuoteImpl(instrumentId, String.valueOf(instrumentId), 2)
+                .set(START_NANOS + TimeUnit.MILLISECONDS.toNanos(index), 10, 10000 + index, 10001 + index, 20);
+    }
+
+    private TickRecorder recorder(SyncMode mode, long syncInterval) {
+        TickRecorder recorder = new TickRecorder(Duration.ofHours(1), 1 << 20, 0, mode, syncInterval,
+                QuoteClock.SYSTEM);
+        for (int instrumentId = 1; instrumentId <= 3; instrumentId++) {
+            recorder.register(instrumentId, storage.resolve(String.valueOf(instrumentId)));
+        }
+        return recorder;
+    }
+
+    private long lines(int instrumentId) throws IOException {
+        return Files.readAllLines(storage.resolve(String.valueOf(instrumentId)).resolve("20180502").resolve("13"),
+                StandardCharsets.UTF_8).size();
+    }
+
+    @Test
+    public void noSync() throws Exception {
+        try (TickRecorder recorder = recorder(SyncMode.NONE, 0)) {
+            for (int index = 0; index < 30; index++) {
+                recorder.record(1 + index % 3, quote(1 + index % 3, index));
+            }
+            assertEquals(0, recorder.sync());
+            SyncMetrics metrics = recorder.getSyncMetrics();
+            assertEquals(SyncMode.NONE, metrics.getMode());
+            assertEquals(30, metrics.getRecordedTicks());
+            assertEquals(0, metrics.getSyncs());
+        }
+        assertEquals(10, lines(1));
+    }
+
+    @Test
+    public void syncEveryRecordsSharesOneCommit() throws Exception {
+        try (TickRecorder recorder = recorder(SyncMode.RECORDS, 10)) {
+            for (int index = 0; index < 25; index++) {
+                recorder.record(1 + index % 3, quote(1 + index % 3, index));
+            }
+            SyncMetrics metrics = recorder.getSyncMetrics();
+            assertEquals(25, metrics.getRecordedTicks());
+            assertEquals(2, metrics.getSyncs());
+            assertEquals(20, metrics.getSyncedTicks());
+            assertEquals(10., metrics.getTicksPerSync(), 1e-9);
+            assertTrue(metrics.getMaxLagNanos() >= metrics.getLastLagNanos());
+            // synced ticks have reached the files, the 5 others are still buffered
+            assertEquals(7, lines(1));
+            assertEquals(7, lines(2));
+            assertEquals(6, lines(3));
+            assertEquals(5, recorder.sync());
+            assertEquals(9, lines(1));
+        }
+    }
+
+    @Test
+    public void periodicSync() throws Exception {
+        try (TickRecorder recorder = recorder(SyncMode.PERIODIC, 10)) {
+            for (int index = 0; index < 5; index++) {
+                recorder.record(2, quote(2, index));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (recorder.getSyncMetrics().getSyncedTicks() < 5 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            SyncMetrics metrics = recorder.getSyncMetrics();
+            assertEquals(5, metrics.getSyncedTicks());
+            assertTrue(metrics.getSyncs() >= 1);
+            assertEquals(5, lines(2));
+        }
+    }
+
+    @Test
+    public void writerSyncsOnlyWrittenFiles() throws Exception {
+        try (RollingTickWriter writer = new RollingTickWriter(storage, TimeUnit.HOURS.toNanos(1), 1 << 20, 0,
+                true)) {
+            assertFalse(writer.sync());
+            writer.write(START_NANOS, "a");
+            assertTrue(writer.sync());
+            assertFalse(writer.sync());
+            assertEquals(1, Files.readAllLines(writer.getCurrentPath(), StandardCharsets.UTF_8).size());
+        }
+    }
+}